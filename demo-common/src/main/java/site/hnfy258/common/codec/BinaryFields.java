@@ -0,0 +1,74 @@
+package site.hnfy258.common.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 二进制编码的公共字段读写：字符串为 2 字节长度 + UTF-8，长度 0xFFFF 表示 null
+ */
+public final class BinaryFields {
+
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private BinaryFields() {
+    }
+
+    public static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static int sizeOf(byte[] utf8) {
+        return 2 + (utf8 == null ? 0 : utf8.length);
+    }
+
+    public static void putString(ByteBuffer buffer, byte[] utf8) {
+        if (utf8 == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
+        }
+        if (utf8.length >= NULL_LENGTH) {
+            throw new SerializationException("String field too long for binary format: " + utf8.length);
+        }
+        buffer.putShort((short) utf8.length);
+        buffer.put(utf8);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * 解析 "prefix123" 形式的 ID，只接受无前导零的规范数字以保证往返一致，否则返回 -1
+     */
+    public static long parsePrefixedId(String id, String prefix) {
+        if (id == null || !id.startsWith(prefix)) {
+            return -1;
+        }
+        int start = prefix.length();
+        int length = id.length() - start;
+        if (length == 0 || length > 18 || (id.charAt(start) == '0' && length > 1)) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,11 @@
+package site.hnfy258.common.codec;
+
+/**
+ * 事件的二进制编解码器，编码结果的首字节为格式版本号
+ */
+public interface EventCodec<T> {
+
+    byte[] encode(T event);
+
+    T decode(byte[] data);
+}
@@ -0,0 +1,36 @@
+package site.hnfy258.common.codec;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 消息体的线上格式，通过 Kafka Header 协商
+ * 灰度期间 JSON 与二进制共存：消费端两种都能解析，生产端通过配置切换；没有 Header 的旧消息按 JSON 处理
+ */
+public enum WireFormat {
+    JSON,
+    BINARY;
+
+    public static final String HEADER = "wire-format";
+
+    private final byte[] headerValue = name().toLowerCase().getBytes(StandardCharsets.US_ASCII);
+
+    public void writeTo(Headers headers) {
+        headers.remove(HEADER);
+        headers.add(HEADER, headerValue);
+    }
+
+    public static WireFormat from(Headers headers) {
+        if (headers == null) {
+            return JSON;
+        }
+        Header header = headers.lastHeader(HEADER);
+        if (header == null || header.value() == null) {
+            return JSON;
+        }
+        String value = new String(header.value(), StandardCharsets.US_ASCII);
+        return "binary".equals(value) ? BINARY : JSON;
+    }
+}
@@ -0,0 +1,115 @@
+package site.hnfy258.common.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import site.hnfy258.common.stream.JsonEventSerde;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 {@link WireFormat#HEADER} 协商格式的 Serde
+ * 序列化时按配置的格式编码并写入 Header；反序列化时按 Header 选择解码器，
+ * 无 Header 的旧消息按 JSON 解析。无法解析的消息返回 null，由调用方过滤。
+ * 调用方不提供 Headers 时无法标记格式，此时总是写 JSON，保证读端按"无 Header 即 JSON"能正确解析。
+ */
+@Slf4j
+public class WireFormatSerde<T> implements Serde<T> {
+
+    private final JsonEventSerde<T> json;
+    private final EventCodec<T> binary;
+    private final WireFormat outgoingFormat;
+
+    private final LongAdder jsonDecoded = new LongAdder();
+    private final LongAdder binaryDecoded = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    public WireFormatSerde(JsonEventSerde<T> json, EventCodec<T> binary, WireFormat outgoingFormat) {
+        this.json = json;
+        this.binary = binary;
+        this.outgoingFormat = outgoingFormat;
+    }
+
+    public WireFormat getOutgoingFormat() {
+        return outgoingFormat;
+    }
+
+    public byte[] encode(T value, Headers headers) {
+        if (value == null) {
+            return null;
+        }
+        if (headers == null) {
+            return json.write(value);
+        }
+        outgoingFormat.writeTo(headers);
+        return outgoingFormat == WireFormat.BINARY ? binary.encode(value) : json.write(value);
+    }
+
+    public T decode(byte[] data, Headers headers) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        if (WireFormat.from(headers) == WireFormat.BINARY) {
+            try {
+                T value = binary.decode(data);
+                binaryDecoded.increment();
+                return value;
+            } catch (SerializationException e) {
+                malformed.increment();
+                log.warn("Dropping malformed binary record ({} bytes): {}", data.length, e.getMessage());
+                return null;
+            }
+        }
+        T value = json.read(data);
+        if (value == null) {
+            malformed.increment();
+        } else {
+            jsonDecoded.increment();
+        }
+        return value;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("outgoingFormat", outgoingFormat);
+        stats.put("jsonDecoded", jsonDecoded.sum());
+        stats.put("binaryDecoded", binaryDecoded.sum());
+        stats.put("malformed", malformed.sum());
+        return stats;
+    }
+
+    @Override
+    public Serializer<T> serializer() {
+        return new Serializer<>() {
+            @Override
+            public byte[] serialize(String topic, T data) {
+                return encode(data, null);
+            }
+
+            @Override
+            public byte[] serialize(String topic, Headers headers, T data) {
+                return encode(data, headers);
+            }
+        };
+    }
+
+    @Override
+    public Deserializer<T> deserializer() {
+        return new Deserializer<>() {
+            @Override
+            public T deserialize(String topic, byte[] data) {
+                return decode(data, null);
+            }
+
+            @Override
+            public T deserialize(String topic, Headers headers, byte[] data) {
+                return decode(data, headers);
+            }
+        };
+    }
+}
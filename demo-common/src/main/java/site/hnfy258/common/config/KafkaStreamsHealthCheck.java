@@ -0,0 +1,107 @@
+package site.hnfy258.common.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KafkaStreams;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import site.hnfy258.common.stream.StreamsRestoreMonitor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于状态转换的 Kafka Streams 就绪探针（注册为 KafkaStreams 的 StateListener，健康项名称为 kafkaStreams）
+ * 首次进入 RUNNING 之前（包括启动时从 changelog 恢复 store）为 OUT_OF_SERVICE；
+ * 之后的 REBALANCING 只要没有 store 在恢复仍视为就绪；ERROR / NOT_RUNNING 等终止状态为 DOWN。
+ * 进入 RUNNING 时通知 {@link StreamsRestoreMonitor} 清理被迁走任务残留的恢复记录。
+ */
+@Slf4j
+@Component("kafkaStreamsHealthIndicator")
+public class KafkaStreamsHealthCheck implements KafkaStreams.StateListener, HealthIndicator {
+
+    private static final int MAX_TRANSITIONS = 20;
+
+    private final StreamsRestoreMonitor restoreMonitor;
+    private final long createdAt = System.currentTimeMillis();
+    private final Deque<Map<String, Object>> transitions = new ArrayDeque<>();
+    private volatile KafkaStreams.State state = KafkaStreams.State.CREATED;
+    private volatile long stateSince = createdAt;
+    private volatile long firstRunningAt;
+
+    public KafkaStreamsHealthCheck(StreamsRestoreMonitor restoreMonitor) {
+        this.restoreMonitor = restoreMonitor;
+    }
+
+    @Override
+    public void onChange(KafkaStreams.State newState, KafkaStreams.State oldState) {
+        long now = System.currentTimeMillis();
+        if (newState == KafkaStreams.State.RUNNING) {
+            restoreMonitor.onRunning();
+        }
+        state = newState;
+        stateSince = now;
+        if (newState == KafkaStreams.State.RUNNING && firstRunningAt == 0) {
+            firstRunningAt = now;
+            log.info("KafkaStreams ready after {} ms", now - createdAt);
+        }
+        Map<String, Object> transition = new LinkedHashMap<>();
+        transition.put("from", oldState);
+        transition.put("to", newState);
+        transition.put("at", now);
+        synchronized (transitions) {
+            transitions.addLast(transition);
+            if (transitions.size() > MAX_TRANSITIONS) {
+                transitions.removeFirst();
+            }
+        }
+        if (newState == KafkaStreams.State.ERROR || newState == KafkaStreams.State.PENDING_ERROR) {
+            log.error("KafkaStreams state: {} -> {}", oldState, newState);
+        } else {
+            log.info("KafkaStreams state: {} -> {}", oldState, newState);
+        }
+    }
+
+    public boolean isReady() {
+        switch (state) {
+            case RUNNING:
+                return true;
+            case REBALANCING:
+                return firstRunningAt != 0 && !restoreMonitor.isRestoring();
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder;
+        if (isReady()) {
+            builder = Health.up();
+        } else if (state == KafkaStreams.State.CREATED || state == KafkaStreams.State.REBALANCING) {
+            builder = Health.outOfService();
+        } else {
+            builder = Health.down();
+        }
+        return builder.withDetails(getStats()).build();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("ready", isReady());
+        stats.put("stateForMs", System.currentTimeMillis() - stateSince);
+        stats.put("timeToFirstRunningMs", firstRunningAt == 0 ? -1 : firstRunningAt - createdAt);
+        stats.put("restoring", restoreMonitor.isRestoring());
+        List<Map<String, Object>> recent;
+        synchronized (transitions) {
+            recent = new ArrayList<>(transitions);
+        }
+        stats.put("transitions", recent);
+        return stats;
+    }
+}
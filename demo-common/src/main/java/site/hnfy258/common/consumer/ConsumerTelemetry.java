@@ -0,0 +1,337 @@
+package site.hnfy258.common.consumer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消费端遥测：按消费组、分区统计消费位置、积压（lag）、EWMA 速率，以及处理耗时与端到端延迟分布
+ * - 监听方法处理完记录后调用 {@link #recordConsumed} / {@link #recordProcessingTime}，只做计数，不访问 Broker；
+ * - 后台线程每 pollIntervalMs 用 AdminClient 查询各消费组的已提交偏移量与分区 log-end offset，
+ *   lag = logEnd - committed（组级别，与实例无关，可直接作为扩缩容依据），同时推进 EWMA 速率；
+ * - 所有指标注册为 Micrometer 指标（kafka.consumer.telemetry.*），REST 视图见 {@link #getStats()}。
+ * 分位数由 Micrometer Timer 在客户端计算（滑动时间窗口的直方图），窗口为 rateWindowSeconds。
+ */
+@Component
+@Slf4j
+public class ConsumerTelemetry {
+
+    private static final String METRIC_PREFIX = "kafka.consumer.telemetry.";
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final MeterRegistry meterRegistry;
+    private final KafkaAdmin kafkaAdmin;
+    private final long pollIntervalMs;
+    private final long rateWindowSeconds;
+    private final long adminTimeoutMs;
+
+    private final Map<String, GroupTelemetry> groups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "consumer-telemetry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 只在 poller 线程上创建与使用
+    private AdminClient adminClient;
+    private volatile boolean brokerReachable = true;
+    private volatile long lastPollTime;
+
+    public ConsumerTelemetry(MeterRegistry meterRegistry, KafkaAdmin kafkaAdmin,
+                             @Value("${kafka.telemetry.poll-interval-ms:5000}") long pollIntervalMs,
+                             @Value("${kafka.telemetry.rate-window-seconds:60}") long rateWindowSeconds,
+                             @Value("${kafka.telemetry.admin-timeout-ms:3000}") long adminTimeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.kafkaAdmin = kafkaAdmin;
+        this.pollIntervalMs = Math.max(100, pollIntervalMs);
+        this.rateWindowSeconds = Math.max(1, rateWindowSeconds);
+        this.adminTimeoutMs = adminTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 登记需要统计 lag 的消费组；还没有消费到消息时也能看到积压
+     */
+    public void track(String groupId) {
+        group(groupId);
+    }
+
+    /**
+     * 记录一条处理完成的消息
+     *
+     * @param eventTimestampMs 事件产生时间，<= 0 时不统计端到端延迟
+     */
+    public void recordConsumed(String groupId, ConsumerRecord<?, ?> record, long eventTimestampMs) {
+        GroupTelemetry group = group(groupId);
+        group.rate.mark(1);
+        PartitionTelemetry partition = group.partition(new TopicPartition(record.topic(), record.partition()));
+        partition.rate.mark(1);
+        partition.consumedOffset.accumulateAndGet(record.offset() + 1, Math::max);
+        if (eventTimestampMs > 0) {
+            group.endToEnd.record(Math.max(0, System.currentTimeMillis() - eventTimestampMs), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 记录一次处理耗时（批量监听与并行引擎的 lane 都按批）
+     */
+    public void recordProcessingTime(String groupId, long nanos) {
+        group(groupId).processing.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 本实例在该分区上处理到的下一个偏移量（最后处理的 offset + 1），未处理过返回 -1
+     */
+    public long consumedOffset(String groupId, TopicPartition partition) {
+        GroupTelemetry group = groups.get(groupId);
+        PartitionTelemetry telemetry = group != null ? group.partitions.get(partition) : null;
+        return telemetry != null ? telemetry.consumedOffset.get() : -1;
+    }
+
+    private GroupTelemetry group(String groupId) {
+        return groups.computeIfAbsent(groupId, GroupTelemetry::new);
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            log.warn("Consumer telemetry poll failed: {}", e.getMessage());
+        }
+    }
+
+    private void poll() {
+        for (GroupTelemetry group : groups.values()) {
+            group.tick();
+        }
+        if (groups.isEmpty()) {
+            return;
+        }
+        try {
+            if (adminClient == null) {
+                adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+            }
+            for (GroupTelemetry group : groups.values()) {
+                Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(group.groupId)
+                        .partitionsToOffsetAndMetadata().get(adminTimeoutMs, TimeUnit.MILLISECONDS);
+                committed.forEach((partition, offset) -> {
+                    if (offset != null) {
+                        group.partition(partition).committedOffset = offset.offset();
+                    }
+                });
+            }
+
+            Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+            groups.values().forEach(group -> group.partitions.keySet()
+                    .forEach(partition -> request.put(partition, OffsetSpec.latest())));
+            if (!request.isEmpty()) {
+                Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> logEnd =
+                        adminClient.listOffsets(request).all().get(adminTimeoutMs, TimeUnit.MILLISECONDS);
+                for (GroupTelemetry group : groups.values()) {
+                    group.partitions.forEach((partition, telemetry) -> {
+                        ListOffsetsResult.ListOffsetsResultInfo info = logEnd.get(partition);
+                        if (info != null) {
+                            telemetry.logEndOffset = info.offset();
+                        }
+                    });
+                }
+            }
+            lastPollTime = System.currentTimeMillis();
+            if (!brokerReachable) {
+                log.info("Consumer telemetry: broker reachable again");
+                brokerReachable = true;
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            // Broker 不可用时只在状态变化时告警一次，lag 保留上次的值
+            if (brokerReachable) {
+                log.warn("Consumer telemetry: cannot fetch offsets, lag is stale: {}", e.getMessage());
+                brokerReachable = false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("brokerReachable", brokerReachable);
+        stats.put("lastPollTime", lastPollTime);
+        stats.put("pollIntervalMs", pollIntervalMs);
+        Map<String, Object> groupStats = new LinkedHashMap<>();
+        groups.values().forEach(group -> groupStats.put(group.groupId, group.getStats()));
+        stats.put("groups", groupStats);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        try {
+            poller.awaitTermination(adminTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (adminClient != null) {
+            adminClient.close(Duration.ofSeconds(1));
+        }
+    }
+
+    private static Map<String, Object> percentilesMillis(Timer timer) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", timer.count());
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            values.put("p" + formatPercentile(value.percentile()), value.value(TimeUnit.MILLISECONDS));
+        }
+        values.put("max", timer.max(TimeUnit.MILLISECONDS));
+        return values;
+    }
+
+    private static String formatPercentile(double percentile) {
+        // 0.5 -> 50, 0.999 -> 99.9
+        return BigDecimal.valueOf(percentile).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+
+    private final class GroupTelemetry {
+        private final String groupId;
+        private final Map<TopicPartition, PartitionTelemetry> partitions = new ConcurrentHashMap<>();
+        private final EwmaRate rate;
+        private final Timer processing;
+        private final Timer endToEnd;
+
+        private GroupTelemetry(String groupId) {
+            this.groupId = groupId;
+            this.rate = new EwmaRate(pollIntervalMs / 1000.0, rateWindowSeconds);
+            this.processing = Timer.builder(METRIC_PREFIX + "processing")
+                    .description("监听方法处理耗时")
+                    .tag("group", groupId)
+                    .publishPercentiles(PERCENTILES)
+                    .distributionStatisticExpiry(Duration.ofSeconds(rateWindowSeconds))
+                    .register(meterRegistry);
+            this.endToEnd = Timer.builder(METRIC_PREFIX + "end-to-end")
+                    .description("事件产生到处理完成的延迟")
+                    .tag("group", groupId)
+                    .publishPercentiles(PERCENTILES)
+                    .distributionStatisticExpiry(Duration.ofSeconds(rateWindowSeconds))
+                    .register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "lag", this, GroupTelemetry::totalLag)
+                    .description("消费组在已知分区上的总积压").tag("group", groupId).register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "records-rate", rate, EwmaRate::perSecond)
+                    .description("本实例处理速率（EWMA，条/秒）").tag("group", groupId).register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "drain-seconds", this, GroupTelemetry::secondsToDrain)
+                    .description("按当前速率消化积压所需秒数，-1 表示积压未在减少").tag("group", groupId)
+                    .register(meterRegistry);
+        }
+
+        private PartitionTelemetry partition(TopicPartition partition) {
+            return partitions.computeIfAbsent(partition, p -> new PartitionTelemetry(groupId, p));
+        }
+
+        private void tick() {
+            rate.tick();
+            partitions.values().forEach(partition -> partition.rate.tick());
+        }
+
+        private long totalLag() {
+            long total = 0;
+            for (PartitionTelemetry partition : partitions.values()) {
+                total += Math.max(0, partition.lag());
+            }
+            return total;
+        }
+
+        private double secondsToDrain() {
+            long lag = totalLag();
+            if (lag == 0) {
+                return 0;
+            }
+            double perSecond = rate.perSecond();
+            return perSecond > 0 ? lag / perSecond : -1;
+        }
+
+        private Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("recordsPerSecond", Math.round(rate.perSecond() * 10) / 10.0);
+            stats.put("lag", totalLag());
+            stats.put("drainSeconds", Math.round(secondsToDrain() * 10) / 10.0);
+            stats.put("processingMs", percentilesMillis(processing));
+            stats.put("endToEndMs", percentilesMillis(endToEnd));
+            Map<String, Object> partitionStats = new LinkedHashMap<>();
+            partitions.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey((a, b) -> a.toString().compareTo(b.toString())))
+                    .forEach(e -> partitionStats.put(e.getKey().toString(), e.getValue().getStats()));
+            stats.put("partitions", partitionStats);
+            return stats;
+        }
+    }
+
+    private final class PartitionTelemetry {
+        private final AtomicLong consumedOffset = new AtomicLong(-1);
+        private volatile long committedOffset = -1;
+        private volatile long logEndOffset = -1;
+        private final EwmaRate rate;
+
+        private PartitionTelemetry(String groupId, TopicPartition partition) {
+            this.rate = new EwmaRate(pollIntervalMs / 1000.0, rateWindowSeconds);
+            Gauge.builder(METRIC_PREFIX + "partition.lag", this, PartitionTelemetry::lag)
+                    .tag("group", groupId).tag("topic", partition.topic())
+                    .tag("partition", String.valueOf(partition.partition()))
+                    .register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "partition.records-rate", rate, EwmaRate::perSecond)
+                    .tag("group", groupId).tag("topic", partition.topic())
+                    .tag("partition", String.valueOf(partition.partition()))
+                    .register(meterRegistry);
+        }
+
+        /**
+         * 优先用组的已提交偏移量；还没有查询到时用本实例的消费位置；都未知返回 -1
+         */
+        private long lag() {
+            long end = logEndOffset;
+            long position = committedOffset >= 0 ? committedOffset : consumedOffset.get();
+            if (end < 0 || position < 0) {
+                return -1;
+            }
+            return Math.max(0, end - position);
+        }
+
+        private Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("consumedOffset", consumedOffset.get());
+            stats.put("committedOffset", committedOffset);
+            stats.put("logEndOffset", logEndOffset);
+            stats.put("lag", lag());
+            stats.put("recordsPerSecond", Math.round(rate.perSecond() * 10) / 10.0);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package site.hnfy258.common.consumer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 指数加权移动平均速率（条/秒），与 Unix load average 的算法相同：
+ * 计数线程只累加，定时线程每个 tick 把区间内的计数折算为速率并按 alpha 平滑
+ */
+class EwmaRate {
+
+    private final LongAdder uncounted = new LongAdder();
+    private final double alpha;
+    private final double intervalSeconds;
+    private volatile double rate;
+    private volatile boolean initialized;
+
+    /**
+     * @param intervalSeconds tick 间隔
+     * @param windowSeconds   平滑窗口，越大越平稳、对突变反应越慢
+     */
+    EwmaRate(double intervalSeconds, double windowSeconds) {
+        this.intervalSeconds = intervalSeconds;
+        this.alpha = 1 - Math.exp(-intervalSeconds / windowSeconds);
+    }
+
+    void mark(long count) {
+        uncounted.add(count);
+    }
+
+    /**
+     * 只允许单个线程调用
+     */
+    void tick() {
+        double instantRate = uncounted.sumThenReset() / intervalSeconds;
+        if (initialized) {
+            rate += alpha * (instantRate - rate);
+        } else {
+            rate = instantRate;
+            initialized = true;
+        }
+    }
+
+    double perSecond() {
+        return rate;
+    }
+}
@@ -0,0 +1,72 @@
+package site.hnfy258.common.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于预构建 ObjectReader/ObjectWriter 的 JSON Serde
+ * ObjectReader/ObjectWriter 线程安全且已缓存类型的序列化器，整个拓扑共享一个实例即可，
+ * 避免每条记录先解码成 String 再交给 ObjectMapper 查找反序列化器。
+ * 无法解析的记录反序列化为 null，由拓扑中的 filter 丢弃，不会让流线程失败。
+ */
+@Slf4j
+public class JsonEventSerde<T> implements Serde<T> {
+
+    private final Class<T> type;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final LongAdder malformedRecords = new LongAdder();
+
+    public JsonEventSerde(ObjectMapper objectMapper, Class<T> type) {
+        this.type = type;
+        this.reader = objectMapper.readerFor(type);
+        this.writer = objectMapper.writerFor(type);
+    }
+
+    public T read(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try {
+            return reader.readValue(data);
+        } catch (IOException e) {
+            malformedRecords.increment();
+            log.warn("Dropping malformed {} record ({} bytes): {}", type.getSimpleName(), data.length, e.getMessage());
+            return null;
+        }
+    }
+
+    public byte[] write(T value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Failed to serialize " + type.getSimpleName(), e);
+        }
+    }
+
+    public long getMalformedRecords() {
+        return malformedRecords.sum();
+    }
+
+    @Override
+    public Serializer<T> serializer() {
+        return (topic, value) -> write(value);
+    }
+
+    @Override
+    public Deserializer<T> deserializer() {
+        return (topic, data) -> read(data);
+    }
+}
@@ -0,0 +1,145 @@
+package site.hnfy258.common.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.support.serializer.JsonSerde;
+import org.springframework.stereotype.Component;
+import site.hnfy258.common.codec.EventCodec;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 流拓扑序列化路径的微基准
+ * 对同一批样本分别走"String + ObjectMapper + 整对象重分区"的旧路径和"类型化Serde + 空值重分区"的新路径，
+ * 统计每条事件的重分区字节数与线程CPU耗时。只用于演示对比，不是严格的JMH基准。
+ */
+@Slf4j
+@Component
+public class SerdeBenchmark {
+
+    private static final String REPARTITION_TOPIC = "benchmark-repartition";
+    private static final int WARMUP_ROUNDS = 3;
+
+    private final ObjectMapper objectMapper;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    public SerdeBenchmark(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param type         事件类型
+     * @param samples      样本事件
+     * @param repartitionKey 重分区使用的新Key
+     * @param rounds       每条路径的测量轮数
+     */
+    public <T> Map<String, Object> compareJsonPaths(Class<T> type, List<T> samples,
+                                                    Function<T, String> repartitionKey, int rounds) {
+        JsonEventSerde<T> typedSerde = new JsonEventSerde<>(objectMapper, type);
+        JsonSerde<T> repartitionSerde = new JsonSerde<>(type, objectMapper);
+        List<byte[]> sourceRecords = samples.stream().map(typedSerde::write).toList();
+
+        ToIntFunction<byte[]> stringPath = bytes -> {
+            try {
+                T event = objectMapper.readValue(new String(bytes, StandardCharsets.UTF_8), type);
+                byte[] key = repartitionKey.apply(event).getBytes(StandardCharsets.UTF_8);
+                byte[] value = repartitionSerde.serializer().serialize(REPARTITION_TOPIC, event);
+                repartitionSerde.deserializer().deserialize(REPARTITION_TOPIC, value);
+                return key.length + value.length;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        ToIntFunction<byte[]> typedPath = bytes -> {
+            T event = typedSerde.read(bytes);
+            return repartitionKey.apply(event).getBytes(StandardCharsets.UTF_8).length;
+        };
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("events", samples.size());
+        result.put("rounds", rounds);
+        result.put("sourceBytesPerEvent", averageLength(sourceRecords));
+        result.put("stringObjectMapper", measure(sourceRecords, stringPath, rounds));
+        result.put("typedSerde", measure(sourceRecords, typedPath, rounds));
+        return result;
+    }
+
+    /**
+     * 对比 JSON 与二进制线上格式：每事件字节数、编码与解码的CPU耗时
+     */
+    public <T> Map<String, Object> compareWireFormats(Class<T> type, List<T> samples, EventCodec<T> binaryCodec,
+                                                      int rounds) {
+        JsonEventSerde<T> json = new JsonEventSerde<>(objectMapper, type);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("events", samples.size());
+        result.put("rounds", rounds);
+        result.put("json", measureCodec(samples, json::write, json::read, rounds));
+        result.put("binary", measureCodec(samples, binaryCodec::encode, binaryCodec::decode, rounds));
+        return result;
+    }
+
+    private <T> Map<String, Object> measureCodec(List<T> samples, Function<T, byte[]> encoder,
+                                                 Function<byte[], T> decoder, int rounds) {
+        List<byte[]> encoded = samples.stream().map(encoder).toList();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bytesPerEvent", averageLength(encoded));
+        stats.put("encodeCpuNanosPerEvent", cpuNanosPerEvent(samples, encoder, rounds));
+        stats.put("decodeCpuNanosPerEvent", cpuNanosPerEvent(encoded, decoder, rounds));
+        return stats;
+    }
+
+    private <I, O> double cpuNanosPerEvent(List<I> inputs, Function<I, O> operation, int rounds) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            inputs.forEach(operation::apply);
+        }
+        long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        for (int i = 0; i < rounds; i++) {
+            inputs.forEach(operation::apply);
+        }
+        long events = (long) inputs.size() * rounds;
+        return events == 0 ? 0.0 : (double) (threadMXBean.getCurrentThreadCpuTime() - cpuStart) / events;
+    }
+
+    /**
+     * 对一条处理路径计时，返回每事件重分区字节数与CPU纳秒数
+     */
+    public Map<String, Object> measure(List<byte[]> sourceRecords, ToIntFunction<byte[]> path, int rounds) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runOnce(sourceRecords, path);
+        }
+        long repartitionBytes = 0;
+        long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            repartitionBytes += runOnce(sourceRecords, path);
+        }
+        long cpuNanos = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+        long wallNanos = System.nanoTime() - wallStart;
+
+        long events = (long) sourceRecords.size() * rounds;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("repartitionBytesPerEvent", events == 0 ? 0.0 : (double) repartitionBytes / events);
+        stats.put("cpuNanosPerEvent", events == 0 ? 0.0 : (double) cpuNanos / events);
+        stats.put("wallNanosPerEvent", events == 0 ? 0.0 : (double) wallNanos / events);
+        return stats;
+    }
+
+    private long runOnce(List<byte[]> sourceRecords, ToIntFunction<byte[]> path) {
+        long bytes = 0;
+        for (byte[] record : sourceRecords) {
+            bytes += path.applyAsInt(record);
+        }
+        return bytes;
+    }
+
+    private double averageLength(List<byte[]> records) {
+        return records.stream().mapToInt(r -> r.length).average().orElse(0);
+    }
+}
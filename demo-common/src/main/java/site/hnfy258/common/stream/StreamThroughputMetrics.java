@@ -0,0 +1,49 @@
+package site.hnfy258.common.stream;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 流拓扑的输入/输出计数
+ * 用于观察每条输入记录引起的下游写入次数（写放大）
+ */
+@Component
+public class StreamThroughputMetrics {
+
+    private final Map<String, TopologyCounters> counters = new ConcurrentHashMap<>();
+
+    public TopologyCounters counters(String topology) {
+        return counters.computeIfAbsent(topology, name -> new TopologyCounters());
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        counters.forEach((topology, c) -> {
+            long in = c.recordsIn.sum();
+            long out = c.recordsOut.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("recordsIn", in);
+            stats.put("recordsOut", out);
+            stats.put("recordsOutPerRecordIn", in == 0 ? 0.0 : (double) out / in);
+            result.put(topology, stats);
+        });
+        return result;
+    }
+
+    public static class TopologyCounters {
+        private final LongAdder recordsIn = new LongAdder();
+        private final LongAdder recordsOut = new LongAdder();
+
+        public void recordIn() {
+            recordsIn.increment();
+        }
+
+        public void recordOut() {
+            recordsOut.increment();
+        }
+    }
+}
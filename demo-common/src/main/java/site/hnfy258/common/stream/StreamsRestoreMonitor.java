@@ -0,0 +1,236 @@
+package site.hnfy258.common.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.processor.StateRestoreListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 状态存储从 changelog 恢复的进度：每个 store/分区的待恢复条数、恢复速率与预计剩余时间
+ * 恢复期间对应的任务不处理新数据，ETA 即这些分区恢复处理前的等待时间。
+ * 回调来自各个 stream 线程，按 store/分区独立记录；已完成的恢复保留最后一次的耗时与速率。
+ * 恢复中的任务被迁走或挂起时不会收到 onRestoreEnd，实例进入 RUNNING 时所有活跃任务都已恢复完成，
+ * 由 {@link #onRunning()} 清理这些残留的未完成记录，避免 {@link #isRestoring()} 一直为 true。
+ */
+@Slf4j
+@Component
+public class StreamsRestoreMonitor implements StateRestoreListener {
+
+    private static final String METRIC_PREFIX = "kafka.streams.restore.";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Restoration> restorations = new ConcurrentHashMap<>();
+    private final Map<String, Counter> restoredCounters = new ConcurrentHashMap<>();
+    private final AtomicLong completedRestorations = new AtomicLong();
+    private final AtomicLong abandonedRestorations = new AtomicLong();
+
+    public StreamsRestoreMonitor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(METRIC_PREFIX + "active", this, StreamsRestoreMonitor::activeCount)
+                .description("正在恢复的 store 分区数").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "remaining-records", this, StreamsRestoreMonitor::remainingRecords)
+                .description("所有恢复中分区的剩余 changelog 条数").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "records-rate", this, StreamsRestoreMonitor::recordsPerSecond)
+                .description("恢复中分区的合计恢复速率（条/秒）").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "eta-seconds", this, StreamsRestoreMonitor::etaSeconds)
+                .description("最慢分区按当前速率完成恢复的预计秒数").register(meterRegistry);
+    }
+
+    @Override
+    public void onRestoreStart(TopicPartition partition, String storeName, long startingOffset, long endingOffset) {
+        restorations.put(key(storeName, partition), new Restoration(storeName, partition, startingOffset, endingOffset));
+        log.info("Restoring store {} from {}: offsets {} -> {} ({} records)",
+                storeName, partition, startingOffset, endingOffset, Math.max(0, endingOffset - startingOffset));
+    }
+
+    @Override
+    public void onBatchRestored(TopicPartition partition, String storeName, long batchEndOffset, long numRestored) {
+        Restoration restoration = restorations.get(key(storeName, partition));
+        if (restoration != null) {
+            restoration.batchRestored(batchEndOffset, numRestored);
+        }
+        restoredCounter(storeName).increment(numRestored);
+    }
+
+    @Override
+    public void onRestoreEnd(TopicPartition partition, String storeName, long totalRestored) {
+        Restoration restoration = restorations.get(key(storeName, partition));
+        if (restoration == null) {
+            return;
+        }
+        restoration.finish(totalRestored);
+        completedRestorations.incrementAndGet();
+        log.info("Store {} restored from {}: {} records in {} ms ({} records/s)", storeName, partition,
+                totalRestored, restoration.elapsedMillis(), (long) restoration.recordsPerSecond());
+    }
+
+    /**
+     * 实例进入 RUNNING 时调用：仍未完成的恢复属于已迁走或挂起的任务，直接移除
+     */
+    public void onRunning() {
+        restorations.forEach((key, restoration) -> {
+            if (!restoration.finished && restorations.remove(key, restoration)) {
+                abandonedRestorations.incrementAndGet();
+                log.info("Dropping unfinished restoration of store {} from {}: task no longer restoring on this instance",
+                        restoration.storeName, restoration.partition);
+            }
+        });
+    }
+
+    /**
+     * 是否还有 store 分区处于恢复中
+     */
+    public boolean isRestoring() {
+        return activeCount() > 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", activeCount());
+        stats.put("completed", completedRestorations.get());
+        stats.put("abandoned", abandonedRestorations.get());
+        stats.put("remainingRecords", remainingRecords());
+        stats.put("recordsPerSecond", (long) recordsPerSecond());
+        stats.put("etaSeconds", etaSeconds());
+        Map<String, Object> partitions = new TreeMap<>();
+        restorations.forEach((key, restoration) -> partitions.put(key, restoration.toMap()));
+        stats.put("partitions", partitions);
+        return stats;
+    }
+
+    private int activeCount() {
+        int active = 0;
+        for (Restoration restoration : restorations.values()) {
+            if (!restoration.finished) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    private long remainingRecords() {
+        long remaining = 0;
+        for (Restoration restoration : restorations.values()) {
+            if (!restoration.finished) {
+                remaining += restoration.remaining();
+            }
+        }
+        return remaining;
+    }
+
+    private double recordsPerSecond() {
+        double rate = 0;
+        for (Restoration restoration : restorations.values()) {
+            if (!restoration.finished) {
+                rate += restoration.recordsPerSecond();
+            }
+        }
+        return rate;
+    }
+
+    /**
+     * 各分区由不同任务并行恢复，整体 ETA 取最慢的分区；还没有恢复出任何批次时无法估计，返回 -1
+     */
+    private double etaSeconds() {
+        double eta = 0;
+        for (Restoration restoration : restorations.values()) {
+            if (!restoration.finished) {
+                double partitionEta = restoration.etaSeconds();
+                if (partitionEta < 0) {
+                    return -1;
+                }
+                eta = Math.max(eta, partitionEta);
+            }
+        }
+        return eta;
+    }
+
+    private Counter restoredCounter(String storeName) {
+        return restoredCounters.computeIfAbsent(storeName, store -> Counter.builder(METRIC_PREFIX + "records")
+                .description("从 changelog 恢复的记录数")
+                .tag("store", store)
+                .register(meterRegistry));
+    }
+
+    private static String key(String storeName, TopicPartition partition) {
+        return storeName + "/" + partition.partition();
+    }
+
+    private static class Restoration {
+        private final String storeName;
+        private final TopicPartition partition;
+        private final long startingOffset;
+        private final long endingOffset;
+        private final long startNanos = System.nanoTime();
+        private volatile long restored;
+        private volatile long position;
+        private volatile long endNanos;
+        private volatile boolean finished;
+
+        Restoration(String storeName, TopicPartition partition, long startingOffset, long endingOffset) {
+            this.storeName = storeName;
+            this.partition = partition;
+            this.startingOffset = startingOffset;
+            this.endingOffset = endingOffset;
+            this.position = startingOffset;
+        }
+
+        // 同一分区的回调只来自负责该任务的 stream 线程
+        void batchRestored(long batchEndOffset, long numRestored) {
+            restored += numRestored;
+            position = batchEndOffset + 1;
+        }
+
+        void finish(long totalRestored) {
+            restored = totalRestored;
+            position = endingOffset;
+            endNanos = System.nanoTime();
+            finished = true;
+        }
+
+        long remaining() {
+            return Math.max(0, endingOffset - position);
+        }
+
+        long elapsedMillis() {
+            return ((finished ? endNanos : System.nanoTime()) - startNanos) / 1_000_000;
+        }
+
+        double recordsPerSecond() {
+            long elapsed = (finished ? endNanos : System.nanoTime()) - startNanos;
+            return elapsed <= 0 ? 0 : restored * 1_000_000_000.0 / elapsed;
+        }
+
+        double etaSeconds() {
+            if (finished) {
+                return 0;
+            }
+            double rate = recordsPerSecond();
+            return rate <= 0 ? -1 : remaining() / rate;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("store", storeName);
+            map.put("changelog", partition.toString());
+            map.put("finished", finished);
+            map.put("startingOffset", startingOffset);
+            map.put("endingOffset", endingOffset);
+            map.put("restored", restored);
+            map.put("remaining", remaining());
+            map.put("elapsedMs", elapsedMillis());
+            map.put("recordsPerSecond", (long) recordsPerSecond());
+            map.put("etaSeconds", etaSeconds());
+            return map;
+        }
+    }
+}
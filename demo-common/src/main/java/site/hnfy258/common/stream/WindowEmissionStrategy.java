@@ -0,0 +1,79 @@
+package site.hnfy258.common.stream;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.kstream.KTable;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 窗口聚合结果的下发策略，默认 EAGER，抑制需要显式开启
+ * EAGER: 每次更新都下发（只靠记录缓存去抖，热点键会产生大量中间结果）
+ * WINDOW_CLOSE: 每个key从首次更新起等待"窗口大小 + grace"后下发，此时窗口已关闭，正常情况下只下发一次最终结果
+ * INTERVAL: suppress(untilTimeLimit)，每个key在一个间隔内最多下发一次
+ * 两种抑制模式的缓冲区满时都提前下发最早的结果而不是停止流线程，
+ * 下游需要按窗口起点与计数幂等覆盖；缓冲区上限按"单个窗口内活跃 key 数 × 单条大小"设置即可避免提前下发。
+ */
+@Slf4j
+@Getter
+@Component
+public class WindowEmissionStrategy {
+
+    public enum Mode {
+        EAGER,
+        WINDOW_CLOSE,
+        INTERVAL
+    }
+
+    @Value("${streams.emission.mode:EAGER}")
+    private Mode mode;
+
+    @Value("${streams.emission.interval-ms:1000}")
+    private long intervalMs;
+
+    // 抑制缓冲区上限，防止热点窗口把内存撑爆；超出时提前下发，不会让应用停止
+    @Value("${streams.emission.buffer-max-records:100000}")
+    private long bufferMaxRecords;
+
+    @Value("${streams.emission.buffer-max-bytes:33554432}")
+    private long bufferMaxBytes;
+
+    /**
+     * 按配置对窗口计数表应用下发策略
+     *
+     * @param table   窗口计数表
+     * @param windows 计数表使用的窗口定义，WINDOW_CLOSE 按它的大小与 grace 计算等待时间
+     * @param name    抑制算子名称前缀（用于拓扑中的processor和changelog命名）
+     */
+    public <K> KTable<Windowed<K>, Long> apply(KTable<Windowed<K>, Long> table, TimeWindows windows, String name) {
+        log.info("Window emission strategy for {}: mode={}, intervalMs={}, bufferMaxRecords={}, bufferMaxBytes={}",
+                name, mode, intervalMs, bufferMaxRecords, bufferMaxBytes);
+
+        switch (mode) {
+            case WINDOW_CLOSE:
+                // untilWindowCloses 只接受缓冲区满时 shutDownWhenFull 的严格缓冲区，热点时会让流线程失败；
+                // 改用计时器不被后续更新重置的 untilTimeLimit：首次更新不早于窗口起点，
+                // 等待"窗口大小 + grace"后窗口必然已关闭，缓冲区满时提前下发
+                Duration untilClosed = Duration.ofMillis(windows.size() + windows.gracePeriodMs());
+                return table.suppress(Suppressed.untilTimeLimit(untilClosed,
+                                Suppressed.BufferConfig.maxRecords(bufferMaxRecords)
+                                        .withMaxBytes(bufferMaxBytes)
+                                        .emitEarlyWhenFull())
+                        .withName(name + "-final-result"));
+            case INTERVAL:
+                return table.suppress(Suppressed.untilTimeLimit(Duration.ofMillis(intervalMs),
+                                Suppressed.BufferConfig.maxRecords(bufferMaxRecords)
+                                        .withMaxBytes(bufferMaxBytes)
+                                        .emitEarlyWhenFull())
+                        .withName(name + "-rate-limited"));
+            case EAGER:
+            default:
+                return table;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package site.hnfy258.common.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程工厂/执行器的反射入口
+ * 项目默认按 Java 17 编译，不能直接引用 Thread.ofVirtual()；用 -Pjava21 构建并在 Java 21 上运行时才可用
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * 名称为 prefix + 序号的虚拟线程工厂
+     */
+    public static ThreadFactory threadFactory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21+, running on " + Runtime.version(), e);
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        try {
+            Method factory = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) factory.invoke(null, threadFactory(prefix));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21+, running on " + Runtime.version(), e);
+        }
+    }
+}
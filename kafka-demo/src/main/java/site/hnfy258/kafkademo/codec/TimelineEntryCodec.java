@@ -0,0 +1,91 @@
+package site.hnfy258.kafkademo.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import site.hnfy258.common.codec.BinaryFields;
+import site.hnfy258.entity.UserBehavior;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * 用户时间线条目的紧凑二进制格式
+ * <pre>
+ * 紧凑: tag=1 | action:1 | timestamp:8 | itemId:8        （固定 18 字节）
+ * 文本: tag=2 | timestamp:8 | itemId | actionType        （商品ID不是 "item_123" 形式或行为类型未知时）
+ * </pre>
+ * 用户ID由时间线的 key 决定、messageId 只用于去重，二者都不写入条目。
+ */
+public final class TimelineEntryCodec {
+
+    public static final int COMPACT_SIZE = 18;
+
+    private static final byte TAG_COMPACT = 1;
+    private static final byte TAG_TEXT = 2;
+    private static final String ITEM_PREFIX = "item_";
+
+    private TimelineEntryCodec() {
+    }
+
+    public static byte[] encode(UserBehavior event) {
+        long itemId = BinaryFields.parsePrefixedId(event.getItemId(), ITEM_PREFIX);
+        byte actionCode = UserBehaviorBinaryCodec.actionCode(event.getActionType());
+        if (itemId >= 0 && actionCode != 0) {
+            return ByteBuffer.allocate(COMPACT_SIZE)
+                    .put(TAG_COMPACT)
+                    .put(actionCode)
+                    .putLong(event.getTimestamp())
+                    .putLong(itemId)
+                    .array();
+        }
+        byte[] itemText = BinaryFields.utf8(event.getItemId());
+        byte[] actionText = BinaryFields.utf8(event.getActionType());
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + BinaryFields.sizeOf(itemText) + BinaryFields.sizeOf(actionText));
+        buffer.put(TAG_TEXT);
+        buffer.putLong(event.getTimestamp());
+        BinaryFields.putString(buffer, itemText);
+        BinaryFields.putString(buffer, actionText);
+        return buffer.array();
+    }
+
+    public static UserBehavior decode(String userId, byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte tag = buffer.get();
+            UserBehavior event = new UserBehavior();
+            event.setUserId(userId);
+            if (tag == TAG_COMPACT) {
+                event.setActionType(UserBehaviorBinaryCodec.actionName(buffer.get()));
+                event.setTimestamp(buffer.getLong());
+                event.setItemId(ITEM_PREFIX + buffer.getLong());
+            } else if (tag == TAG_TEXT) {
+                event.setTimestamp(buffer.getLong());
+                event.setItemId(BinaryFields.getString(buffer));
+                event.setActionType(BinaryFields.getString(buffer));
+            } else {
+                throw new SerializationException("Unknown timeline entry tag: " + tag);
+            }
+            return event;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated or corrupt timeline entry", e);
+        }
+    }
+
+    /**
+     * 按需解码的只读视图，只有被访问的条目才会创建 UserBehavior
+     */
+    public static List<UserBehavior> lazyList(String userId, List<byte[]> entries) {
+        return new AbstractList<>() {
+            @Override
+            public UserBehavior get(int index) {
+                return decode(userId, entries.get(index));
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+package site.hnfy258.kafkademo.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import site.hnfy258.common.codec.BinaryFields;
+import site.hnfy258.common.codec.EventCodec;
+import site.hnfy258.entity.UserBehavior;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * UserBehavior 的二进制格式（版本 1）
+ * <pre>
+ * version:1 | flags:1 | userId | itemId | action:1 [| actionType] | timestamp:8 | messageId
+ * </pre>
+ * "user_123"/"item_45" 形式的 ID 编码为 8 字节 long（对应 flags 位），其他形式按字符串编码；
+ * 已知的行为类型编码为 1 字节，未知类型编码为 0 并追加原始字符串。
+ */
+public class UserBehaviorBinaryCodec implements EventCodec<UserBehavior> {
+
+    public static final byte VERSION = 1;
+
+    private static final String USER_PREFIX = "user_";
+    private static final String ITEM_PREFIX = "item_";
+    private static final int FLAG_NUMERIC_USER = 1;
+    private static final int FLAG_NUMERIC_ITEM = 1 << 1;
+    private static final String[] ACTIONS = {null, "view", "click", "add_to_cart", "purchase"};
+
+    @Override
+    public byte[] encode(UserBehavior event) {
+        long userId = BinaryFields.parsePrefixedId(event.getUserId(), USER_PREFIX);
+        long itemId = BinaryFields.parsePrefixedId(event.getItemId(), ITEM_PREFIX);
+        byte actionCode = actionCode(event.getActionType());
+
+        byte[] userText = userId < 0 ? BinaryFields.utf8(event.getUserId()) : null;
+        byte[] itemText = itemId < 0 ? BinaryFields.utf8(event.getItemId()) : null;
+        byte[] actionText = actionCode == 0 ? BinaryFields.utf8(event.getActionType()) : null;
+        byte[] messageId = BinaryFields.utf8(event.getMessageId());
+
+        int size = 2
+                + (userId < 0 ? BinaryFields.sizeOf(userText) : 8)
+                + (itemId < 0 ? BinaryFields.sizeOf(itemText) : 8)
+                + 1 + (actionCode == 0 ? BinaryFields.sizeOf(actionText) : 0)
+                + 8
+                + BinaryFields.sizeOf(messageId);
+
+        int flags = (userId < 0 ? 0 : FLAG_NUMERIC_USER) | (itemId < 0 ? 0 : FLAG_NUMERIC_ITEM);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) flags);
+        if (userId < 0) {
+            BinaryFields.putString(buffer, userText);
+        } else {
+            buffer.putLong(userId);
+        }
+        if (itemId < 0) {
+            BinaryFields.putString(buffer, itemText);
+        } else {
+            buffer.putLong(itemId);
+        }
+        buffer.put(actionCode);
+        if (actionCode == 0) {
+            BinaryFields.putString(buffer, actionText);
+        }
+        buffer.putLong(event.getTimestamp());
+        BinaryFields.putString(buffer, messageId);
+        return buffer.array();
+    }
+
+    @Override
+    public UserBehavior decode(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new SerializationException("Unsupported UserBehavior binary version: " + version);
+            }
+            int flags = buffer.get();
+            UserBehavior event = new UserBehavior();
+            event.setUserId((flags & FLAG_NUMERIC_USER) != 0
+                    ? USER_PREFIX + buffer.getLong() : BinaryFields.getString(buffer));
+            event.setItemId((flags & FLAG_NUMERIC_ITEM) != 0
+                    ? ITEM_PREFIX + buffer.getLong() : BinaryFields.getString(buffer));
+            int actionCode = buffer.get();
+            event.setActionType(actionCode == 0 ? BinaryFields.getString(buffer) : actionName(actionCode));
+            event.setTimestamp(buffer.getLong());
+            event.setMessageId(BinaryFields.getString(buffer));
+            return event;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated or corrupt UserBehavior binary record", e);
+        }
+    }
+
+    /**
+     * 已知行为类型的 1 字节编码，未知类型返回 0
+     */
+    static byte actionCode(String actionType) {
+        for (int i = 1; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(actionType)) {
+                return (byte) i;
+            }
+        }
+        return 0;
+    }
+
+    static String actionName(int actionCode) {
+        if (actionCode <= 0 || actionCode >= ACTIONS.length) {
+            throw new SerializationException("Unknown action code: " + actionCode);
+        }
+        return ACTIONS[actionCode];
+    }
+}
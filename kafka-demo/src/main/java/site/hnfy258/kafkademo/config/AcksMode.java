@@ -0,0 +1,57 @@
+package site.hnfy258.kafkademo.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Map;
+
+/**
+ * 生产者确认级别
+ * NONE(acks=0): 不等待 Broker 确认，可能静默丢消息
+ * LEADER(acks=1): Leader 写入即确认，Leader 宕机且未同步时丢消息
+ * ALL(acks=all): ISR 全部写入才确认，唯一能开启幂等的级别
+ */
+public enum AcksMode {
+    NONE("0", false),
+    LEADER("1", false),
+    ALL("all", true);
+
+    private final String acks;
+    private final boolean idempotence;
+
+    AcksMode(String acks, boolean idempotence) {
+        this.acks = acks;
+        this.idempotence = idempotence;
+    }
+
+    public String getAcks() {
+        return acks;
+    }
+
+    /**
+     * 覆盖基础配置中的 acks 并显式设置幂等：幂等要求 acks=all，acks 为 0/1 时必须同时关闭，否则生产者创建失败
+     */
+    public void applyTo(Map<String, Object> configs) {
+        configs.put(ProducerConfig.ACKS_CONFIG, acks);
+        configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+    }
+
+    /**
+     * 解析接口参数中的 acks 取值（0 / 1 / all / -1）
+     */
+    public static AcksMode fromConfig(String value) {
+        if (value == null) {
+            return ALL;
+        }
+        switch (value.trim().toLowerCase()) {
+            case "0":
+                return NONE;
+            case "1":
+                return LEADER;
+            case "all":
+            case "-1":
+                return ALL;
+            default:
+                throw new IllegalArgumentException("Unsupported acks value: " + value + ", expected 0, 1 or all");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package site.hnfy258.kafkademo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import site.hnfy258.common.config.ProducerProfile;
+import site.hnfy258.entity.UserBehavior;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 (档位, acks) 预先建好的 KafkaTemplate
+ * 调用方按请求参数挑选模板，不再通过 updateConfigs 修改共享工厂——那样会重建生产者，
+ * 丢掉已建立的连接、元数据和缓冲区。acks=all 直接复用各档位的 Bean，0/1 由本类创建并负责销毁；
+ * 生产者在首次发送时才真正创建，未使用的组合不占连接。
+ */
+@Component
+@Slf4j
+public class AcksTemplateRegistry implements DisposableBean {
+
+    private final Map<ProducerProfile, Map<AcksMode, KafkaTemplate<String, UserBehavior>>> templates =
+            new EnumMap<>(ProducerProfile.class);
+    private final List<DefaultKafkaProducerFactory<String, UserBehavior>> ownedFactories = new ArrayList<>();
+    private final ProducerProfile defaultProfile;
+
+    public AcksTemplateRegistry(KafkaConfig kafkaConfig,
+                                @Value("${kafka.producer.profile:BALANCED}") ProducerProfile defaultProfile,
+                                @Qualifier("latencyKafkaTemplate") KafkaTemplate<String, UserBehavior> latencyKafkaTemplate,
+                                @Qualifier("balancedKafkaTemplate") KafkaTemplate<String, UserBehavior> balancedKafkaTemplate,
+                                @Qualifier("throughputKafkaTemplate") KafkaTemplate<String, UserBehavior> throughputKafkaTemplate) {
+        this.defaultProfile = defaultProfile;
+        register(kafkaConfig, ProducerProfile.LATENCY, latencyKafkaTemplate);
+        register(kafkaConfig, ProducerProfile.BALANCED, balancedKafkaTemplate);
+        register(kafkaConfig, ProducerProfile.THROUGHPUT, throughputKafkaTemplate);
+    }
+
+    private void register(KafkaConfig kafkaConfig, ProducerProfile profile,
+                          KafkaTemplate<String, UserBehavior> acksAllTemplate) {
+        Map<AcksMode, KafkaTemplate<String, UserBehavior>> byAcks = new EnumMap<>(AcksMode.class);
+        for (AcksMode acks : AcksMode.values()) {
+            if (acks == AcksMode.ALL) {
+                byAcks.put(acks, acksAllTemplate);
+            } else {
+                DefaultKafkaProducerFactory<String, UserBehavior> factory = kafkaConfig.newProducerFactory(profile, acks);
+                ownedFactories.add(factory);
+                byAcks.put(acks, new KafkaTemplate<>(factory));
+            }
+        }
+        templates.put(profile, byAcks);
+    }
+
+    public KafkaTemplate<String, UserBehavior> get(ProducerProfile profile, AcksMode acks) {
+        return templates.get(profile).get(acks);
+    }
+
+    /**
+     * 默认档位（kafka.producer.profile）下指定 acks 的模板
+     */
+    public KafkaTemplate<String, UserBehavior> get(AcksMode acks) {
+        return get(defaultProfile, acks);
+    }
+
+    @Override
+    public void destroy() {
+        for (DefaultKafkaProducerFactory<String, UserBehavior> factory : ownedFactories) {
+            factory.destroy();
+        }
+        log.info("已关闭 {} 个 acks=0/1 生产者工厂", ownedFactories.size());
+    }
+}
@@ -1,16 +1,35 @@
 package site.hnfy258.kafkademo.config;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.StringUtils;
+import org.springframework.util.backoff.FixedBackOff;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.config.ProducerProfile;
+import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.consumer.CommitTrackingInterceptor;
+import site.hnfy258.kafkademo.consumer.DrainingRebalanceListener;
+import site.hnfy258.kafkademo.consumer.ParallelConsumerEngine;
+import site.hnfy258.service.DailyStatsAggregator;
+import site.hnfy258.service.RebalanceDemoConsumerService;
+import site.hnfy258.service.RebalanceObserverService;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,63 +42,215 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
-    @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    // user_behavior_logs 的消息体按 Header 协商 JSON/二进制格式
+    @Autowired
+    private WireFormatSerde<UserBehavior> userBehaviorSerde;
+
+    // 默认 KafkaTemplate 使用的生产者档位
+    @Value("${kafka.producer.profile:BALANCED}")
+    private ProducerProfile defaultProfile;
+
+    // 消费组成员配置，见 applyGroupMembership
+    @Value("${kafka.consumer.cooperative-rebalance:true}")
+    private boolean cooperativeRebalance;
+
+    @Value("${kafka.consumer.static-membership:true}")
+    private boolean staticMembership;
+
+    @Value("${kafka.consumer.instance-id:}")
+    private String instanceId;
+
+    @Value("${kafka.consumer.static-session-timeout-ms:45000}")
+    private int staticSessionTimeoutMs;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    // 所有监听器容器共用的再平衡监听器，按消费组记录暂停时长、迁移分区数与重复处理的消息数
+    @Autowired
+    private RebalanceObserverService rebalanceObserverService;
+
+    // 分区撤销时持久化的本地聚合（每日统计的预聚合增量）
+    @Autowired
+    private DailyStatsAggregator dailyStatsAggregator;
+
+    // 分区撤销时等待并行引擎在途记录完成的上限，需小于 max.poll.interval.ms
+    @Value("${kafka.consumer.revoke-drain-timeout-ms:10000}")
+    private long revokeDrainTimeoutMs;
+
+    // 自动提交消费者写入失败时整批重试的间隔与次数，总耗时需小于 max.poll.interval.ms
+    @Value("${kafka.consumer.retry-interval-ms:1000}")
+    private long retryIntervalMs;
+
+    @Value("${kafka.consumer.retry-max-attempts:3}")
+    private long retryMaxAttempts;
+
+    /**
+     * 各档位共用的生产者配置，批次/linger/压缩/幂等等由 {@link ProducerProfile} 决定
+     */
+    public Map<String, Object> baseProducerConfigs() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
-        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 1);
-        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        return configProps;
+    }
+
+    public DefaultKafkaProducerFactory<String, UserBehavior> newProducerFactory(ProducerProfile profile) {
+        return newProducerFactory(profile, AcksMode.ALL);
+    }
+
+    public DefaultKafkaProducerFactory<String, UserBehavior> newProducerFactory(ProducerProfile profile, AcksMode acks) {
+        Map<String, Object> configProps = baseProducerConfigs();
+        profile.applyTo(configProps);
+        acks.applyTo(configProps);
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), userBehaviorSerde.serializer());
+    }
+
+    @Bean
+    @Primary
+    public ProducerFactory<String, UserBehavior> producerFactory() {
+        return newProducerFactory(defaultProfile);
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    @Primary
+    public KafkaTemplate<String, UserBehavior> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public KafkaTemplate<String, UserBehavior> latencyKafkaTemplate() {
+        return new KafkaTemplate<>(latencyProducerFactory());
+    }
+
+    @Bean
+    public ProducerFactory<String, UserBehavior> latencyProducerFactory() {
+        return newProducerFactory(ProducerProfile.LATENCY);
+    }
+
+    @Bean
+    public KafkaTemplate<String, UserBehavior> balancedKafkaTemplate() {
+        return new KafkaTemplate<>(balancedProducerFactory());
+    }
+
+    @Bean
+    public ProducerFactory<String, UserBehavior> balancedProducerFactory() {
+        return newProducerFactory(ProducerProfile.BALANCED);
+    }
+
+    /**
+     * 压测生成器使用的大批次 + zstd 模板
+     */
+    @Bean
+    public KafkaTemplate<String, UserBehavior> throughputKafkaTemplate() {
+        return new KafkaTemplate<>(throughputProducerFactory());
+    }
+
+    @Bean
+    public ProducerFactory<String, UserBehavior> throughputProducerFactory() {
+        return newProducerFactory(ProducerProfile.THROUGHPUT);
+    }
+
+    /**
+     * 消费组成员配置：
+     * - 协作式粘性分配（CooperativeStickyAssignor）：再平衡只撤销需要迁移的分区，其余分区不停止消费；
+     *   已有的 eager 组切换时需要两轮滚动重启（先同时声明两种分配器，再只保留 cooperative）；
+     * - 静态成员（group.instance.id = 主机名-端口，或 kafka.consumer.instance-id）：实例在会话超时内重启回来时
+     *   沿用原有分区，滚动重启不触发再平衡；代价是实例真正下线后要等会话超时分区才会被接管。
+     *   并发容器会给每个子消费者的 group.instance.id 追加 -n 后缀。
+     */
+    private void applyGroupMembership(Map<String, Object> props) {
+        props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, cooperativeRebalance
+                ? CooperativeStickyAssignor.class.getName() : RangeAssignor.class.getName());
+        if (staticMembership) {
+            props.put(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, groupInstanceId());
+            props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, staticSessionTimeoutMs);
+        }
+    }
+
+    /**
+     * 通过拦截器把每次成功提交的偏移量交给再平衡统计，撤销回调中无需查询 broker
+     */
+    private void applyCommitTracking(Map<String, Object> props) {
+        props.put(ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG, CommitTrackingInterceptor.class.getName());
+        props.put(CommitTrackingInterceptor.OBSERVER_CONFIG, rebalanceObserverService);
+    }
+
+    private String groupInstanceId() {
+        if (StringUtils.hasText(instanceId)) {
+            return instanceId;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + "-" + serverPort;
+    }
+
+    @Bean
+    public ConsumerFactory<String, UserBehavior> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
-        props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, 1000);
-        return new DefaultKafkaConsumerFactory<>(props);
+        // 由容器在每批处理完成后提交，避免按时间自动提交在再平衡时重放最多一个提交周期的消息
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
+        applyGroupMembership(props);
+        applyCommitTracking(props);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), userBehaviorSerde.deserializer());
     }
 
+    /**
+     * 批量监听：一次 poll 的消息整批交给监听方法，便于按批写 Redis
+     * AckMode.BATCH：监听方法返回后同步提交本批偏移量；分区撤销时先持久化本地聚合
+     * 监听方法抛出异常时不提交，由 DefaultErrorHandler 按固定间隔重放整批，重试耗尽后记录日志并跳过
+     */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    public ConcurrentKafkaListenerContainerFactory<String, UserBehavior> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, UserBehavior> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(retryIntervalMs, retryMaxAttempts)));
+        factory.getContainerProperties().setConsumerRebalanceListener(new DrainingRebalanceListener(
+                null, dailyStatsAggregator::flush, rebalanceObserverService, Duration.ofMillis(revokeDrainTimeoutMs)));
+        factory.setBatchListener(true);
         return factory;
     }
 
     @Bean
-    public ConsumerFactory<String, String> manualConsumerFactory() {
+    public ConsumerFactory<String, UserBehavior> manualConsumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId + "_manual");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 10);
-        return new DefaultKafkaConsumerFactory<>(props);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
+        applyGroupMembership(props);
+        applyCommitTracking(props);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), userBehaviorSerde.deserializer());
     }
 
+    /**
+     * 手动提交消费者的容器工厂：记录交给 {@link ParallelConsumerEngine} 并行处理，
+     * 偏移量由引擎在消费线程上按"连续完成的前缀"提交，容器本身不提交（MANUAL 且监听方法不 ack）；
+     * 分区撤销由 {@link DrainingRebalanceListener} 处理；
+     * 空闲事件用于在没有新消息时继续提交已完成的记录并在背压解除后恢复拉取
+     */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> manualAckKafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    public ConcurrentKafkaListenerContainerFactory<String, UserBehavior> manualAckKafkaListenerContainerFactory(
+            ParallelConsumerEngine<String, UserBehavior> userBehaviorParallelEngine) {
+        ConcurrentKafkaListenerContainerFactory<String, UserBehavior> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(manualConsumerFactory());
-        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setIdleEventInterval(100L);
+        // 分区撤销时等待在途记录完成、持久化本地聚合并同步提交，再平衡后几乎不重复处理
+        factory.getContainerProperties().setConsumerRebalanceListener(new DrainingRebalanceListener(
+                userBehaviorParallelEngine, dailyStatsAggregator::flush, rebalanceObserverService,
+                Duration.ofMillis(revokeDrainTimeoutMs)));
         factory.setBatchListener(true);
         return factory;
     }
@@ -91,7 +262,7 @@ public class KafkaConfig {
     public ConsumerFactory<String, String> rebalanceDemoConsumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "rebalance_demo_group");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, RebalanceDemoConsumerService.GROUP_ID);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
@@ -101,6 +272,9 @@ public class KafkaConfig {
         props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 10000);
         props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 3000);
         props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 30000);
+        // 开启静态成员时使用更长的会话超时，使实例重启不触发再平衡
+        applyGroupMembership(props);
+        applyCommitTracking(props);
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
@@ -108,8 +282,7 @@ public class KafkaConfig {
      * 带有再平衡监听器的容器工厂
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> rebalanceDemoKafkaListenerContainerFactory(
-            site.hnfy258.service.RebalanceObserverService rebalanceObserverService) {
+    public ConcurrentKafkaListenerContainerFactory<String, String> rebalanceDemoKafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(rebalanceDemoConsumerFactory());
 
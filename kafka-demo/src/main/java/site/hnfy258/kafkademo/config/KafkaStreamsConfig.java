@@ -8,14 +8,19 @@ import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.Grouped;
 import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.KTable;
 import org.apache.kafka.streams.kstream.Materialized;
 import org.apache.kafka.streams.kstream.Produced;
 import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafkaStreams;
 import org.springframework.kafka.support.serializer.JsonSerde; // Spring Kafka 提供的 JSON Serde
 
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.stream.StreamThroughputMetrics;
+import site.hnfy258.common.stream.WindowEmissionStrategy;
 import site.hnfy258.entity.ItemViewStats;
 import site.hnfy258.entity.UserBehavior;
 
@@ -28,12 +33,23 @@ public class KafkaStreamsConfig {
 
     private static final String INPUT_TOPIC = "user_behavior_logs";
     private static final String OUTPUT_TOPIC = "realtime_item_views";
+    private static final String TOPOLOGY_NAME = "item-view-counts";
+    private static final byte[] NO_PAYLOAD = new byte[0];
 
     private final ObjectMapper objectMapper;
+    private final WindowEmissionStrategy emissionStrategy;
+    private final StreamThroughputMetrics throughputMetrics;
+    private final WireFormatSerde<UserBehavior> userBehaviorSerde;
 
     // Spring Boot 会自动注入 ObjectMapper
-    public KafkaStreamsConfig(ObjectMapper objectMapper) {
+    public KafkaStreamsConfig(ObjectMapper objectMapper,
+                              WindowEmissionStrategy emissionStrategy,
+                              StreamThroughputMetrics throughputMetrics,
+                              WireFormatSerde<UserBehavior> userBehaviorSerde) {
         this.objectMapper = objectMapper;
+        this.emissionStrategy = emissionStrategy;
+        this.throughputMetrics = throughputMetrics;
+        this.userBehaviorSerde = userBehaviorSerde;
         log.info("KafkaStreamsConfig initialized with ObjectMapper: {}", objectMapper != null ? "OK" : "NULL");
     }
 
@@ -44,57 +60,42 @@ public class KafkaStreamsConfig {
      * @return KStream 拓扑
      */
     @Bean
-    public KStream<String, String> kStream(StreamsBuilder streamsBuilder) {
+    public KStream<String, UserBehavior> kStream(StreamsBuilder streamsBuilder) {
         // 检查 streamsBuilder 是否为 null
         if (streamsBuilder == null) {
             log.error("StreamsBuilder is null, cannot create KStream topology");
             throw new IllegalArgumentException("StreamsBuilder cannot be null");
         }
 
-        // 定义 JSON 序列化和反序列化器，用于 UserBehavior 和 ItemViewStats 对象
-        JsonSerde<UserBehavior> userBehaviorJsonSerde = new JsonSerde<>(UserBehavior.class, objectMapper);
+        // 定义序列化器：源 Topic 按 Header 协商 JSON/二进制直接反序列化为 UserBehavior，输出使用 ItemViewStats 的 JSON Serde
         JsonSerde<ItemViewStats> itemViewStatsJsonSerde = new JsonSerde<>(ItemViewStats.class, objectMapper);
+        StreamThroughputMetrics.TopologyCounters counters = throughputMetrics.counters(TOPOLOGY_NAME);
 
-        // 1. 从输入 Topic 读取消息
-        KStream<String, String> sourceStream = streamsBuilder.stream(
+        // 1. 从输入 Topic 读取消息，无法解析的消息反序列化为 null
+        KStream<String, UserBehavior> sourceStream = streamsBuilder.stream(
                 INPUT_TOPIC,
-                Consumed.with(Serdes.String(), Serdes.String()));
+                Consumed.with(Serdes.String(), userBehaviorSerde));
 
-        // 2. 将 JSON 字符串 Value 反序列化为 UserBehavior 对象
-        KStream<String, UserBehavior> userBehaviorStream = sourceStream.mapValues((key, value) -> {
-            try {
-                if (value == null || value.trim().isEmpty()) {
-                    log.warn("Received null or empty value for key: {}", key);
-                    return null;
-                }
-                UserBehavior behavior = objectMapper.readValue(value, UserBehavior.class);
-                log.debug("Successfully deserialized UserBehavior: {}", behavior);
-                return behavior;
-            } catch (Exception e) {
-                log.error("Error deserializing UserBehavior for key: {}, value: {}", key, value, e);
-                return null; // 无法反序列化的消息可以跳过或特殊处理
-            }
-        }).filter((key, userBehavior) -> {
-            boolean isValid = userBehavior != null && userBehavior.getItemId() != null
-                    && userBehavior.getActionType() != null;
-            if (!isValid && userBehavior != null) {
-                log.warn("Filtering out invalid UserBehavior: {}", userBehavior);
-            }
-            return isValid;
-        }); // 过滤掉反序列化失败的 null 值和无效数据
+        // 2. 过滤掉反序列化失败的 null 值和无效数据，只保留 'view' 类型的行为
+        KStream<String, UserBehavior> viewStream = sourceStream
+                .peek((key, userBehavior) -> counters.recordIn())
+                .filter((key, userBehavior) -> userBehavior != null
+                        && userBehavior.getItemId() != null
+                        && "view".equalsIgnoreCase(userBehavior.getActionType()));
 
-        // 3. 过滤出 'view' 类型的行为
-        KStream<String, UserBehavior> viewStream = userBehaviorStream
-                .filter((key, userBehavior) -> "view".equalsIgnoreCase(userBehavior.getActionType()));
+        // 3. 按 item_id 分组，并设置时间窗口（例如每 5 秒的浏览量）
+        //    count() 不读取 Value，重分区 Topic 只写一个 0 字节的 Value（null 会被 count 丢弃）
+        TimeWindows windows = TimeWindows.ofSizeWithNoGrace(Duration.ofSeconds(5)); // 5 秒的滚动时间窗口
+        KTable<Windowed<String>, Long> windowedCounts = viewStream
+                .map((key, userBehavior) -> KeyValue.pair(userBehavior.getItemId(), NO_PAYLOAD)) // 将 item_id 作为新的 Key
+                .groupByKey(Grouped.with(Serdes.String(), Serdes.ByteArray()))
+                .windowedBy(windows)
+                .count(Materialized.as("item-view-counts-store")); // 计数
 
-        // 4. 按 item_id 分组，并设置时间窗口（例如每 5 秒的浏览量）
-        KStream<String, ItemViewStats> itemViews = viewStream
-                .map((key, userBehavior) -> new KeyValue<>(userBehavior.getItemId(),
-                        userBehavior)) // 将 item_id 作为新的 Key
-                .groupByKey(Grouped.with(Serdes.String(), userBehaviorJsonSerde)) // 按 item_id 分组，指定序列化器
-                .windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofSeconds(5))) // 设置 5 秒的滚动时间窗口
-                .count(Materialized.as("item-view-counts-store")) // 计数
+        // 4. 按配置的下发策略抑制中间结果，减少输出 Topic 的写放大
+        KStream<String, ItemViewStats> itemViews = emissionStrategy.apply(windowedCounts, windows, TOPOLOGY_NAME)
                 .toStream() // 将 KTable 转换回 KStream
+                .peek((windowedKey, count) -> counters.recordOut())
                 .map((windowedKey, count) -> {
                     String itemId = windowedKey.key();
                     long windowStart = windowedKey.window().start();
@@ -0,0 +1,86 @@
+package site.hnfy258.kafkademo.config;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import site.hnfy258.common.consumer.ConsumerTelemetry;
+import site.hnfy258.common.util.VirtualThreads;
+import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.consumer.ParallelConsumerEngine;
+import site.hnfy258.service.KafkaConsumerService;
+import site.hnfy258.service.RedisStorageService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 手动提交消费者使用的并行处理引擎：按 userId（消息 Key）分 lane，Key 内保序、Key 间并行；
+ * 每个 lane 分到的记录一次 pipeline 写入 Redis，写入失败按退避重试（行为写入按 messageId 去重，重试是幂等的），
+ * 重试耗尽的记录同步转发到死信主题，确认写入后才允许提交越过它们
+ */
+@Configuration
+public class ParallelConsumerConfig {
+
+    @Value("${kafka.parallel-consumer.lanes:16}")
+    private int lanes;
+
+    @Value("${kafka.parallel-consumer.max-in-flight:5000}")
+    private int maxInFlight;
+
+    @Value("${kafka.parallel-consumer.retry-initial-backoff-ms:100}")
+    private long retryInitialBackoffMs;
+
+    @Value("${kafka.parallel-consumer.retry-max-backoff-ms:5000}")
+    private long retryMaxBackoffMs;
+
+    @Value("${kafka.parallel-consumer.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${kafka.parallel-consumer.dead-letter-topic:user_behavior_logs.DLT}")
+    private String deadLetterTopic;
+
+    @Value("${kafka.parallel-consumer.dead-letter-timeout-ms:10000}")
+    private long deadLetterTimeoutMs;
+
+    @Value("${app.virtual-threads.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean
+    public ParallelConsumerEngine<String, UserBehavior> userBehaviorParallelEngine(RedisStorageService redisStorageService,
+                                                                                   ConsumerTelemetry telemetry,
+                                                                                   KafkaTemplate<String, UserBehavior> kafkaTemplate) {
+        return new ParallelConsumerEngine<>("user-behavior", lanes, maxInFlight, records -> {
+            // 消息体已由 WireFormatSerde 解析，无法解析的消息为 null；同一 lane 的记录合并为一次批量写入
+            List<UserBehavior> userBehaviors = new ArrayList<>(records.size());
+            for (ConsumerRecord<String, UserBehavior> record : records) {
+                if (record.value() != null) {
+                    userBehaviors.add(record.value());
+                }
+            }
+            if (!userBehaviors.isEmpty()) {
+                long start = System.nanoTime();
+                redisStorageService.storeUserBehaviors(userBehaviors);
+                telemetry.recordProcessingTime(KafkaConsumerService.MANUAL_COMMIT_GROUP_ID, System.nanoTime() - start);
+            }
+            for (ConsumerRecord<String, UserBehavior> record : records) {
+                telemetry.recordConsumed(KafkaConsumerService.MANUAL_COMMIT_GROUP_ID, record,
+                        record.value() != null ? record.value().getTimestamp() : 0);
+            }
+        }, virtualThreads ? VirtualThreads.threadFactory("user-behavior-lane-") : null,
+                Duration.ofMillis(retryInitialBackoffMs), Duration.ofMillis(retryMaxBackoffMs),
+                maxAttempts, records -> {
+                    // 保留原 Key（userId），死信主题按同样的分区规则保序；全部确认写入后才返回
+                    CompletableFuture<?>[] sends = new CompletableFuture<?>[records.size()];
+                    for (int i = 0; i < records.size(); i++) {
+                        ConsumerRecord<String, UserBehavior> record = records.get(i);
+                        sends[i] = kafkaTemplate.send(deadLetterTopic, record.key(), record.value());
+                    }
+                    CompletableFuture.allOf(sends).get(deadLetterTimeoutMs, TimeUnit.MILLISECONDS);
+                });
+    }
+}
@@ -0,0 +1,40 @@
+package site.hnfy258.kafkademo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.StreamsConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.StreamsBuilderFactoryBeanConfigurer;
+import site.hnfy258.common.config.KafkaStreamsHealthCheck;
+import site.hnfy258.common.stream.StreamsRestoreMonitor;
+
+/**
+ * Kafka Streams 的并行度与恢复配置
+ * - kafka.streams.num-threads：每个实例的 stream 线程数，任务（输入分区）在线程间分配，超过分区数的线程空闲
+ * - kafka.streams.standby-replicas：每个 store 在其他实例上维护的热备副本数，实例故障或重启时由热备接管，
+ *   只需追赶少量 changelog；单实例部署时热备无处分配，不生效
+ * 同时注册状态监听（就绪探针）与恢复监听（恢复速率/ETA）。
+ */
+@Slf4j
+@Configuration
+public class StreamsScalingConfig {
+
+    @Value("${kafka.streams.num-threads:2}")
+    private int numThreads;
+
+    @Value("${kafka.streams.standby-replicas:1}")
+    private int standbyReplicas;
+
+    @Bean
+    public StreamsBuilderFactoryBeanConfigurer streamsScalingConfigurer(KafkaStreamsHealthCheck healthCheck,
+                                                                        StreamsRestoreMonitor restoreMonitor) {
+        return factoryBean -> {
+            factoryBean.getStreamsConfiguration().put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, numThreads);
+            factoryBean.getStreamsConfiguration().put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, standbyReplicas);
+            factoryBean.setStateListener(healthCheck);
+            factoryBean.setStateRestoreListener(restoreMonitor);
+            log.info("Kafka Streams scaling: {} stream threads, {} standby replicas", numThreads, standbyReplicas);
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package site.hnfy258.kafkademo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import site.hnfy258.common.codec.WireFormat;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.stream.JsonEventSerde;
+import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.codec.UserBehaviorBinaryCodec;
+
+/**
+ * 消息格式配置
+ * 消费端（监听器、流拓扑）始终同时支持 JSON 与二进制，生产端格式由 kafka.wire-format.producer 控制，
+ * 灰度时先升级所有消费端，再把生产端切换为 BINARY。
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public WireFormatSerde<UserBehavior> userBehaviorSerde(
+            ObjectMapper objectMapper,
+            @Value("${kafka.wire-format.producer:JSON}") WireFormat producerFormat) {
+        return new WireFormatSerde<>(
+                new JsonEventSerde<>(objectMapper, UserBehavior.class),
+                new UserBehaviorBinaryCodec(),
+                producerFormat);
+    }
+}
@@ -0,0 +1,46 @@
+package site.hnfy258.kafkademo.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import site.hnfy258.service.RebalanceObserverService;
+
+import java.util.Map;
+
+/**
+ * 把消费者每次成功提交的偏移量转交给 {@link RebalanceObserverService}
+ * onCommit 在消费线程上回调，覆盖容器提交、引擎同步提交与客户端自动提交，
+ * 再平衡回调中据此计算重复处理的消息数，不需要再向 broker 查询已提交位置。
+ * 观察者实例通过消费者配置 {@link #OBSERVER_CONFIG} 传入。
+ */
+public class CommitTrackingInterceptor implements ConsumerInterceptor<Object, Object> {
+
+    public static final String OBSERVER_CONFIG = "commit.tracking.observer";
+
+    private RebalanceObserverService observer;
+    private String groupId;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        this.observer = (RebalanceObserverService) configs.get(OBSERVER_CONFIG);
+        this.groupId = (String) configs.get(ConsumerConfig.GROUP_ID_CONFIG);
+    }
+
+    @Override
+    public ConsumerRecords<Object, Object> onConsume(ConsumerRecords<Object, Object> records) {
+        return records;
+    }
+
+    @Override
+    public void onCommit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        if (observer != null && groupId != null) {
+            observer.onCommitted(groupId, offsets);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,98 @@
+package site.hnfy258.kafkademo.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * 分区撤销时先把已拉取的记录处理完，再提交准确的偏移量，使再平衡后几乎不重复处理消息
+ * 撤销流程（消费线程上、分区交给新所有者之前）：
+ * 1. 等待并行引擎中这些分区的在途记录完成（最多 drainTimeout，需小于 max.poll.interval.ms）；
+ * 2. 持久化本地聚合（如每日统计的预聚合增量），保证偏移量不会领先于已落地的状态；
+ * 3. 同步提交这些分区连续完成的偏移量并释放跟踪状态。
+ * 没有并行引擎（engine 为 null）的批量监听器在回调时已处理完本批记录，只做第 2 步，偏移量由容器随后提交。
+ * 分区丢失（会话超时）时已无法提交，只释放状态。其余回调转发给 delegate（再平衡统计）。
+ */
+@Slf4j
+public class DrainingRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final ParallelConsumerEngine<?, ?> engine;
+    private final Runnable persistAggregates;
+    private final ConsumerAwareRebalanceListener delegate;
+    private final Duration drainTimeout;
+
+    public DrainingRebalanceListener(ParallelConsumerEngine<?, ?> engine, Runnable persistAggregates,
+                                     ConsumerAwareRebalanceListener delegate, Duration drainTimeout) {
+        this.engine = engine;
+        this.persistAggregates = persistAggregates;
+        this.delegate = delegate;
+        this.drainTimeout = drainTimeout;
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate != null) {
+            delegate.onPartitionsRevokedBeforeCommit(consumer, partitions);
+        }
+        if (partitions.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean drained = true;
+        if (engine != null) {
+            try {
+                drained = engine.drain(partitions, drainTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drained = false;
+            }
+        }
+        if (persistAggregates != null) {
+            try {
+                persistAggregates.run();
+            } catch (Exception e) {
+                // 聚合增量已加回本地计数器，由后台刷新重试；已处理的记录照常提交，避免重复计数
+                log.warn("Failed to persist aggregates on revoke: {}", e.getMessage());
+            }
+        }
+        if (engine != null) {
+            try {
+                engine.commitSync(consumer, partitions);
+            } catch (Exception e) {
+                log.warn("Failed to commit offsets for revoked partitions {}: {}", partitions, e.getMessage());
+            } finally {
+                engine.release(partitions);
+            }
+        }
+        log.info("Revoked {} partitions, drained={}, took {}ms", partitions.size(), drained,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate != null) {
+            delegate.onPartitionsRevokedAfterCommit(consumer, partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate != null) {
+            delegate.onPartitionsLost(consumer, partitions);
+        }
+        if (engine != null) {
+            engine.release(partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (delegate != null) {
+            delegate.onPartitionsAssigned(consumer, partitions);
+        }
+    }
+}
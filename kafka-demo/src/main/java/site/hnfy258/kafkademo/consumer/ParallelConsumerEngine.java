@@ -0,0 +1,433 @@
+package site.hnfy258.kafkademo.consumer;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分区内按 Key 并行、Key 内保序的消费引擎（参考 Confluent parallel-consumer 的 KEY 顺序模式）
+ * 一次 poll 的记录按 Key 哈希分配到固定数量的单线程 lane：同一 Key 总在同一 lane 内按偏移量顺序处理，
+ * 不同 Key 并行处理，并行度不再受分区数限制。每个 lane 分到的记录作为一批交给处理逻辑（一次批量写入）。
+ * 处理失败的批次在 lane 内按指数退避重试（lane 内后续记录随之等待，Key 内顺序不变），直到成功、
+ * 其分区被撤销释放（之后交给新所有者重新处理）或达到最大尝试次数；重试耗尽的批次交给死信处理逻辑，
+ * 转存成功后视为完成，没有死信处理或转存失败时记录保持未完成，提交位置不会越过它们。
+ * 每个分区用 {@link PartitionOffsetTracker} 跟踪未完成的偏移量，只提交连续完成的前缀；
+ * 在途记录数受信号量限制，submit 最多等待给定时间，未能接收的记录交还调用方回退位置并暂停拉取，
+ * 消费线程不会无限阻塞而超过 max.poll.interval.ms；在途记录降到低水位后恢复。
+ * submit / commitCompleted / 分区回调都必须在消费线程调用（KafkaConsumer 不是线程安全的）。
+ */
+@Slf4j
+public class ParallelConsumerEngine<K, V> {
+
+    /**
+     * 一个 lane 的一批记录（同一 lane 内按偏移量顺序）的处理逻辑；抛出异常视为整批失败并重试，
+     * 因此必须是幂等的
+     */
+    @FunctionalInterface
+    public interface BatchHandler<K, V> {
+        void handle(List<ConsumerRecord<K, V>> records) throws Exception;
+    }
+
+    private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(100);
+    private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(5);
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    private final String name;
+    private final BatchHandler<K, V> handler;
+    private final BatchHandler<K, V> deadLetterHandler;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final ExecutorService[] lanes;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Map<TopicPartition, PartitionOffsetTracker> trackers = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final LongAdder drains = new LongAdder();
+    private final LongAdder drainTimeouts = new LongAdder();
+
+    public ParallelConsumerEngine(String name, int laneCount, int maxInFlight, BatchHandler<K, V> handler) {
+        this(name, laneCount, maxInFlight, handler, null);
+    }
+
+    public ParallelConsumerEngine(String name, int laneCount, int maxInFlight, BatchHandler<K, V> handler,
+                                  ThreadFactory threadFactory) {
+        this(name, laneCount, maxInFlight, handler, threadFactory, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    public ParallelConsumerEngine(String name, int laneCount, int maxInFlight, BatchHandler<K, V> handler,
+                                  ThreadFactory threadFactory, Duration initialBackoff, Duration maxBackoff) {
+        this(name, laneCount, maxInFlight, handler, threadFactory, initialBackoff, maxBackoff,
+                DEFAULT_MAX_ATTEMPTS, null);
+    }
+
+    /**
+     * @param threadFactory     lane 线程工厂，为 null 时每个 lane 一个平台守护线程；
+     *                          虚拟线程模式下传入虚拟线程工厂，阻塞的 handler 不再占用平台线程
+     * @param initialBackoff    批次失败后第一次重试前的等待时间，之后每次翻倍
+     * @param maxBackoff        重试等待时间上限
+     * @param maxAttempts       每个批次最多处理的次数（含第一次）
+     * @param deadLetterHandler 重试耗尽的批次的处理逻辑（如转发到死信主题），成功后记录视为完成；可以为 null
+     */
+    public ParallelConsumerEngine(String name, int laneCount, int maxInFlight, BatchHandler<K, V> handler,
+                                  ThreadFactory threadFactory, Duration initialBackoff, Duration maxBackoff,
+                                  int maxAttempts, BatchHandler<K, V> deadLetterHandler) {
+        this.name = name;
+        this.handler = handler;
+        this.deadLetterHandler = deadLetterHandler;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffNanos = Math.max(1, initialBackoff.toNanos());
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, maxBackoff.toNanos());
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.lanes = new ExecutorService[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = name + "-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(threadFactory != null ? threadFactory : r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 把一批记录按 lane 分组分发，每个 lane 一个批次；在途记录达到上限时最多等待 acquireTimeout
+     *
+     * @return 等待超时后未能接收的记录（按原顺序，每个分区都是 poll 结果的一个后缀），全部接收时为空列表；
+     *         调用方应通过 {@link #rewind} 回退拉取位置并暂停拉取，之后重新拉取这些记录
+     */
+    public List<ConsumerRecord<K, V>> submit(List<ConsumerRecord<K, V>> records, Duration acquireTimeout)
+            throws InterruptedException {
+        List<LaneBatch<K, V>> batches = new ArrayList<>(Collections.nCopies(lanes.length, null));
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<K, V> record = records.get(i);
+            if (!inFlight.tryAcquire()) {
+                backpressureWaits.increment();
+                // 已分组但未分发的记录占着许可，先分发出去再等待，否则可能永远等不到
+                dispatch(batches);
+                if (!inFlight.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    return new ArrayList<>(records.subList(i, records.size()));
+                }
+            }
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            PartitionOffsetTracker tracker = trackers.computeIfAbsent(partition, p -> new PartitionOffsetTracker());
+            tracker.register(record.offset());
+            submitted.increment();
+            int lane = laneOf(record);
+            if (batches.get(lane) == null) {
+                batches.set(lane, new LaneBatch<>());
+            }
+            batches.get(lane).add(record, partition, tracker);
+        }
+        dispatch(batches);
+        return Collections.emptyList();
+    }
+
+    /**
+     * 把 submit 未接收的记录所在分区的拉取位置回退到其中最早的偏移量（消费线程调用）
+     */
+    public static void rewind(Consumer<?, ?> consumer, List<? extends ConsumerRecord<?, ?>> remaining) {
+        Map<TopicPartition, Long> earliest = new LinkedHashMap<>();
+        for (ConsumerRecord<?, ?> record : remaining) {
+            earliest.merge(new TopicPartition(record.topic(), record.partition()), record.offset(), Math::min);
+        }
+        earliest.forEach(consumer::seek);
+    }
+
+    private void dispatch(List<LaneBatch<K, V>> batches) {
+        for (int lane = 0; lane < batches.size(); lane++) {
+            LaneBatch<K, V> batch = batches.get(lane);
+            if (batch != null) {
+                lanes[lane].execute(() -> process(batch));
+                batches.set(lane, null);
+            }
+        }
+    }
+
+    private void process(LaneBatch<K, V> batch) {
+        int permits = batch.records.size();
+        try {
+            long backoffNanos = initialBackoffNanos;
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                // 分区已被撤销释放的记录不再处理，也不再影响提交位置
+                int before = batch.records.size();
+                batch.retainOwned(trackers);
+                abandoned.add(before - batch.records.size());
+                if (batch.records.isEmpty()) {
+                    return;
+                }
+                try {
+                    handler.handle(batch.records);
+                    completed.add(batch.records.size());
+                    batch.complete();
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    failed.increment();
+                    ConsumerRecord<K, V> first = batch.records.get(0);
+                    if (attempt == maxAttempts) {
+                        log.error("[{}] Giving up on {} records from {}-{}@{} after {} attempts: {}", name,
+                                batch.records.size(), first.topic(), first.partition(), first.offset(),
+                                attempt, e.getMessage());
+                        break;
+                    }
+                    if (attempt == 1) {
+                        log.error("[{}] Failed to process {} records from {}-{}@{}, retrying: {}", name,
+                                batch.records.size(), first.topic(), first.partition(), first.offset(), e.getMessage(), e);
+                    } else {
+                        log.warn("[{}] Retry {} failed for {} records from {}-{}@{}, next in {}ms: {}", name, attempt,
+                                batch.records.size(), first.topic(), first.partition(), first.offset(),
+                                TimeUnit.NANOSECONDS.toMillis(backoffNanos), e.getMessage());
+                    }
+                }
+                TimeUnit.NANOSECONDS.sleep(backoffNanos);
+                backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+            }
+            deadLetter(batch);
+        } catch (InterruptedException e) {
+            // 引擎关闭：记录保持未完成，不提交
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.release(permits);
+        }
+    }
+
+    /**
+     * 重试耗尽的批次：死信处理成功后记录视为完成，否则保持未完成，提交位置停在它们之前
+     */
+    private void deadLetter(LaneBatch<K, V> batch) {
+        int before = batch.records.size();
+        batch.retainOwned(trackers);
+        abandoned.add(before - batch.records.size());
+        if (batch.records.isEmpty()) {
+            return;
+        }
+        ConsumerRecord<K, V> first = batch.records.get(0);
+        if (deadLetterHandler != null) {
+            try {
+                deadLetterHandler.handle(batch.records);
+                deadLettered.add(batch.records.size());
+                batch.complete();
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("[{}] Failed to dead-letter {} records from {}-{}@{}: {}", name, batch.records.size(),
+                        first.topic(), first.partition(), first.offset(), e.getMessage(), e);
+            }
+        }
+        exhausted.add(batch.records.size());
+        log.error("[{}] {} records from {}-{}@{} stay uncompleted, commits for the partition stop before them",
+                name, batch.records.size(), first.topic(), first.partition(), first.offset());
+    }
+
+    private int laneOf(ConsumerRecord<K, V> record) {
+        Object key = record.key();
+        // 没有 Key 的记录不需要保序，按偏移量分散
+        int hash = key != null ? key.hashCode() : Long.hashCode(record.offset());
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * 收集各分区新推进的可提交偏移量
+     */
+    public Map<TopicPartition, OffsetAndMetadata> committableOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        trackers.forEach((partition, tracker) -> {
+            long offset = tracker.committableOffset();
+            if (offset > tracker.getLastCommitted()) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        });
+        return offsets;
+    }
+
+    /**
+     * 异步提交连续完成的偏移量（消费线程调用）
+     */
+    public void commitCompleted(Consumer<?, ?> consumer) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = committableOffsets();
+        if (offsets.isEmpty()) {
+            return;
+        }
+        consumer.commitAsync(offsets, (committed, exception) -> {
+            if (exception != null) {
+                log.warn("[{}] Async commit failed, will retry with later offsets: {}", name, exception.getMessage());
+                return;
+            }
+            markCommitted(committed);
+        });
+    }
+
+    void markCommitted(Map<TopicPartition, OffsetAndMetadata> committed) {
+        committed.forEach((partition, offset) -> {
+            PartitionOffsetTracker tracker = trackers.get(partition);
+            if (tracker != null) {
+                tracker.markCommitted(offset.offset());
+            }
+        });
+        commits.increment();
+    }
+
+    /**
+     * 等待指定分区已分发给 lane 的记录全部处理完成（消费线程在分区撤销时调用）
+     *
+     * @return 超时仍有未完成的记录时返回 false，这些记录之后的偏移量不会被提交，由新所有者重新处理
+     */
+    public boolean drain(Collection<TopicPartition> partitions, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (TopicPartition partition : partitions) {
+            PartitionOffsetTracker tracker = trackers.get(partition);
+            while (tracker != null && !tracker.isIdle()) {
+                if (System.nanoTime() >= deadline) {
+                    drainTimeouts.increment();
+                    return false;
+                }
+                TimeUnit.MICROSECONDS.sleep(200);
+            }
+        }
+        drains.increment();
+        return true;
+    }
+
+    /**
+     * 同步提交指定分区连续完成的偏移量（消费线程在分区撤销时调用，之前的异步提交会先完成）
+     */
+    public void commitSync(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = committableOffsets();
+        offsets.keySet().retainAll(partitions);
+        if (offsets.isEmpty()) {
+            return;
+        }
+        consumer.commitSync(offsets);
+        markCommitted(offsets);
+    }
+
+    /**
+     * 丢弃分区的跟踪状态（撤销并提交后，或分区丢失时），仍在处理的记录完成后不再影响提交位置
+     */
+    public void release(Collection<TopicPartition> partitions) {
+        partitions.forEach(trackers::remove);
+    }
+
+    public boolean isSaturated() {
+        return inFlight.availablePermits() == 0;
+    }
+
+    /**
+     * 在途记录降到上限的一半以下时可以恢复拉取
+     */
+    public boolean isDrained() {
+        return inFlight.availablePermits() >= maxInFlight / 2;
+    }
+
+    public int inFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lanes", lanes.length);
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("inFlight", inFlightCount());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failedAttempts", failed.sum());
+        stats.put("abandoned", abandoned.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("exhausted", exhausted.sum());
+        stats.put("commits", commits.sum());
+        stats.put("backpressureWaits", backpressureWaits.sum());
+        stats.put("drains", drains.sum());
+        stats.put("drainTimeouts", drainTimeouts.sum());
+        Map<String, Object> partitions = new LinkedHashMap<>();
+        trackers.forEach((partition, tracker) -> {
+            Map<String, Object> partitionStats = new LinkedHashMap<>();
+            partitionStats.put("pending", tracker.pendingCount());
+            partitionStats.put("committable", tracker.committableOffset());
+            partitionStats.put("committed", tracker.getLastCommitted());
+            partitions.put(partition.toString(), partitionStats);
+        });
+        stats.put("partitions", partitions);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            try {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    lane.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                lane.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 分发给同一 lane 的记录及其所属分区的跟踪器（提交时的跟踪器，分区撤销后被替换或移除）
+     */
+    private static final class LaneBatch<K, V> {
+        private final List<ConsumerRecord<K, V>> records = new ArrayList<>();
+        private final List<TopicPartition> partitions = new ArrayList<>();
+        private final List<PartitionOffsetTracker> trackers = new ArrayList<>();
+
+        private void add(ConsumerRecord<K, V> record, TopicPartition partition, PartitionOffsetTracker tracker) {
+            records.add(record);
+            partitions.add(partition);
+            trackers.add(tracker);
+        }
+
+        private void retainOwned(Map<TopicPartition, PartitionOffsetTracker> owned) {
+            for (int i = records.size() - 1; i >= 0; i--) {
+                if (owned.get(partitions.get(i)) != trackers.get(i)) {
+                    records.remove(i);
+                    partitions.remove(i);
+                    trackers.remove(i);
+                }
+            }
+        }
+
+        private void complete() {
+            for (int i = 0; i < records.size(); i++) {
+                trackers.get(i).complete(records.get(i).offset());
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package site.hnfy258.kafkademo.consumer;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 单个分区的偏移量跟踪
+ * 记录已提交处理但尚未完成的偏移量，可提交位置为"最小的未完成偏移量"，
+ * 没有未完成记录时为"最后提交处理的偏移量 + 1"。乱序完成的记录不会让提交位置越过仍在处理的记录。
+ */
+public class PartitionOffsetTracker {
+
+    private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+    private volatile long highestSubmitted = -1;
+    private volatile long lastCommitted = -1;
+
+    /**
+     * 由消费线程按偏移量递增顺序调用
+     */
+    public void register(long offset) {
+        pending.add(offset);
+        highestSubmitted = Math.max(highestSubmitted, offset);
+    }
+
+    public void complete(long offset) {
+        pending.remove(offset);
+    }
+
+    /**
+     * @return 可提交的偏移量（下一条待消费的位置），尚未处理过任何记录时为 -1
+     */
+    public long committableOffset() {
+        // register 与本方法都在消费线程调用，并发的只有 complete（只会删除），
+        // 因此 pending 为空时 highestSubmitted 之前的记录都已完成
+        long submitted = highestSubmitted;
+        Iterator<Long> lowest = pending.iterator();
+        if (lowest.hasNext()) {
+            return lowest.next();
+        }
+        return submitted < 0 ? -1 : submitted + 1;
+    }
+
+    public long getLastCommitted() {
+        return lastCommitted;
+    }
+
+    public void markCommitted(long offset) {
+        lastCommitted = Math.max(lastCommitted, offset);
+    }
+
+    /**
+     * 已提交处理的记录是否全部完成
+     */
+    public boolean isIdle() {
+        return pending.isEmpty();
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+}
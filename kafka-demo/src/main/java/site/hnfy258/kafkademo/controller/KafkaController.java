@@ -1,12 +1,30 @@
 package site.hnfy258.kafkademo.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.component.VirtualThreadPinningMonitor;
+import site.hnfy258.common.config.KafkaStreamsHealthCheck;
+import site.hnfy258.common.config.ProducerProfile;
+import site.hnfy258.common.stream.SerdeBenchmark;
+import site.hnfy258.common.stream.StreamThroughputMetrics;
+import site.hnfy258.common.stream.StreamsRestoreMonitor;
+import site.hnfy258.common.stream.WindowEmissionStrategy;
+import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.codec.UserBehaviorBinaryCodec;
+import site.hnfy258.kafkademo.loadgen.LoadGenerator;
+import site.hnfy258.kafkademo.loadgen.LoadGeneratorProperties;
+import site.hnfy258.service.KafkaConsumerService;
 import site.hnfy258.service.KafkaProducerService;
+import site.hnfy258.service.ProducerProfileBenchmarkService;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 @RestController
 @RequestMapping("/kafka")
@@ -16,28 +34,68 @@ public class KafkaController {
     @Autowired
     private KafkaProducerService kafkaProducerService;
 
-    private Thread producerThread;
-    private volatile boolean isProducing = false;
+    @Autowired
+    private StreamThroughputMetrics streamThroughputMetrics;
+
+    @Autowired
+    private WindowEmissionStrategy windowEmissionStrategy;
+
+    @Autowired
+    private KafkaStreamsHealthCheck streamsHealthCheck;
+
+    @Autowired
+    private StreamsRestoreMonitor streamsRestoreMonitor;
+
+    @Autowired
+    private SerdeBenchmark serdeBenchmark;
+
+    @Autowired
+    private ProducerProfileBenchmarkService producerProfileBenchmarkService;
 
+    @Autowired
+    private WireFormatSerde<UserBehavior> userBehaviorSerde;
+
+    @Autowired
+    private LoadGenerator loadGenerator;
+
+    @Autowired
+    private KafkaConsumerService kafkaConsumerService;
+
+    @Autowired
+    private ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor;
+
+    /**
+     * 启动压测生成器，未传的参数使用 loadgen.* 配置
+     */
     @PostMapping("/start")
-    public Map<String, Object> startProducer(@RequestParam(defaultValue = "all") String acks) {
+    public Map<String, Object> startProducer(@RequestParam(defaultValue = "all") String acks,
+                                             @RequestParam(required = false) Double rate,
+                                             @RequestParam(required = false) Integer threads,
+                                             @RequestParam(required = false) Integer maxInFlight,
+                                             @RequestParam(required = false) Double userSkew,
+                                             @RequestParam(required = false) Double itemSkew) {
         Map<String, Object> response = new HashMap<>();
         
-        if (isProducing) {
+        if (loadGenerator.isRunning()) {
             response.put("status", "error");
             response.put("message", "Producer is already running");
             return response;
         }
 
         try {
-            isProducing = true;
-            kafkaProducerService.sendUserBehaviorLog(acks);
+            LoadGeneratorProperties settings = loadGenerator.defaults();
+            if (rate != null) settings.setTargetRate(rate);
+            if (threads != null) settings.setThreads(threads);
+            if (maxInFlight != null) settings.setMaxInFlight(maxInFlight);
+            if (userSkew != null) settings.setUserSkew(userSkew);
+            if (itemSkew != null) settings.setItemSkew(itemSkew);
+            kafkaProducerService.sendUserBehaviorLog(acks, settings);
             
             response.put("status", "success");
             response.put("message", "Kafka producer started with acks=" + acks);
+            response.put("settings", settings);
             log.info("Kafka producer started with acks={}", acks);
         } catch (Exception e) {
-            isProducing = false;
             response.put("status", "error");
             response.put("message", "Failed to start producer: " + e.getMessage());
             log.error("Failed to start Kafka producer", e);
@@ -50,18 +108,18 @@ public class KafkaController {
     public Map<String, Object> stopProducer() {
         Map<String, Object> response = new HashMap<>();
         
-        if (!isProducing) {
+        if (!loadGenerator.isRunning()) {
             response.put("status", "error");
             response.put("message", "Producer is not running");
             return response;
         }
 
         try {
-            isProducing = false;
             kafkaProducerService.stopProducer();
             
             response.put("status", "success");
             response.put("message", "Kafka producer stopped");
+            response.put("stats", loadGenerator.getStats());
             log.info("Kafka producer stopped");
         } catch (Exception e) {
             response.put("status", "error");
@@ -72,11 +130,16 @@ public class KafkaController {
         return response;
     }
 
+    /**
+     * 生成器状态：实际速率、错误率与发送延迟分布
+     */
     @GetMapping("/status")
     public Map<String, Object> getStatus() {
         Map<String, Object> response = new HashMap<>();
-        response.put("isProducing", isProducing);
-        response.put("message", isProducing ? "Producer is running" : "Producer is stopped");
+        boolean running = loadGenerator.isRunning();
+        response.put("isProducing", running);
+        response.put("message", running ? "Producer is running" : "Producer is stopped");
+        response.put("stats", loadGenerator.getStats());
         return response;
     }
 
@@ -98,4 +161,92 @@ public class KafkaController {
         
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * 查看流拓扑的输入/输出计数（观察窗口结果下发的写放大），以及运行状态与 store 恢复进度
+     */
+    @GetMapping("/streams/metrics")
+    public Map<String, Object> getStreamMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("emissionMode", windowEmissionStrategy.getMode());
+        response.put("topologies", streamThroughputMetrics.snapshot());
+        response.put("state", streamsHealthCheck.getStats());
+        response.put("restoration", streamsRestoreMonitor.getStats());
+        return response;
+    }
+
+    /**
+     * 对比流拓扑旧/新序列化路径的每事件字节数与CPU耗时
+     */
+    @GetMapping("/streams/serde-benchmark")
+    public Map<String, Object> serdeBenchmark(@RequestParam(defaultValue = "10000") int events,
+                                              @RequestParam(defaultValue = "5") int rounds) {
+        return serdeBenchmark.compareJsonPaths(UserBehavior.class, sampleUserBehaviors(events),
+                UserBehavior::getItemId, rounds);
+    }
+
+    /**
+     * 对比 JSON 与二进制线上格式，并返回当前生产端格式与各格式的解析计数
+     */
+    @GetMapping("/wire-format/benchmark")
+    public Map<String, Object> wireFormatBenchmark(@RequestParam(defaultValue = "10000") int events,
+                                                   @RequestParam(defaultValue = "5") int rounds) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("serde", userBehaviorSerde.getStats());
+        response.put("benchmark", serdeBenchmark.compareWireFormats(UserBehavior.class,
+                sampleUserBehaviors(events), new UserBehaviorBinaryCodec(), rounds));
+        return response;
+    }
+
+    /**
+     * 依次用 LATENCY / BALANCED / THROUGHPUT 档位发送同一批消息，返回吞吐与 p99 发送延迟
+     */
+    @PostMapping("/producer/profile-benchmark")
+    public Map<String, Object> producerProfileBenchmark(@RequestParam(defaultValue = "50000") int records) {
+        return producerProfileBenchmarkService.runAll(records);
+    }
+
+    /**
+     * 在同一档位下依次用 acks=0 / 1 / all 发送同一批消息，对比吞吐与发送延迟
+     */
+    @PostMapping("/producer/acks-benchmark")
+    public Map<String, Object> acksBenchmark(@RequestParam(defaultValue = "50000") int records,
+                                             @RequestParam(defaultValue = "BALANCED") ProducerProfile profile) {
+        return producerProfileBenchmarkService.runAcksLevels(records, profile);
+    }
+
+    /**
+     * 消费端遥测：各消费组的总积压、EWMA 速率、按当前速率消化积压的秒数，分区级 lag 与处理/端到端延迟分位数
+     */
+    @GetMapping("/consumer/stats")
+    public Map<String, Object> consumerStats() {
+        return kafkaConsumerService.getConsumerStats();
+    }
+
+    /**
+     * 虚拟线程模式状态与钉住诊断（未开启 app.virtual-threads.enabled 时只返回运行时版本）
+     */
+    @GetMapping("/virtual-threads")
+    public Map<String, Object> virtualThreads() {
+        Map<String, Object> response = new HashMap<>();
+        VirtualThreadPinningMonitor monitor = pinningMonitor.getIfAvailable();
+        response.put("javaVersion", Runtime.version().toString());
+        response.put("enabled", monitor != null);
+        if (monitor != null) {
+            response.put("pinning", monitor.getStats());
+        }
+        return response;
+    }
+
+    private List<UserBehavior> sampleUserBehaviors(int events) {
+        String[] actionTypes = {"view", "click", "add_to_cart", "purchase"};
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<UserBehavior> samples = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            samples.add(new UserBehavior("user_" + random.nextInt(1000), "item_" + random.nextInt(500),
+                    actionTypes[random.nextInt(actionTypes.length)], System.currentTimeMillis(),
+                    System.currentTimeMillis() + "_" + i));
+        }
+        return samples;
+    }
+}
@@ -33,9 +33,8 @@ public class RebalanceController {
         stats.put("consumerStats", rebalanceDemoConsumerService.getConsumerStats());
         stats.put("rebalanceCount", rebalanceObserverService.getRebalanceCount());
         stats.put("consumerInstanceId", rebalanceDemoConsumerService.getConsumerInstanceId());
+        stats.put("rebalances", rebalanceObserverService.getStats());
         stats.put("timestamp", System.currentTimeMillis());
-        
-        log.info("📊 再平衡统计查询: {}", stats);
         return stats;
     }
     
@@ -45,7 +44,6 @@ public class RebalanceController {
     @PostMapping("/log-status")
     public Map<String, String> logCurrentStatus() {
         rebalanceObserverService.logCurrentStatus();
-        log.info("🔍 手动触发状态日志输出");
         
         Map<String, String> response = new HashMap<>();
         response.put("message", "状态已输出到日志");
@@ -3,6 +3,9 @@ package site.hnfy258.kafkademo.controller;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.service.KafkaConsumerService;
+import site.hnfy258.service.RedisMaintenanceService;
 import site.hnfy258.service.RedisStorageService;
 
 import java.util.HashMap;
@@ -17,6 +20,12 @@ public class RedisController {
     @Autowired
     private RedisStorageService redisStorageService;
 
+    @Autowired
+    private KafkaConsumerService kafkaConsumerService;
+
+    @Autowired
+    private RedisMaintenanceService redisMaintenanceService;
+
     @GetMapping("/stats/today")
     public Map<String, Object> getTodayStats() {
         Map<String, Object> response = new HashMap<>();
@@ -56,7 +65,7 @@ public class RedisController {
                                                @RequestParam(defaultValue = "10") int limit) {
         Map<String, Object> response = new HashMap<>();
         try {
-            List<Object> behaviors = redisStorageService.getUserBehaviorList(userId, limit);
+            List<UserBehavior> behaviors = redisStorageService.getUserBehaviorList(userId, limit);
             response.put("status", "success");
             response.put("userId", userId);
             response.put("behaviors", behaviors);
@@ -69,13 +78,17 @@ public class RedisController {
         return response;
     }
 
+    /**
+     * 启动（或从保存的游标继续）基于 SCAN 的 keyspace 维护任务
+     * deleteOrphans 不传时沿用进度中的设置或 redis.maintenance.delete-orphans，restart=true 丢弃进度重新遍历
+     */
     @PostMapping("/cleanup")
-    public Map<String, Object> cleanupExpiredData() {
+    public Map<String, Object> cleanupExpiredData(@RequestParam(required = false) Boolean deleteOrphans,
+                                                  @RequestParam(defaultValue = "false") boolean restart) {
         Map<String, Object> response = new HashMap<>();
         try {
-            redisStorageService.cleanupExpiredData();
             response.put("status", "success");
-            response.put("message", "Cleanup completed");
+            response.put("progress", redisMaintenanceService.start(deleteOrphans, restart));
         } catch (Exception e) {
             response.put("status", "error");
             response.put("message", "Cleanup failed: " + e.getMessage());
@@ -84,6 +97,36 @@ public class RedisController {
         return response;
     }
 
+    /**
+     * 维护任务进度：游标、已扫描/已删除数量、各前缀的 key 数与内存估算
+     */
+    @GetMapping("/cleanup")
+    public Map<String, Object> getCleanupProgress() {
+        return redisMaintenanceService.getProgress();
+    }
+
+    @PostMapping("/cleanup/stop")
+    public Map<String, Object> stopCleanup() {
+        redisMaintenanceService.stop();
+        return redisMaintenanceService.getProgress();
+    }
+
+    /**
+     * 自动提交消费者写 Redis 的吞吐（按批 pipeline 或逐条，取决于 kafka.consumer.batch-storage）
+     */
+    @GetMapping("/ingest-stats")
+    public Map<String, Object> getIngestStats() {
+        return kafkaConsumerService.getIngestStats();
+    }
+
+    /**
+     * 手动提交消费者的并行处理状态（各 lane 共享的在途上限、分区内未完成的偏移量、已提交位置）
+     */
+    @GetMapping("/parallel-stats")
+    public Map<String, Object> getParallelStats() {
+        return kafkaConsumerService.getParallelStats();
+    }
+
     @GetMapping("/health")
     public Map<String, Object> healthCheck() {
         Map<String, Object> response = new HashMap<>();
@@ -92,6 +135,8 @@ public class RedisController {
             response.put("status", "success");
             response.put("message", "Redis storage service is healthy");
             response.put("totalProcessedMessages", processedCount);
+            response.put("dedup", redisStorageService.getDedupStats());
+            response.put("dailyStatsAggregation", redisStorageService.getDailyStatsAggregation());
         } catch (Exception e) {
             response.put("status", "error");
             response.put("message", "Redis storage service is unhealthy: " + e.getMessage());
@@ -0,0 +1,217 @@
+package site.hnfy258.kafkademo.loadgen;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.errors.InterruptException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import site.hnfy258.entity.UserBehavior;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户行为压测生成器
+ * 多个发送线程共享一个令牌桶控制目标速率，用信号量限制在途条数实现背压；
+ * 用户和商品按 Zipf 分布采样以模拟热点 Key。所有回调共用一个 Callback 实例，
+ * 发送延迟由记录的 CreateTime 与回调时刻计算，不为每条消息分配闭包。
+ */
+@Component
+@Slf4j
+public class LoadGenerator {
+
+    private static final String[] ACTION_TYPES = {"click", "view", "add_to_cart", "purchase"};
+
+    private final LoadGeneratorProperties defaults;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AckCallback callback = new AckCallback();
+
+    private volatile Run current;
+    private long lastSnapshotNanos = System.nanoTime();
+    private long lastSnapshotAcked;
+
+    public LoadGenerator(LoadGeneratorProperties defaults) {
+        this.defaults = defaults;
+    }
+
+    public LoadGeneratorProperties defaults() {
+        return defaults.copy();
+    }
+
+    public boolean isRunning() {
+        return current != null;
+    }
+
+    public synchronized void start(KafkaTemplate<String, UserBehavior> template, LoadGeneratorProperties settings) {
+        if (current != null) {
+            throw new IllegalStateException("Load generator is already running");
+        }
+        sent.reset();
+        acked.reset();
+        failed.reset();
+        latency.reset();
+        lastSnapshotNanos = System.nanoTime();
+        lastSnapshotAcked = 0;
+
+        Run run = new Run(template.getProducerFactory().createProducer(), settings);
+        current = run;
+        for (int i = 0; i < settings.getThreads(); i++) {
+            run.workers.submit(() -> sendLoop(run));
+        }
+        log.info("压测生成器启动: targetRate={}/s, threads={}, maxInFlight={}, userSkew={}, itemSkew={}",
+                settings.getTargetRate(), settings.getThreads(), settings.getMaxInFlight(),
+                settings.getUserSkew(), settings.getItemSkew());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        Run run = current;
+        if (run == null) {
+            return;
+        }
+        run.workers.shutdownNow();
+        try {
+            if (!run.workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("压测发送线程未在5秒内退出");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 等待在途消息全部回调，保证停止后的统计是完整的
+        run.producer.flush();
+        run.producer.close();
+        current = null;
+        log.info("压测生成器停止: sent={}, acked={}, failed={}", sent.sum(), acked.sum(), failed.sum());
+    }
+
+    private void sendLoop(Run run) {
+        LoadGeneratorProperties settings = run.settings;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String threadTag = Thread.currentThread().getName();
+        long sequence = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                run.pacer.acquire();
+                run.inFlight.acquire();
+                long now = System.currentTimeMillis();
+                UserBehavior behavior = new UserBehavior(
+                        "user_" + run.userSampler.next(),
+                        "item_" + run.itemSampler.next(),
+                        ACTION_TYPES[random.nextInt(ACTION_TYPES.length)],
+                        now,
+                        now + "_" + threadTag + "_" + sequence++);
+                try {
+                    run.producer.send(new ProducerRecord<>(settings.getTopic(), null, now,
+                            behavior.getUserId(), behavior), callback);
+                    sent.increment();
+                } catch (InterruptException e) {
+                    // 停止时线程可能正阻塞在 buffer.memory 上
+                    run.inFlight.release();
+                    return;
+                } catch (RuntimeException e) {
+                    run.inFlight.release();
+                    failed.increment();
+                    log.error("发送压测消息失败: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        long ackedNow = acked.sum();
+        long failedNow = failed.sum();
+        double intervalSeconds = Math.max(1e-9, (now - lastSnapshotNanos) / 1e9);
+        double currentRate = (ackedNow - lastSnapshotAcked) / intervalSeconds;
+        lastSnapshotNanos = now;
+        lastSnapshotAcked = ackedNow;
+
+        Run run = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", run != null);
+        if (run != null) {
+            double elapsedSeconds = Math.max(1e-9, (now - run.startedNanos) / 1e9);
+            stats.put("targetRate", run.settings.getTargetRate());
+            stats.put("threads", run.settings.getThreads());
+            stats.put("elapsedSeconds", Math.round(elapsedSeconds * 10) / 10.0);
+            stats.put("achievedRate", Math.round(ackedNow / elapsedSeconds));
+            stats.put("inFlight", run.settings.getMaxInFlight() - run.inFlight.availablePermits());
+        }
+        stats.put("currentRate", Math.round(currentRate));
+        stats.put("sent", sent.sum());
+        stats.put("acked", ackedNow);
+        stats.put("failed", failedNow);
+        long completed = ackedNow + failedNow;
+        stats.put("errorRate", completed == 0 ? 0.0 : (double) failedNow / completed);
+        stats.put("latency", latency.snapshotMillis());
+        return stats;
+    }
+
+    /**
+     * 所有发送共用的回调：释放在途许可并记录结果
+     */
+    private class AckCallback implements Callback {
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            Run run = current;
+            if (run != null) {
+                run.inFlight.release();
+            }
+            if (exception != null) {
+                long failures = failed.sum();
+                failed.increment();
+                if (failures % 1000 == 0) {
+                    log.error("压测消息发送失败(累计{}): {}", failures + 1, exception.getMessage());
+                }
+                return;
+            }
+            acked.increment();
+            if (metadata.hasTimestamp()) {
+                latency.recordMicros((System.currentTimeMillis() - metadata.timestamp()) * 1000);
+            }
+        }
+    }
+
+    private static final class Run {
+        private final Producer<String, UserBehavior> producer;
+        private final LoadGeneratorProperties settings;
+        private final TokenBucketPacer pacer;
+        private final Semaphore inFlight;
+        private final ZipfSampler userSampler;
+        private final ZipfSampler itemSampler;
+        private final ExecutorService workers;
+        private final long startedNanos = System.nanoTime();
+
+        private Run(Producer<String, UserBehavior> producer, LoadGeneratorProperties settings) {
+            this.producer = producer;
+            this.settings = settings;
+            this.pacer = new TokenBucketPacer(settings.getTargetRate(), settings.getBurst());
+            this.inFlight = new Semaphore(settings.getMaxInFlight());
+            this.userSampler = new ZipfSampler(settings.getUsers(), settings.getUserSkew());
+            this.itemSampler = new ZipfSampler(settings.getItems(), settings.getItemSkew());
+            AtomicInteger index = new AtomicInteger();
+            this.workers = Executors.newFixedThreadPool(settings.getThreads(), r -> {
+                Thread thread = new Thread(r, "loadgen-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package site.hnfy258.kafkademo.loadgen;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 压测生成器默认参数（loadgen.*），/kafka/start 的请求参数可以按次覆盖
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "loadgen")
+public class LoadGeneratorProperties {
+
+    /**
+     * 目标发送速率（条/秒），0 表示不限速，仅受在途上限约束
+     */
+    private double targetRate = 5000;
+
+    /**
+     * 令牌桶容量，允许的瞬时突发条数
+     */
+    private int burst = 100;
+
+    private int threads = 2;
+
+    /**
+     * 已 send 但未收到回调的最大条数，超过后发送线程阻塞，避免把 buffer.memory 打满
+     */
+    private int maxInFlight = 10000;
+
+    private int users = 1000;
+    private int items = 500;
+
+    /**
+     * Zipf 指数，0 为均匀分布，1 左右接近真实热点分布
+     */
+    private double userSkew = 0.8;
+    private double itemSkew = 1.0;
+
+    private String topic = "user_behavior_logs";
+
+    public LoadGeneratorProperties copy() {
+        LoadGeneratorProperties copy = new LoadGeneratorProperties();
+        copy.setTargetRate(targetRate);
+        copy.setBurst(burst);
+        copy.setThreads(threads);
+        copy.setMaxInFlight(maxInFlight);
+        copy.setUsers(users);
+        copy.setItems(items);
+        copy.setUserSkew(userSkew);
+        copy.setItemSkew(itemSkew);
+        copy.setTopic(topic);
+        return copy;
+    }
+}
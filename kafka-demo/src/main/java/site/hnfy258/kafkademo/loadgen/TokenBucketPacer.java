@@ -0,0 +1,45 @@
+package site.hnfy258.kafkademo.loadgen;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限速器
+ * 令牌按目标速率匀速生成，最多积攒 burst 个；令牌不足时调用方"预支"并睡眠到令牌可用，
+ * 因此多个线程共享同一个实例时整体速率仍然稳定在目标值。rate <= 0 表示不限速。
+ */
+public class TokenBucketPacer {
+
+    private final double nanosPerPermit;
+    private final double maxBurst;
+
+    private double storedPermits;
+    private long lastRefillNanos;
+
+    public TokenBucketPacer(double permitsPerSecond, double burst) {
+        this.nanosPerPermit = permitsPerSecond > 0 ? 1_000_000_000.0 / permitsPerSecond : 0;
+        this.maxBurst = Math.max(1, burst);
+        this.storedPermits = 0;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    public void acquire(int permits) throws InterruptedException {
+        if (nanosPerPermit == 0 || permits <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            storedPermits = Math.min(maxBurst, storedPermits + (now - lastRefillNanos) / nanosPerPermit);
+            lastRefillNanos = now;
+            storedPermits -= permits;
+            waitNanos = storedPermits >= 0 ? 0 : (long) (-storedPermits * nanosPerPermit);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -1,92 +1,179 @@
 package site.hnfy258.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.MessageListenerContainer;
 import org.springframework.stereotype.Service;
+import site.hnfy258.common.consumer.ConsumerTelemetry;
 import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.consumer.ParallelConsumerEngine;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 @Slf4j
 public class KafkaConsumerService {
-    private final ObjectMapper objectMapper;
+    public static final String AUTO_COMMIT_GROUP_ID = "user_behavior_group_springboot";
+    public static final String MANUAL_COMMIT_GROUP_ID = "user_behavior_group_springboot_manual";
+    private static final String MANUAL_LISTENER_ID = "userBehaviorManual";
+
     private final RedisStorageService redisStorageService;
+    private final ParallelConsumerEngine<String, UserBehavior> parallelEngine;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ConsumerTelemetry telemetry;
     // 消息计数器
     private final AtomicLong autoCommitReceivedCount = new AtomicLong(0);
     private final AtomicLong manualCommitReceivedCount = new AtomicLong(0);
 
-    public KafkaConsumerService(ObjectMapper objectMapper, RedisStorageService redisStorageService) {
-        this.objectMapper = objectMapper;
+    // 自动提交消费者的 Redis 写入耗时统计
+    private final LongAdder storedRecords = new LongAdder();
+    private final LongAdder storedBatches = new LongAdder();
+    private final LongAdder storageNanos = new LongAdder();
+
+    private final boolean batchStorage;
+    // 在途记录达到上限时消费线程最多等待的时间，之后回退位置并暂停拉取
+    private final Duration acquireTimeout;
+
+    public KafkaConsumerService(RedisStorageService redisStorageService,
+                                ParallelConsumerEngine<String, UserBehavior> parallelEngine,
+                                KafkaListenerEndpointRegistry listenerRegistry,
+                                ConsumerTelemetry telemetry,
+                                @Value("${kafka.consumer.batch-storage:true}") boolean batchStorage,
+                                @Value("${kafka.parallel-consumer.acquire-timeout-ms:500}") long acquireTimeoutMs) {
         this.redisStorageService = redisStorageService;
+        this.parallelEngine = parallelEngine;
+        this.listenerRegistry = listenerRegistry;
+        this.telemetry = telemetry;
+        telemetry.track(AUTO_COMMIT_GROUP_ID);
+        telemetry.track(MANUAL_COMMIT_GROUP_ID);
+        this.batchStorage = batchStorage;
+        this.acquireTimeout = Duration.ofMillis(acquireTimeoutMs);
     }
 
-    @KafkaListener(topics = "user_behavior_logs", groupId = "user_behavior_group_springboot", containerFactory = "kafkaListenerContainerFactory")
-    public void listenAutoCommit(ConsumerRecord<String, String> record) {
-        try {
-            long currentCount = autoCommitReceivedCount.incrementAndGet();
+    /**
+     * 自动提交消费者，按批接收一次 poll 的消息并整批写入 Redis，方法返回后由容器同步提交本批偏移量，
+     * 写入失败时抛出异常，本批不提交
+     * kafka.consumer.batch-storage=false 时退回逐条存储，用于对比两种写入方式的吞吐
+     */
+    @KafkaListener(topics = "user_behavior_logs", groupId = AUTO_COMMIT_GROUP_ID, containerFactory = "kafkaListenerContainerFactory")
+    public void listenAutoCommit(List<ConsumerRecord<String, UserBehavior>> records) {
+        autoCommitReceivedCount.addAndGet(records.size());
 
+        // 消息体已由 WireFormatSerde 解析，无法解析的消息为 null
+        List<UserBehavior> userBehaviors = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, UserBehavior> record : records) {
+            if (record.value() != null) {
+                userBehaviors.add(record.value());
+            }
+        }
+        if (userBehaviors.isEmpty()) {
+            return;
+        }
 
+        // 写入失败直接抛出，容器不提交本批，由错误处理器按退避重放
+        long start = System.nanoTime();
+        if (batchStorage) {
+            redisStorageService.storeUserBehaviors(userBehaviors);
+        } else {
+            for (UserBehavior userBehavior : userBehaviors) {
+                // 存储到Redis（内部已包含幂等性检查）
+                redisStorageService.storeUserBehavior(userBehavior);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        storageNanos.add(elapsed);
+        storedRecords.add(userBehaviors.size());
+        storedBatches.increment();
 
-            // 解析消息
-            UserBehavior userBehavior = objectMapper.readValue(record.value(), UserBehavior.class);
+        telemetry.recordProcessingTime(AUTO_COMMIT_GROUP_ID, elapsed);
+        for (ConsumerRecord<String, UserBehavior> record : records) {
+            telemetry.recordConsumed(AUTO_COMMIT_GROUP_ID, record,
+                    record.value() != null ? record.value().getTimestamp() : 0);
+        }
+    }
 
-            // 存储到Redis（内部已包含幂等性检查）
-            redisStorageService.storeUserBehavior(userBehavior);
+    /**
+     * 手动提交偏移量的消费者：一次 poll 的记录交给并行引擎按 userId 分 lane 处理（Key 内保序），
+     * 随后在消费线程上提交各分区连续完成的偏移量；在途记录达到上限时暂停拉取，
+     * 等待超时仍未接收的记录回退拉取位置，恢复后重新拉取
+     */
+    @KafkaListener(id = MANUAL_LISTENER_ID, idIsGroup = false, topics = "user_behavior_logs",
+            groupId = MANUAL_COMMIT_GROUP_ID, containerFactory = "manualAckKafkaListenerContainerFactory")
+    public void listenManualCommit(List<ConsumerRecord<String, UserBehavior>> records, Consumer<?, ?> consumer)
+            throws InterruptedException {
+        List<ConsumerRecord<String, UserBehavior>> remaining = parallelEngine.submit(records, acquireTimeout);
+        manualCommitReceivedCount.addAndGet(records.size() - remaining.size());
+        if (!remaining.isEmpty()) {
+            ParallelConsumerEngine.rewind(consumer, remaining);
+        }
+        parallelEngine.commitCompleted(consumer);
 
-            // 日志输出
-            if (currentCount % 100 == 0) {
-//                log.info("Auto-commit Consumer received {} messages. Last message ID: {}", currentCount, userBehavior.getMessageId());
+        if (!remaining.isEmpty() || parallelEngine.isSaturated()) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(MANUAL_LISTENER_ID);
+            if (container != null && !container.isPauseRequested()) {
+                log.info("Manual-commit Consumer paused, {} records in flight", parallelEngine.inFlightCount());
+                container.pause();
             }
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Error processing message in auto-commit consumer: {}", e.getMessage(), e);
+    /**
+     * 没有新消息（或已暂停）时继续提交已完成的偏移量，在途记录降到低水位后恢复拉取
+     */
+    @EventListener(condition = "event.listenerId.startsWith('" + MANUAL_LISTENER_ID + "-')")
+    public void onManualConsumerIdle(ListenerContainerIdleEvent event) {
+        parallelEngine.commitCompleted(event.getConsumer());
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(MANUAL_LISTENER_ID);
+        if (container != null && container.isPauseRequested() && parallelEngine.isDrained()) {
+            log.info("Manual-commit Consumer resumed, {} records in flight", parallelEngine.inFlightCount());
+            container.resume();
         }
     }
 
+    /**
+     * 获取消费统计信息：接收计数以及各消费组的 lag、分区速率、处理耗时与端到端延迟
+     */
+    public Map<String, Object> getConsumerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("autoCommitReceived", autoCommitReceivedCount.get());
+        stats.put("manualCommitReceived", manualCommitReceivedCount.get());
+        stats.put("telemetry", telemetry.getStats());
+        return stats;
+    }
 
     /**
-     * 手动提交偏移量的消费者
-     * 注意：在 application.properties 中需要配置 spring.kafka.listener.ack-mode=MANUAL 或 BATCH
-     * 这里我们使用 BATCH 模式，并手动 ack
+     * 自动提交消费者的写入吞吐：按 Redis 写入耗时计算每秒可存储的消息数
      */
-    @KafkaListener(topics = "user_behavior_logs", groupId = "user_behavior_group_springboot_manual", containerFactory = "manualAckKafkaListenerContainerFactory")
-    public void listenManualCommit(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) {
-        try {
-            if (!records.isEmpty()) {
-                log.info("Manual-commit Consumer received {} records. First offset: {}", records.size(), records.get(0).offset());
-                
-                for (ConsumerRecord<String, String> record : records) {
-                    manualCommitReceivedCount.incrementAndGet();
-                    UserBehavior userBehavior = objectMapper.readValue(record.value(), UserBehavior.class);
-                    
-                    // 存储到Redis（内部已包含幂等性检查）
-                    redisStorageService.storeUserBehavior(userBehavior);
-                }
-
-                // 批量处理完所有消息后，手动提交偏移量
-                acknowledgment.acknowledge();
-                log.info("Manual-commit Consumer: Acknowledged {} records. Last offset: {}", records.size(), records.get(records.size()-1).offset());
-                //模拟消息积压
-                Thread.sleep(1000);
-            }
-        } catch (Exception e) {
-            log.error("Error processing message in manual-commit consumer: {}", e.getMessage(), e);
-            // 如果处理失败，不调用 acknowledgment.acknowledge()，消息会在下次 poll 时重新被拉取
-        }
+    public Map<String, Object> getIngestStats() {
+        long records = storedRecords.sum();
+        long batches = storedBatches.sum();
+        long nanos = storageNanos.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", batchStorage ? "BATCH_PIPELINE" : "PER_RECORD");
+        stats.put("records", records);
+        stats.put("batches", batches);
+        stats.put("avgBatchSize", batches == 0 ? 0 : records / batches);
+        stats.put("avgBatchMs", batches == 0 ? 0 : nanos / batches / 1_000_000.0);
+        stats.put("recordsPerSecond", nanos == 0 ? 0 : (long) (records * 1_000_000_000.0 / nanos));
+        return stats;
     }
-    
+
     /**
-     * 获取消费统计信息
+     * 手动提交消费者的并行引擎状态：在途记录、各分区待完成数与已提交位置
      */
-    public String getConsumerStats() {
-        return String.format("Auto-commit Consumer: %d messages, Manual-commit Consumer: %d messages", 
-                           autoCommitReceivedCount.get(), manualCommitReceivedCount.get());
+    public Map<String, Object> getParallelStats() {
+        return parallelEngine.getStats();
     }
 }
\ No newline at end of file
@@ -1,109 +1,70 @@
 package site.hnfy258.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import site.hnfy258.common.config.ProducerProfile;
 import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.config.AcksMode;
+import site.hnfy258.kafkademo.config.AcksTemplateRegistry;
+import site.hnfy258.kafkademo.loadgen.LoadGenerator;
+import site.hnfy258.kafkademo.loadgen.LoadGeneratorProperties;
 
 import java.time.Instant;
-import java.util.Collections;
 import java.util.Random;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Service
 @Slf4j
 public class KafkaProducerService {
     private static final String TOPIC = "user_behavior_logs";
-    private final KafkaTemplate<String,String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    // 按 acks 预建的模板；单条发送用默认档位，持续压测用 THROUGHPUT 档位（大批次 + zstd）
+    private final AcksTemplateRegistry acksTemplates;
+    private final LoadGenerator loadGenerator;
 
     private final Random random = new Random();
     private final String[] actionTypes = {"click", "view", "add_to_cart", "purchase"};
-    private long messageCount = 0;
-    private Thread producerThread;
+    private final AtomicLong messageCount = new AtomicLong();
 
-    public KafkaProducerService(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
-        this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+    public KafkaProducerService(AcksTemplateRegistry acksTemplates, LoadGenerator loadGenerator) {
+        this.acksTemplates = acksTemplates;
+        this.loadGenerator = loadGenerator;
     }
 
     private UserBehavior generateUserBehavior() {
         String userId = "user_" + random.nextInt(1000);
         String itemId = "item_" + random.nextInt(500);
         String actionType = actionTypes[random.nextInt(actionTypes.length)];
-        String messageId = System.currentTimeMillis() + "_" + messageCount; // 用于幂等性演示
+        String messageId = System.currentTimeMillis() + "_" + messageCount.getAndIncrement(); // 用于幂等性演示
 
         return new UserBehavior(userId, itemId, actionType, Instant.now().toEpochMilli(), messageId);
     }
 
-    public void sendUserBehaviorLog(String acksConfig){
-        kafkaTemplate.getProducerFactory().updateConfigs(Collections.singletonMap("acks",acksConfig));
-        log.info("开始发送用户行为日志，配置acks: {}", acksConfig);
-
-        // 停止之前的线程（如果存在）
+    /**
+     * 以 THROUGHPUT 档位启动压测生成器，速率、线程数、热点分布等见 {@link LoadGeneratorProperties}
+     */
+    public void sendUserBehaviorLog(String acksConfig, LoadGeneratorProperties settings) {
+        KafkaTemplate<String, UserBehavior> template =
+                acksTemplates.get(ProducerProfile.THROUGHPUT, AcksMode.fromConfig(acksConfig));
         stopProducer();
-
-        producerThread = new Thread(()->{
-            try{
-                while(!Thread.currentThread().isInterrupted()){
-                    UserBehavior userBehavior = generateUserBehavior();
-                    String key = userBehavior.getUserId();
-                    String value = objectMapper.writeValueAsString(userBehavior);
-
-                    CompletableFuture<SendResult<String,String>> future = kafkaTemplate.send(TOPIC, key, value);
-
-                    future.whenComplete((result,ex)->{
-                        if (ex == null) {
-                            if (messageCount % 100 == 0) {
-                                log.info("Sent message: topic={}, partition={}, offset={}, key={}, messageId={}",
-                                        result.getRecordMetadata().topic(),
-                                        result.getRecordMetadata().partition(),
-                                        result.getRecordMetadata().offset(),
-                                        key, userBehavior.getMessageId());
-                            }
-                        } else {
-                            log.error("Error sending message: {}", ex.getMessage(), ex);
-                        }
-                    });
-                    messageCount++;
-                    if (messageCount % 100 == 0) {
-                        log.info("Sent {} messages.", messageCount);
-                    }
-
-//                    TimeUnit.MILLISECONDS.sleep(100);
-                }
-//            }catch (InterruptedException e){
-//                log.info("Producer thread interrupted, stopping...");
-//                Thread.currentThread().interrupt();
-            }catch (Exception e){
-                log.error("Error in Kafka producer thread: {}", e.getMessage(), e);
-            }
-        });
-        producerThread.start();
+        log.info("开始发送用户行为日志，配置acks: {}", acksConfig);
+        loadGenerator.start(template, settings);
     }
 
     public void stopProducer() {
-        if (producerThread != null && producerThread.isAlive()) {
-            producerThread.interrupt();
-            try {
-                producerThread.join(1000); // 等待最多1秒
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
+        loadGenerator.stop();
     }
 
     public void sendSingleMessage(String acksConfig) {
+        // 非法的 acks 直接抛给调用方
+        KafkaTemplate<String, UserBehavior> kafkaTemplate = acksTemplates.get(AcksMode.fromConfig(acksConfig));
         try {
-            kafkaTemplate.getProducerFactory().updateConfigs(Collections.singletonMap("acks", acksConfig));
-            
             UserBehavior userBehavior = generateUserBehavior();
             String key = userBehavior.getUserId();
-            String value = objectMapper.writeValueAsString(userBehavior);
 
-            CompletableFuture<SendResult<String, String>> future = kafkaTemplate.send(TOPIC, key, value);
+            CompletableFuture<SendResult<String, UserBehavior>> future = kafkaTemplate.send(TOPIC, key, userBehavior);
             
             future.whenComplete((result, ex) -> {
                 if (ex == null) {
@@ -116,14 +77,8 @@ public class KafkaProducerService {
                     log.error("Error sending single message: {}", ex.getMessage(), ex);
                 }
             });
-            
-            messageCount++;
         } catch (Exception e) {
             log.error("Error sending single message: {}", e.getMessage(), e);
         }
     }
-
-
-
-
 }
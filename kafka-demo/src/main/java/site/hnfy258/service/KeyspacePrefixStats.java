@@ -0,0 +1,48 @@
+package site.hnfy258.service;
+
+import lombok.Data;
+
+/**
+ * 某个 key 前缀的扫描统计，内存按 MEMORY USAGE 抽样估算
+ * histogram[i] 为抽样中占用内存在 (2^(i-1), 2^i] 字节区间的 key 数
+ */
+@Data
+public class KeyspacePrefixStats {
+
+    private static final int HISTOGRAM_BUCKETS = 32;
+
+    private long keys;
+    private long sampled;
+    private long sampledBytes;
+    private long sampledWithoutTtl;
+    private long deleted;
+    private long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+    public void recordSample(long bytes, boolean hasTtl) {
+        sampled++;
+        sampledBytes += bytes;
+        if (!hasTtl) {
+            sampledWithoutTtl++;
+        }
+        int bucket = bytes <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(bytes - 1);
+        histogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)]++;
+    }
+
+    public KeyspacePrefixStats copy() {
+        KeyspacePrefixStats copy = new KeyspacePrefixStats();
+        copy.keys = keys;
+        copy.sampled = sampled;
+        copy.sampledBytes = sampledBytes;
+        copy.sampledWithoutTtl = sampledWithoutTtl;
+        copy.deleted = deleted;
+        copy.histogram = histogram.clone();
+        return copy;
+    }
+
+    /**
+     * 按抽样均值估算该前缀的总内存
+     */
+    public long getEstimatedBytes() {
+        return sampled == 0 ? 0 : sampledBytes / sampled * keys;
+    }
+}
@@ -0,0 +1,158 @@
+package site.hnfy258.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import site.hnfy258.entity.UserBehavior;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息去重存储
+ * 已处理的消息ID按事件时间写入按小时分桶的 SET（processed_message_ids:{分片}:yyyyMMddHH），
+ * 同一条消息重放时事件时间不变，总是落在同一个桶里，因此只需检查一个桶。
+ * 桶只在创建时设置一次过期时间，到期自然删除，不会像单个大 SET 那样因不断续期而永不过期。
+ * 处理总数改为按天的 HyperLogLog（固定约12KB），统计窗口内各天的并集。
+ * 分片由用户ID决定，用作 hash tag：同一用户的去重桶、计数和时间线在 Redis Cluster 中落在同一个 slot，
+ * 写入脚本每次只处理一个分片的消息，所有 key 都通过 KEYS 传入。
+ * 进程内的 {@link RecentlySeenRing} 可在查询 Redis 之前拦截本实例刚处理过的重复消息。
+ */
+@Service
+@Slf4j
+public class MessageDedupStore {
+
+    private static final String BUCKET_PREFIX = "processed_message_ids:";
+    private static final String COUNT_PREFIX = "processed_message_hll:";
+    private static final DateTimeFormatter BUCKET_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RecentlySeenRing recentlySeen;
+    private final Duration window;
+    private final int slotShards;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteChecks = new LongAdder();
+
+    public MessageDedupStore(StringRedisTemplate stringRedisTemplate,
+                             @Value("${redis.dedup.window-hours:168}") int windowHours,
+                             @Value("${redis.dedup.local-capacity:100000}") int localCapacity,
+                             @Value("${redis.ingest.slot-shards:16}") int slotShards) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.window = Duration.ofHours(Math.max(1, windowHours));
+        this.recentlySeen = new RecentlySeenRing(localCapacity);
+        this.slotShards = Math.max(1, slotShards);
+    }
+
+    /**
+     * 用户所属的分片
+     */
+    public int shardOf(String userId) {
+        return userId == null ? 0 : Math.floorMod(userId.hashCode(), slotShards);
+    }
+
+    /**
+     * 分片的 hash tag，拼在 key 中使同一分片的 key 落在同一个 slot
+     */
+    public static String shardTag(int shard) {
+        return "{" + shard + "}";
+    }
+
+    /**
+     * 消息所属的去重桶，按事件时间所在小时划分；没有事件时间时使用当前时间
+     */
+    public String bucketKey(UserBehavior userBehavior) {
+        long timestamp = userBehavior.getTimestamp() > 0 ? userBehavior.getTimestamp() : System.currentTimeMillis();
+        return BUCKET_PREFIX + shardTag(shardOf(userBehavior.getUserId())) + ":"
+                + BUCKET_FORMAT.format(Instant.ofEpochMilli(timestamp).atZone(zone));
+    }
+
+    /**
+     * 分片当天的处理计数 HyperLogLog
+     */
+    public String countKey(int shard) {
+        return countKey(shard, LocalDate.now(zone));
+    }
+
+    private String countKey(int shard, LocalDate day) {
+        return COUNT_PREFIX + shardTag(shard) + ":" + day.format(DAY_FORMAT);
+    }
+
+    public long bucketTtlSeconds() {
+        return window.getSeconds();
+    }
+
+    public long countTtlSeconds() {
+        return window.plusDays(1).getSeconds();
+    }
+
+    /**
+     * 本实例最近是否处理过该消息，命中时无需再查询 Redis
+     */
+    public boolean seenLocally(String messageId) {
+        if (recentlySeen.contains(messageId)) {
+            localHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录已经过 Redis 去重（写入或确认重复）的消息
+     */
+    public void markSeen(String messageId) {
+        recentlySeen.add(messageId);
+    }
+
+    public boolean isProcessed(UserBehavior userBehavior) {
+        if (seenLocally(userBehavior.getMessageId())) {
+            return true;
+        }
+        remoteChecks.increment();
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForSet()
+                .isMember(bucketKey(userBehavior), userBehavior.getMessageId()));
+    }
+
+    public void recordRemoteChecks(int count) {
+        remoteChecks.add(count);
+    }
+
+    /**
+     * 去重窗口内处理过的消息数（HyperLogLog 估算，标准误差约0.81%）
+     * 每个分片在自己的 slot 内合并各天的计数，不同分片的消息互不重叠，直接相加
+     */
+    public Long getProcessedCount() {
+        long days = Math.max(1, window.toDays());
+        LocalDate today = LocalDate.now(zone);
+        long total = 0;
+        for (int shard = 0; shard < slotShards; shard++) {
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < days; i++) {
+                keys.add(countKey(shard, today.minusDays(i)));
+            }
+            Long count = stringRedisTemplate.opsForHyperLogLog().size(keys.toArray(new String[0]));
+            total += count != null ? count : 0;
+        }
+        return total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowHours", window.toHours());
+        stats.put("localRingSize", recentlySeen.size());
+        stats.put("localHits", localHits.sum());
+        stats.put("remoteChecks", remoteChecks.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,165 @@
+package site.hnfy258.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import site.hnfy258.common.config.ProducerProfile;
+import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.config.AcksMode;
+import site.hnfy258.kafkademo.config.KafkaConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 生产者档位基准：对每个 {@link ProducerProfile}（或每个 {@link AcksMode}）用独立的生产者发送同一批消息，
+ * 统计 records/s、bytes/s（序列化后、压缩前）、压缩率以及发送延迟分位数
+ */
+@Service
+@Slf4j
+public class ProducerProfileBenchmarkService {
+
+    private static final String BENCHMARK_TOPIC = "user_behavior_benchmark";
+    private static final long SEND_TIMEOUT_SECONDS = 120;
+
+    private final KafkaConfig kafkaConfig;
+
+    public ProducerProfileBenchmarkService(KafkaConfig kafkaConfig) {
+        this.kafkaConfig = kafkaConfig;
+    }
+
+    public Map<String, Object> runAll(int records) {
+        List<UserBehavior> samples = sampleEvents(records);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("topic", BENCHMARK_TOPIC);
+        result.put("records", records);
+        for (ProducerProfile profile : ProducerProfile.values()) {
+            result.put(profile.name(), run(profile.name(), kafkaConfig.newProducerFactory(profile), samples));
+        }
+        return result;
+    }
+
+    /**
+     * 固定档位，依次用 acks=0 / 1 / all 发送同一批消息，对比确认级别对吞吐与延迟的影响
+     */
+    public Map<String, Object> runAcksLevels(int records, ProducerProfile profile) {
+        List<UserBehavior> samples = sampleEvents(records);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("topic", BENCHMARK_TOPIC);
+        result.put("records", records);
+        result.put("profile", profile);
+        for (AcksMode acks : AcksMode.values()) {
+            result.put("acks=" + acks.getAcks(),
+                    run(profile + "/acks=" + acks.getAcks(), kafkaConfig.newProducerFactory(profile, acks), samples));
+        }
+        return result;
+    }
+
+    private Map<String, Object> run(String label, DefaultKafkaProducerFactory<String, UserBehavior> factory,
+                                    List<UserBehavior> samples) {
+        try {
+            KafkaTemplate<String, UserBehavior> template = new KafkaTemplate<>(factory);
+            // 未完成的槽位保持 0；超时返回后回调仍可能在写，只能读快照，不能原地排序
+            AtomicLongArray latencies = new AtomicLongArray(samples.size());
+            AtomicLong bytes = new AtomicLong();
+            AtomicLong errors = new AtomicLong();
+            CountDownLatch done = new CountDownLatch(samples.size());
+
+            long start = System.nanoTime();
+            for (int i = 0; i < samples.size(); i++) {
+                UserBehavior event = samples.get(i);
+                int index = i;
+                long sentAt = System.nanoTime();
+                template.send(BENCHMARK_TOPIC, event.getUserId(), event).whenComplete((result, ex) -> {
+                    latencies.set(index, Math.max(1, System.nanoTime() - sentAt));
+                    if (ex == null) {
+                        bytes.addAndGet(Math.max(0, result.getRecordMetadata().serializedKeySize())
+                                + Math.max(0, result.getRecordMetadata().serializedValueSize()));
+                    } else {
+                        errors.incrementAndGet();
+                    }
+                    done.countDown();
+                });
+            }
+            template.flush();
+            boolean completed = done.await(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            long[] finished = finishedLatencies(latencies);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("completed", completed);
+            stats.put("finished", finished.length);
+            stats.put("errors", errors.get());
+            stats.put("recordsPerSecond", (long) (finished.length * 1_000_000_000.0 / elapsed));
+            stats.put("bytesPerSecond", (long) (bytes.get() * 1_000_000_000.0 / elapsed));
+            stats.put("compressionRate", producerMetric(template, "compression-rate-avg"));
+            stats.put("p50LatencyMs", percentileMillis(finished, 0.50));
+            stats.put("p99LatencyMs", percentileMillis(finished, 0.99));
+            stats.put("maxLatencyMs", percentileMillis(finished, 1.0));
+            log.info("Producer benchmark {}: {}", label, stats);
+            return stats;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Producer benchmark interrupted", e);
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    /**
+     * 复制出已完成发送的延迟样本并排序，未完成的不参与分位数计算
+     */
+    private static long[] finishedLatencies(AtomicLongArray latencies) {
+        long[] finished = new long[latencies.length()];
+        int count = 0;
+        for (int i = 0; i < latencies.length(); i++) {
+            long latency = latencies.get(i);
+            if (latency > 0) {
+                finished[count++] = latency;
+            }
+        }
+        long[] sorted = Arrays.copyOf(finished, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+
+    private static Object producerMetric(KafkaTemplate<String, UserBehavior> template, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : template.metrics().entrySet()) {
+            if (entry.getKey().name().equals(name) && "producer-metrics".equals(entry.getKey().group())) {
+                return entry.getValue().metricValue();
+            }
+        }
+        return null;
+    }
+
+    private static List<UserBehavior> sampleEvents(int records) {
+        String[] actionTypes = {"view", "click", "add_to_cart", "purchase"};
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<UserBehavior> samples = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            samples.add(new UserBehavior("user_" + random.nextInt(1000), "item_" + random.nextInt(500),
+                    actionTypes[random.nextInt(actionTypes.length)], System.currentTimeMillis(),
+                    System.currentTimeMillis() + "_" + i));
+        }
+        return samples;
+    }
+}
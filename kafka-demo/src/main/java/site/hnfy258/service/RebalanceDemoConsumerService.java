@@ -5,6 +5,7 @@ import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
+import site.hnfy258.common.consumer.ConsumerTelemetry;
 
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -16,15 +17,21 @@ import java.util.concurrent.atomic.AtomicLong;
 @Slf4j
 public class RebalanceDemoConsumerService {
     
+    public static final String GROUP_ID = "rebalance_demo_group";
+
     @Autowired
     private RebalanceObserverService rebalanceObserver;
+
+    // 记录已处理位置，再平衡时据此估算需要重复处理的消息数
+    @Autowired
+    private ConsumerTelemetry telemetry;
     
     private final AtomicLong messageCount = new AtomicLong(0);
     private final String consumerInstanceId = "Consumer-" + System.currentTimeMillis() % 10000;
     
     @KafkaListener(
         topics = "user_behavior_logs", 
-        groupId = "rebalance_demo_group",
+        groupId = GROUP_ID,
         containerFactory = "rebalanceDemoKafkaListenerContainerFactory"
     )
     public void consumeWithRebalanceMonitoring(ConsumerRecord<String, String> record) {
@@ -32,17 +39,19 @@ public class RebalanceDemoConsumerService {
         
         // 每处理100条消息输出一次状态
         if (count % 100 == 0) {
-            log.info("🔥 {} 处理了第 {} 条消息 | Partition: {} | Offset: {}", 
+            log.info("{} processed {} records, partition={}, offset={}",
                 consumerInstanceId, count, record.partition(), record.offset());
-            rebalanceObserver.logCurrentStatus();
         }
         
         // 模拟消息处理时间
+        long start = System.nanoTime();
         try {
             Thread.sleep(10);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        telemetry.recordProcessingTime(GROUP_ID, System.nanoTime() - start);
+        telemetry.recordConsumed(GROUP_ID, record, record.timestamp());
     }
     
     public String getConsumerStats() {
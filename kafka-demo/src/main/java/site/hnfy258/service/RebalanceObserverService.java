@@ -1,95 +1,216 @@
 package site.hnfy258.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
 import org.springframework.stereotype.Service;
+import site.hnfy258.common.consumer.ConsumerTelemetry;
+import site.hnfy258.kafkademo.consumer.CommitTrackingInterceptor;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Kafka再平衡观察服务
- * 用于监控和记录Kafka消费者组的再平衡过程
+ * 作为所有监听器容器的再平衡监听器，按消费组记录每次再平衡的：
+ * - 暂停时长：本消费者从分区被撤销到重新分配完成的时间（协作式分配下未被撤销分区的消费者为 0）；
+ * - 迁移的分区数：撤销 / 分配 / 丢失（会话超时等）的分区数；
+ * - 需要重复处理的消息数：撤销或丢失时本实例已处理但未提交的消息数（已处理位置来自 {@link ConsumerTelemetry}，
+ *   已提交位置来自 {@link CommitTrackingInterceptor} 记录的本地提交，回调中不访问 broker），
+ *   这些消息会被分区的新所有者再处理一次。
+ * 统计同时注册为 Micrometer 指标（kafka.consumer.rebalance.*）。
  */
 @Service
 @Slf4j
-public class RebalanceObserverService implements ConsumerRebalanceListener {
-    
+public class RebalanceObserverService implements ConsumerAwareRebalanceListener {
+
+    private static final int RECENT_EVENTS = 20;
+
+    private final ConsumerTelemetry telemetry;
+    private final MeterRegistry meterRegistry;
+
     private final AtomicInteger rebalanceCount = new AtomicInteger(0);
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-    
+    private final Map<String, GroupRebalanceStats> groups = new ConcurrentHashMap<>();
+    // 每个消费者（并发容器中的每个子消费者）正在进行的再平衡
+    private final Map<Consumer<?, ?>, PendingRebalance> pending = new ConcurrentHashMap<>();
+    // 消费组 -> 分区 -> 本实例最近一次成功提交的偏移量
+    private final Map<String, Map<TopicPartition, Long>> committedOffsets = new ConcurrentHashMap<>();
+
+    public RebalanceObserverService(ConsumerTelemetry telemetry, MeterRegistry meterRegistry) {
+        this.telemetry = telemetry;
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
-    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
-        int currentRebalance = rebalanceCount.incrementAndGet();
-        String timestamp = LocalDateTime.now().format(formatter);
-        
-        log.warn("=== 再平衡开始 #{} - {} ===", currentRebalance, timestamp);
-        log.warn("📤 分区被撤销 (Partitions Revoked):");
-        
-        if (partitions.isEmpty()) {
-            log.warn("   ❌ 没有分区被撤销");
-        } else {
-            for (TopicPartition partition : partitions) {
-                log.warn("   ❌ Topic: {}, Partition: {}", 
-                    partition.topic(), partition.partition());
-            }
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!partitions.isEmpty()) {
+            pending.computeIfAbsent(consumer, c -> new PendingRebalance());
         }
-        
-        log.warn("🔄 消费者正在释放分区所有权...");
-        
-        // 模拟一些清理工作
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
         }
+        PendingRebalance rebalance = pending.computeIfAbsent(consumer, c -> new PendingRebalance());
+        rebalance.revoked += partitions.size();
+        rebalance.reprocessed += uncommitted(consumer, partitions);
     }
-    
+
     @Override
-    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
-        String timestamp = LocalDateTime.now().format(formatter);
-        
-        log.info("📥 分区被分配 (Partitions Assigned) - {}:", timestamp);
-        
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
         if (partitions.isEmpty()) {
-            log.info("   ✅ 没有分区被分配给当前消费者");
-        } else {
-            for (TopicPartition partition : partitions) {
-                log.info("   ✅ Topic: {}, Partition: {} -> 当前消费者", 
-                    partition.topic(), partition.partition());
-            }
+            return;
         }
-        
-        log.info("=== 再平衡完成 #{} - {} ===", 
-            rebalanceCount.get(), timestamp);
-        log.info("🎉 消费者现在拥有 {} 个分区", partitions.size());
-        
-        // 打印分区分配摘要
-        printPartitionSummary(partitions);
+        PendingRebalance rebalance = pending.computeIfAbsent(consumer, c -> new PendingRebalance());
+        rebalance.lost += partitions.size();
+        rebalance.reprocessed += uncommitted(consumer, partitions);
     }
-    
-    private void printPartitionSummary(Collection<TopicPartition> partitions) {
-        log.info("📊 当前分区分配摘要:");
-        log.info("   总分区数: {}", partitions.size());
-        
-        partitions.stream()
-            .collect(java.util.stream.Collectors.groupingBy(TopicPartition::topic))
-            .forEach((topic, topicPartitions) -> {
-                String partitionNumbers = topicPartitions.stream()
-                    .map(tp -> String.valueOf(tp.partition()))
-                    .collect(java.util.stream.Collectors.joining(", "));
-                log.info("   Topic '{}': 分区 [{}]", topic, partitionNumbers);
-            });
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        PendingRebalance rebalance = pending.remove(consumer);
+        long pauseNanos = rebalance != null ? System.nanoTime() - rebalance.startedAt : 0;
+        String groupId = consumer.groupMetadata().groupId();
+        GroupRebalanceStats stats = groups.computeIfAbsent(groupId, GroupRebalanceStats::new);
+
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("at", System.currentTimeMillis());
+        event.put("memberId", consumer.groupMetadata().memberId());
+        event.put("generation", consumer.groupMetadata().generationId());
+        event.put("pauseMs", TimeUnit.NANOSECONDS.toMillis(pauseNanos));
+        event.put("revoked", rebalance != null ? rebalance.revoked : 0);
+        event.put("lost", rebalance != null ? rebalance.lost : 0);
+        event.put("assigned", partitions.size());
+        event.put("reprocessed", rebalance != null ? rebalance.reprocessed : 0);
+        event.put("owned", consumer.assignment().size());
+        stats.record(pauseNanos, rebalance, partitions.size(), event);
+        int count = rebalanceCount.incrementAndGet();
+
+        log.info("Rebalance #{} group={} generation={}: revoked={}, lost={}, assigned={}, owned={}, pause={}ms, reprocessed={}",
+                count, groupId, event.get("generation"), event.get("revoked"), event.get("lost"),
+                partitions.size(), event.get("owned"), event.get("pauseMs"), event.get("reprocessed"));
+    }
+
+    /**
+     * 记录一次成功的提交，由 {@link CommitTrackingInterceptor} 在消费线程上调用
+     */
+    public void onCommitted(String groupId, Map<TopicPartition, OffsetAndMetadata> offsets) {
+        Map<TopicPartition, Long> committed = committedOffsets.computeIfAbsent(groupId, g -> new ConcurrentHashMap<>());
+        offsets.forEach((partition, offset) -> committed.put(partition, offset.offset()));
     }
-    
+
+    /**
+     * 本实例已处理、但本实例的提交还没有覆盖的消息数，计算后释放这些分区的本地提交位置；
+     * 本实例分配到分区后还没有提交过的分区不计入
+     */
+    private long uncommitted(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        String groupId = consumer.groupMetadata().groupId();
+        Map<TopicPartition, Long> committed = committedOffsets.get(groupId);
+        if (committed == null) {
+            return 0;
+        }
+        long total = 0;
+        for (TopicPartition partition : partitions) {
+            long consumed = telemetry.consumedOffset(groupId, partition);
+            Long offset = committed.remove(partition);
+            if (consumed >= 0 && offset != null) {
+                total += Math.max(0, consumed - offset);
+            }
+        }
+        return total;
+    }
+
     public int getRebalanceCount() {
         return rebalanceCount.get();
     }
-    
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rebalances", rebalanceCount.get());
+        Map<String, Object> groupStats = new LinkedHashMap<>();
+        groups.values().forEach(group -> groupStats.put(group.groupId, group.getStats()));
+        stats.put("groups", groupStats);
+        return stats;
+    }
+
     public void logCurrentStatus() {
-        log.info("🔍 再平衡统计: 总共发生了 {} 次再平衡", rebalanceCount.get());
+        log.info("Rebalance stats: {}", getStats());
+    }
+
+    private static final class PendingRebalance {
+        private final long startedAt = System.nanoTime();
+        private int revoked;
+        private int lost;
+        private long reprocessed;
+    }
+
+    private final class GroupRebalanceStats {
+        private final String groupId;
+        private final Timer pause;
+        private final Counter revoked;
+        private final Counter assigned;
+        private final Counter lost;
+        private final Counter reprocessed;
+        private final Deque<Map<String, Object>> recent = new ArrayDeque<>();
+
+        private GroupRebalanceStats(String groupId) {
+            this.groupId = groupId;
+            this.pause = Timer.builder("kafka.consumer.rebalance.pause")
+                    .description("再平衡期间本消费者停止处理的时长").tag("group", groupId).register(meterRegistry);
+            this.revoked = partitionCounter("revoked");
+            this.assigned = partitionCounter("assigned");
+            this.lost = partitionCounter("lost");
+            this.reprocessed = Counter.builder("kafka.consumer.rebalance.reprocessed")
+                    .description("因再平衡需要重复处理的消息数").tag("group", groupId).register(meterRegistry);
+        }
+
+        private Counter partitionCounter(String type) {
+            return Counter.builder("kafka.consumer.rebalance.partitions")
+                    .tag("group", groupId).tag("type", type).register(meterRegistry);
+        }
+
+        private synchronized void record(long pauseNanos, PendingRebalance rebalance, int assignedPartitions,
+                                         Map<String, Object> event) {
+            pause.record(pauseNanos, TimeUnit.NANOSECONDS);
+            assigned.increment(assignedPartitions);
+            if (rebalance != null) {
+                revoked.increment(rebalance.revoked);
+                lost.increment(rebalance.lost);
+                reprocessed.increment(rebalance.reprocessed);
+            }
+            recent.addFirst(event);
+            if (recent.size() > RECENT_EVENTS) {
+                recent.removeLast();
+            }
+        }
+
+        private synchronized Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("rebalances", pause.count());
+            stats.put("totalPauseMs", (long) pause.totalTime(TimeUnit.MILLISECONDS));
+            stats.put("maxPauseMs", (long) pause.max(TimeUnit.MILLISECONDS));
+            stats.put("partitionsRevoked", (long) revoked.count());
+            stats.put("partitionsAssigned", (long) assigned.count());
+            stats.put("partitionsLost", (long) lost.count());
+            stats.put("reprocessed", (long) reprocessed.count());
+            List<Map<String, Object>> events = new ArrayList<>(recent);
+            stats.put("recent", events);
+            return stats;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package site.hnfy258.service;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 进程内"最近处理过"的消息ID环
+ * 只保存 64 位哈希，容量满后按写入顺序淘汰最旧的记录；
+ * 命中即可确定是重复消息，未命中仍需查询 Redis（可能被淘汰或由其他实例处理过）。
+ */
+public class RecentlySeenRing {
+
+    private final long[] ring;
+    private final Set<Long> index;
+    private int next;
+    private int size;
+
+    public RecentlySeenRing(int capacity) {
+        this.ring = new long[Math.max(1, capacity)];
+        this.index = new HashSet<>(ring.length * 4 / 3 + 1);
+    }
+
+    public synchronized boolean contains(String messageId) {
+        return index.contains(hash(messageId));
+    }
+
+    public synchronized void add(String messageId) {
+        long hash = hash(messageId);
+        if (!index.add(hash)) {
+            return;
+        }
+        if (size == ring.length) {
+            index.remove(ring[next]);
+        } else {
+            size++;
+        }
+        ring[next] = hash;
+        next = (next + 1) % ring.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 64 位 FNV-1a，十万量级的ID冲突概率可以忽略
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
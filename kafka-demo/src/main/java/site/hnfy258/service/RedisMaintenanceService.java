@@ -0,0 +1,357 @@
+package site.hnfy258.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import site.hnfy258.kafkademo.loadgen.TokenBucketPacer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 SCAN 的 Redis 增量维护任务
+ * 用游标分批遍历 keyspace（每批 COUNT 个，按 keys-per-second 限速），按前缀统计 key 数，
+ * 每 sample-every 个 key 抽样一次 MEMORY USAGE 和 PTTL，估算各前缀的内存分布与未设置过期时间的比例；
+ * 开启删除时用 UNLINK 清理已废弃格式的 key（每消息记录、旧 JSON 列表、旧的单个去重 SET）。
+ * 每批处理完把游标和统计写入 {@link #STATE_KEY}，进程重启后从上次的游标继续。
+ * 不使用 KEYS：它在百万级 key 时会阻塞单线程的 Redis 数秒。
+ */
+@Service
+@Slf4j
+public class RedisMaintenanceService {
+
+    public static final String STATE_KEY = "maintenance:keyspace-scan";
+
+    /**
+     * 已不再写入也不再读取的 key 分组
+     */
+    private static final Set<String> ORPHAN_GROUPS = Set.of("user_behavior:", "user_behavior_list:", "processed_message_ids");
+    private static final int MAX_GROUPS = 64;
+    private static final String OTHER_GROUP = "(other)";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final int scanCount;
+    private final double keysPerSecond;
+    private final int sampleEvery;
+    private final boolean deleteOrphansByDefault;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "redis-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean stopRequested;
+    private volatile String status = "IDLE";
+    private volatile String lastError;
+    // 扫描线程与接口线程共享，读写都持有 this 锁；Redis 命令在锁外执行
+    private ScanState state;
+
+    public RedisMaintenanceService(StringRedisTemplate stringRedisTemplate,
+                                   ObjectMapper objectMapper,
+                                   @Value("${redis.maintenance.scan-count:500}") int scanCount,
+                                   @Value("${redis.maintenance.keys-per-second:5000}") double keysPerSecond,
+                                   @Value("${redis.maintenance.sample-every:100}") int sampleEvery,
+                                   @Value("${redis.maintenance.delete-orphans:false}") boolean deleteOrphansByDefault) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.scanCount = Math.max(10, scanCount);
+        this.keysPerSecond = keysPerSecond;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.deleteOrphansByDefault = deleteOrphansByDefault;
+    }
+
+    /**
+     * 启动或继续一次遍历：存在未完成的进度时从保存的游标继续，restart=true 时丢弃进度重新开始
+     */
+    public synchronized Map<String, Object> start(Boolean deleteOrphans, boolean restart) {
+        if ("RUNNING".equals(status)) {
+            return getProgress();
+        }
+        ScanState saved = restart ? null : loadState();
+        state = saved != null && !saved.finished ? saved : new ScanState();
+        if (deleteOrphans != null) {
+            state.deleteOrphans = deleteOrphans;
+        } else if (state.scanned == 0) {
+            state.deleteOrphans = deleteOrphansByDefault;
+        }
+        stopRequested = false;
+        lastError = null;
+        status = "RUNNING";
+        log.info("Redis maintenance scan {} from cursor {}, deleteOrphans={}",
+                state.scanned == 0 ? "started" : "resumed", state.cursor, state.deleteOrphans);
+        worker.submit(this::run);
+        return getProgress();
+    }
+
+    public synchronized void stop() {
+        stopRequested = true;
+    }
+
+    private void run() {
+        TokenBucketPacer pacer = new TokenBucketPacer(keysPerSecond, scanCount);
+        try {
+            boolean finished;
+            do {
+                ScanBatch batch = scanBatch(currentCursor());
+                pacer.acquire(batch.keys.size());
+                finished = process(batch);
+                saveState();
+            } while (!finished && !stopRequested);
+            synchronized (this) {
+                status = state.finished ? "FINISHED" : "STOPPED";
+                log.info("Redis maintenance scan {}: scanned={}, deleted={}, cursor={}",
+                        status, state.scanned, state.deleted, state.cursor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = "STOPPED";
+        } catch (Exception e) {
+            status = "FAILED";
+            lastError = e.getMessage();
+            log.error("Redis maintenance scan failed at cursor {}: {}", currentCursor(), e.getMessage(), e);
+        }
+    }
+
+    private synchronized String currentCursor() {
+        return state.cursor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ScanBatch scanBatch(String cursor) {
+        return stringRedisTemplate.execute((RedisCallback<ScanBatch>) connection -> {
+            RedisClusterAsyncCommands<byte[], byte[]> commands =
+                    (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            KeyScanCursor<byte[]> result = await(commands.scan(ScanCursor.of(cursor), ScanArgs.Builder.limit(scanCount)));
+            List<String> keys = new ArrayList<>(result.getKeys().size());
+            for (byte[] key : result.getKeys()) {
+                keys.add(new String(key, StandardCharsets.UTF_8));
+            }
+            return new ScanBatch(result.isFinished() ? "0" : result.getCursor(), keys);
+        });
+    }
+
+    /**
+     * 抽样与删除的 Redis 命令在锁外执行，结果连同游标在锁内一次性计入状态；
+     * 批次中途失败时状态不变，继续时整批重扫
+     *
+     * @return 遍历是否已结束
+     */
+    @SuppressWarnings("unchecked")
+    private boolean process(ScanBatch batch) {
+        long scannedBefore;
+        boolean deleteOrphans;
+        synchronized (this) {
+            scannedBefore = state.scanned;
+            deleteOrphans = state.deleteOrphans;
+        }
+        Map<String, Long> memory = new HashMap<>();
+        Map<String, Long> ttl = new HashMap<>();
+        List<String> deleted = new ArrayList<>();
+        if (!batch.keys.isEmpty()) {
+            stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+                RedisClusterAsyncCommands<byte[], byte[]> commands =
+                        (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+                // 异步命令自动流水线发送，整批只等待一次
+                Map<String, RedisFuture<Long>> memoryFutures = new HashMap<>();
+                Map<String, RedisFuture<Long>> ttlFutures = new HashMap<>();
+                Map<String, RedisFuture<Long>> unlinkFutures = new LinkedHashMap<>();
+                for (int i = 0; i < batch.keys.size(); i++) {
+                    String key = batch.keys.get(i);
+                    byte[] raw = key.getBytes(StandardCharsets.UTF_8);
+                    if ((scannedBefore + i + 1) % sampleEvery == 0) {
+                        memoryFutures.put(key, commands.memoryUsage(raw));
+                        ttlFutures.put(key, commands.pttl(raw));
+                    }
+                    // 是否废弃只看 key 本身的前缀，与统计分组是否已达上限无关
+                    if (deleteOrphans && ORPHAN_GROUPS.contains(prefixOf(key))) {
+                        unlinkFutures.put(key, commands.unlink(raw));
+                    }
+                }
+                for (Map.Entry<String, RedisFuture<Long>> entry : memoryFutures.entrySet()) {
+                    Long bytes = await(entry.getValue());
+                    // key 在 SCAN 与 MEMORY USAGE 之间过期时返回 null
+                    if (bytes != null) {
+                        memory.put(entry.getKey(), bytes);
+                        ttl.put(entry.getKey(), await(ttlFutures.get(entry.getKey())));
+                    }
+                }
+                // 只统计 UNLINK 确认删除的 key（扫描后已过期或被其他进程删除的返回 0）
+                for (Map.Entry<String, RedisFuture<Long>> entry : unlinkFutures.entrySet()) {
+                    Long removed = await(entry.getValue());
+                    if (removed != null && removed > 0) {
+                        deleted.add(entry.getKey());
+                    }
+                }
+                return null;
+            });
+        }
+        synchronized (this) {
+            for (String key : batch.keys) {
+                KeyspacePrefixStats stats = statsOf(key);
+                stats.setKeys(stats.getKeys() + 1);
+                state.scanned++;
+            }
+            for (Map.Entry<String, Long> entry : memory.entrySet()) {
+                Long pttl = ttl.get(entry.getKey());
+                statsOf(entry.getKey()).recordSample(entry.getValue(), pttl == null || pttl != -1);
+            }
+            for (String key : deleted) {
+                KeyspacePrefixStats stats = statsOf(key);
+                stats.setDeleted(stats.getDeleted() + 1);
+                state.deleted++;
+            }
+            state.cursor = batch.cursor;
+            state.batches++;
+            state.finished = "0".equals(batch.cursor);
+            return state.finished;
+        }
+    }
+
+    /**
+     * 第一个 ':' 之前的部分（含冒号），没有冒号的 key 返回自身
+     */
+    private static String prefixOf(String key) {
+        int separator = key.indexOf(':');
+        return separator < 0 ? key : key.substring(0, separator + 1);
+    }
+
+    /**
+     * 按前缀分组统计，分组数超过上限后新的前缀归入 (other)；调用方需持有锁
+     */
+    private KeyspacePrefixStats statsOf(String key) {
+        String group = prefixOf(key);
+        if (!state.prefixes.containsKey(group) && state.prefixes.size() >= MAX_GROUPS) {
+            group = OTHER_GROUP;
+        }
+        return state.prefixes.computeIfAbsent(group, g -> new KeyspacePrefixStats());
+    }
+
+    private static <T> T await(RedisFuture<T> future) {
+        try {
+            return future.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Redis", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Redis command failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void saveState() throws Exception {
+        Map<String, String> fields = new HashMap<>();
+        synchronized (this) {
+            fields.put("cursor", state.cursor);
+            fields.put("finished", String.valueOf(state.finished));
+            fields.put("deleteOrphans", String.valueOf(state.deleteOrphans));
+            fields.put("scanned", String.valueOf(state.scanned));
+            fields.put("deleted", String.valueOf(state.deleted));
+            fields.put("batches", String.valueOf(state.batches));
+            fields.put("startedAt", String.valueOf(state.startedAt));
+            fields.put("updatedAt", String.valueOf(System.currentTimeMillis()));
+            fields.put("prefixes", objectMapper.writeValueAsString(state.prefixes));
+        }
+        stringRedisTemplate.opsForHash().putAll(STATE_KEY, fields);
+    }
+
+    private ScanState loadState() {
+        try {
+            Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(STATE_KEY);
+            if (fields.isEmpty()) {
+                return null;
+            }
+            ScanState loaded = new ScanState();
+            loaded.cursor = (String) fields.get("cursor");
+            loaded.finished = Boolean.parseBoolean((String) fields.get("finished"));
+            loaded.deleteOrphans = Boolean.parseBoolean((String) fields.get("deleteOrphans"));
+            loaded.scanned = Long.parseLong((String) fields.get("scanned"));
+            loaded.deleted = Long.parseLong((String) fields.get("deleted"));
+            loaded.batches = Long.parseLong((String) fields.get("batches"));
+            loaded.startedAt = Long.parseLong((String) fields.get("startedAt"));
+            loaded.prefixes = objectMapper.readValue((String) fields.get("prefixes"),
+                    new TypeReference<TreeMap<String, KeyspacePrefixStats>>() {
+                    });
+            return loaded;
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable maintenance state in {}: {}", STATE_KEY, e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized Map<String, Object> getProgress() {
+        ScanState current = state != null ? state : loadState();
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("status", status);
+        if (lastError != null) {
+            progress.put("error", lastError);
+        }
+        if (current != null) {
+            progress.put("cursor", current.cursor);
+            progress.put("finished", current.finished);
+            progress.put("deleteOrphans", current.deleteOrphans);
+            progress.put("scanned", current.scanned);
+            progress.put("deleted", current.deleted);
+            progress.put("batches", current.batches);
+            progress.put("startedAt", current.startedAt);
+            // 复制一份，避免响应序列化时与扫描线程并发读写
+            Map<String, KeyspacePrefixStats> prefixes = new TreeMap<>();
+            current.prefixes.forEach((group, stats) -> prefixes.put(group, stats.copy()));
+            progress.put("prefixes", prefixes);
+        }
+        progress.put("keysPerSecond", keysPerSecond);
+        progress.put("sampleEvery", sampleEvery);
+        return progress;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested = true;
+        worker.shutdown();
+        try {
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ScanState {
+        private String cursor = "0";
+        private boolean finished;
+        private boolean deleteOrphans;
+        private long scanned;
+        private long deleted;
+        private long batches;
+        private long startedAt = System.currentTimeMillis();
+        private Map<String, KeyspacePrefixStats> prefixes = new TreeMap<>();
+    }
+
+    private static final class ScanBatch {
+        private final String cursor;
+        private final List<String> keys;
+
+        private ScanBatch(String cursor, List<String> keys) {
+            this.cursor = cursor;
+            this.keys = keys;
+        }
+    }
+}
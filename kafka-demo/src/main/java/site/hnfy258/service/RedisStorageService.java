@@ -1,127 +1,234 @@
 package site.hnfy258.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 import site.hnfy258.entity.UserBehavior;
+import site.hnfy258.kafkademo.codec.TimelineEntryCodec;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 @Service
 @Slf4j
 public class RedisStorageService {
     
     private final RedisTemplate<String, Object> redisTemplate;
-    private final StringRedisTemplate stringRedisTemplate;
-    private final ObjectMapper objectMapper;
+    private final MessageDedupStore dedupStore;
+    private final DailyStatsAggregator dailyStats;
     
     // Redis key前缀
-    private static final String USER_BEHAVIOR_PREFIX = "user_behavior:";
-    private static final String USER_BEHAVIOR_LIST_PREFIX = "user_behavior_list:";
-    private static final String DAILY_STATS_PREFIX = "daily_stats:";
-    private static final String MESSAGE_ID_SET = "processed_message_ids";
+    // 用户时间线：最近 userTimelineMaxLength 条行为的紧凑二进制条目，见 TimelineEntryCodec
+    // key 为 user_timeline:{分片}:userId，分片 hash tag 与该用户的去重桶一致
+    private static final String USER_TIMELINE_PREFIX = "user_timeline:";
+    private static final Duration TIMELINE_TTL = Duration.ofDays(7);
+
+    /**
+     * KEYS[1]=当日处理计数HyperLogLog, KEYS[2..]=本批用到的去重桶与时间线key（同一分片，同一 slot）
+     * ARGV[1]=时间线过期秒数, ARGV[2]=时间线最大长度, ARGV[3]=去重桶过期秒数, ARGV[4]=计数HyperLogLog过期秒数,
+     * 之后每4个参数为一条消息: 去重桶在KEYS中的下标, messageId, 时间线在KEYS中的下标, 时间线条目
+     * 返回与消息一一对应的标记串，'1' 为本次写入，'0' 为重复消息
+     * 去重桶只在创建时设置过期时间，到期自然删除；每日统计由 {@link DailyStatsAggregator} 在本地聚合后批量写入
+     */
+    private static final RedisScript<String> INGEST_SCRIPT = new DefaultRedisScript<>(
+            "local timelineTtl, maxLength = tonumber(ARGV[1]), tonumber(ARGV[2])\n" +
+            "local bucketTtl, countTtl = tonumber(ARGV[3]), tonumber(ARGV[4])\n" +
+            "local flags = {}\n" +
+            "local checkedBuckets = {}\n" +
+            "for i = 5, #ARGV, 4 do\n" +
+            "  local bucket, messageId = KEYS[tonumber(ARGV[i])], ARGV[i + 1]\n" +
+            "  if redis.call('SADD', bucket, messageId) == 1 then\n" +
+            "    if not checkedBuckets[bucket] then\n" +
+            "      checkedBuckets[bucket] = true\n" +
+            "      if redis.call('TTL', bucket) < 0 then\n" +
+            "        redis.call('EXPIRE', bucket, bucketTtl)\n" +
+            "      end\n" +
+            "    end\n" +
+            "    local timelineKey = KEYS[tonumber(ARGV[i + 2])]\n" +
+            "    redis.call('LPUSH', timelineKey, ARGV[i + 3])\n" +
+            "    redis.call('LTRIM', timelineKey, 0, maxLength - 1)\n" +
+            "    redis.call('EXPIRE', timelineKey, timelineTtl)\n" +
+            "    redis.call('PFADD', KEYS[1], messageId)\n" +
+            "    flags[#flags + 1] = '1'\n" +
+            "  else\n" +
+            "    flags[#flags + 1] = '0'\n" +
+            "  end\n" +
+            "end\n" +
+            "redis.call('EXPIRE', KEYS[1], countTtl)\n" +
+            "return table.concat(flags)",
+            String.class);
+
+    /**
+     * 脚本参数：时间线条目原样传递，其余按UTF-8字符串传递
+     */
+    private static final RedisSerializer<Object> RAW_ARGS_SERIALIZER = new RedisSerializer<>() {
+        @Override
+        public byte[] serialize(Object value) {
+            return value instanceof byte[] bytes ? bytes : String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+    private static final RedisSerializer<String> RAW_RESULT_SERIALIZER = StringRedisSerializer.UTF_8;
+
+    // 每次脚本调用最多处理的消息数
+    private final int scriptBatchSize;
+    // 每个用户时间线保留的最大条数
+    private final int userTimelineMaxLength;
     
     public RedisStorageService(RedisTemplate<String, Object> redisTemplate, 
-                              StringRedisTemplate stringRedisTemplate,
-                              ObjectMapper objectMapper) {
+                              MessageDedupStore dedupStore,
+                              DailyStatsAggregator dailyStats,
+                              @Value("${redis.ingest.script-batch-size:200}") int scriptBatchSize,
+                              @Value("${redis.user-timeline.max-length:1000}") int userTimelineMaxLength) {
         this.redisTemplate = redisTemplate;
-        this.stringRedisTemplate = stringRedisTemplate;
-        this.objectMapper = objectMapper;
+        this.dedupStore = dedupStore;
+        this.dailyStats = dailyStats;
+        this.scriptBatchSize = Math.max(1, scriptBatchSize);
+        this.userTimelineMaxLength = Math.max(1, userTimelineMaxLength);
     }
     
     /**
-     * 存储用户行为数据
+     * 存储用户行为数据（单条调用批量脚本，Redis 异常抛给调用方）
      */
     public void storeUserBehavior(UserBehavior userBehavior) {
-        try {
-            String messageId = userBehavior.getMessageId();
-            
-            // 1. 检查消息是否已处理（幂等性）
-            if (isMessageProcessed(messageId)) {
-                log.warn("Message {} already processed, skipping storage", messageId);
-                return;
-            }
-            
-            // 2. 存储单个用户行为记录
-            String behaviorKey = USER_BEHAVIOR_PREFIX + messageId;
-            redisTemplate.opsForValue().set(behaviorKey, userBehavior, Duration.ofDays(7));
-            
-            // 3. 添加到用户行为列表（按用户ID分组）
-            String userListKey = USER_BEHAVIOR_LIST_PREFIX + userBehavior.getUserId();
-            redisTemplate.opsForList().leftPush(userListKey, userBehavior);
-            redisTemplate.expire(userListKey, Duration.ofDays(7));
-            
-            // 4. 更新每日统计
-            updateDailyStats(userBehavior);
-            
-            // 5. 标记消息已处理
-            markMessageAsProcessed(messageId);
-            
-            log.debug("Stored user behavior: userId={}, actionType={}, messageId={}", 
-                     userBehavior.getUserId(), userBehavior.getActionType(), messageId);
-                     
-        } catch (Exception e) {
-            log.error("Error storing user behavior to Redis: {}", e.getMessage(), e);
+        if (storeUserBehaviors(List.of(userBehavior)) == 0) {
+            log.warn("Message {} already processed, skipping storage", userBehavior.getMessageId());
+            return;
         }
+        log.debug("Stored user behavior: userId={}, actionType={}, messageId={}", 
+                 userBehavior.getUserId(), userBehavior.getActionType(), userBehavior.getMessageId());
     }
-    
+
     /**
-     * 检查消息是否已处理
+     * 批量存储用户行为数据
+     * 每 scriptBatchSize 条消息调用一次 {@link #INGEST_SCRIPT}（EVALSHA），去重、写入和统计在脚本内原子完成：
+     * 多个消费者组同时处理同一条消息时只有一个能通过去重桶的 SADD，批内重复的消息同理；
+     * 本实例最近处理过的消息由 {@link MessageDedupStore} 在本地直接跳过。
+     * 写入成功的消息计入 {@link DailyStatsAggregator}，统计周期性批量刷新到 Redis。
+     * 批次大小限制单次脚本执行时间，避免长时间阻塞 Redis。
+     * 消息按用户分片分批，每次脚本调用只访问一个分片的 key，可以直接运行在 Redis Cluster 上；
+     * 同一用户的消息在同一批内保持原有顺序。
+     * Redis 异常会抛给调用方，由消费者决定是否提交偏移量。
+     *
+     * @return 实际写入的消息数（去掉批内重复与已处理的消息）
      */
-    public boolean isMessageProcessed(String messageId) {
-        return Boolean.TRUE.equals(stringRedisTemplate.opsForSet().isMember(MESSAGE_ID_SET, messageId));
+    public int storeUserBehaviors(List<UserBehavior> userBehaviors) {
+        int stored = 0;
+        int received = 0;
+        Map<Integer, IngestBatch> batches = new HashMap<>();
+        for (UserBehavior userBehavior : userBehaviors) {
+            if (userBehavior == null || userBehavior.getMessageId() == null) {
+                continue;
+            }
+            received++;
+            // 本实例刚处理过的重复消息不再进入脚本
+            if (dedupStore.seenLocally(userBehavior.getMessageId())) {
+                continue;
+            }
+            int shard = dedupStore.shardOf(userBehavior.getUserId());
+            IngestBatch batch = batches.computeIfAbsent(shard, this::newBatch);
+            batch.add(userBehavior);
+            if (batch.pending.size() >= scriptBatchSize) {
+                stored += runIngestScript(batch);
+                batches.remove(shard);
+            }
+        }
+        for (IngestBatch batch : batches.values()) {
+            stored += runIngestScript(batch);
+        }
+        if (stored < received) {
+            log.debug("Skipped {} already processed or duplicated messages in batch", received - stored);
+        }
+        return stored;
     }
-    
+
+    private IngestBatch newBatch(int shard) {
+        IngestBatch batch = new IngestBatch(shard);
+        batch.keys.add(dedupStore.countKey(shard));
+        batch.args.add(String.valueOf(TIMELINE_TTL.getSeconds()));
+        batch.args.add(String.valueOf(userTimelineMaxLength));
+        batch.args.add(String.valueOf(dedupStore.bucketTtlSeconds()));
+        batch.args.add(String.valueOf(dedupStore.countTtlSeconds()));
+        return batch;
+    }
+
+    private int runIngestScript(IngestBatch batch) {
+        List<UserBehavior> pending = batch.pending;
+        String flags = redisTemplate.execute(INGEST_SCRIPT, RAW_ARGS_SERIALIZER, RAW_RESULT_SERIALIZER,
+                batch.keys, batch.args.toArray());
+        // 脚本成功返回后，这批消息要么已写入要么已确认重复
+        dedupStore.recordRemoteChecks(pending.size());
+        int stored = 0;
+        for (int i = 0; i < pending.size(); i++) {
+            UserBehavior userBehavior = pending.get(i);
+            dedupStore.markSeen(userBehavior.getMessageId());
+            if (flags != null && i < flags.length() && flags.charAt(i) == '1') {
+                dailyStats.record(userBehavior.getActionType(), userBehavior.getUserId());
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    private String timelineKey(int shard, String userId) {
+        return USER_TIMELINE_PREFIX + MessageDedupStore.shardTag(shard) + ":" + userId;
+    }
+
     /**
-     * 标记消息已处理
+     * 启动后预加载脚本，之后的调用直接走 EVALSHA；
+     * Redis 重启或主从切换丢失脚本缓存时，RedisTemplate 会在 NOSCRIPT 后自动回退为 EVAL
      */
-    private void markMessageAsProcessed(String messageId) {
-        stringRedisTemplate.opsForSet().add(MESSAGE_ID_SET, messageId);
-        // 设置过期时间，避免集合无限增长
-        stringRedisTemplate.expire(MESSAGE_ID_SET, Duration.ofDays(7));
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        try {
+            String sha = redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands()
+                    .scriptLoad(INGEST_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+            log.info("Preloaded user behavior ingest script, sha1={}", sha);
+        } catch (Exception e) {
+            log.warn("Failed to preload ingest script, will fall back to EVAL on first use: {}", e.getMessage());
+        }
     }
-    
+
     /**
-     * 更新每日统计
+     * 检查消息是否已处理
      */
-    private void updateDailyStats(UserBehavior userBehavior) {
-        String today = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        String statsKey = DAILY_STATS_PREFIX + today;
-        
-        // 总数统计
-        redisTemplate.opsForHash().increment(statsKey, "total_count", 1);
-        
-        // 按动作类型统计
-        redisTemplate.opsForHash().increment(statsKey, "action:" + userBehavior.getActionType(), 1);
-        
-        // 按用户统计
-        redisTemplate.opsForHash().increment(statsKey, "user:" + userBehavior.getUserId(), 1);
-        
-        // 设置过期时间
-        redisTemplate.expire(statsKey, Duration.ofDays(30));
+    public boolean isMessageProcessed(UserBehavior userBehavior) {
+        return dedupStore.isProcessed(userBehavior);
     }
     
     /**
-     * 获取用户行为列表
+     * 获取用户最近的行为（时间倒序），条目在被访问时才解码
      */
-    public List<Object> getUserBehaviorList(String userId, int limit) {
-        String userListKey = USER_BEHAVIOR_LIST_PREFIX + userId;
-        return redisTemplate.opsForList().range(userListKey, 0, limit - 1);
+    public List<UserBehavior> getUserBehaviorList(String userId, int limit) {
+        byte[] timelineKey = timelineKey(dedupStore.shardOf(userId), userId).getBytes(StandardCharsets.UTF_8);
+        List<byte[]> entries = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.listCommands().lRange(timelineKey, 0, limit - 1));
+        return TimelineEntryCodec.lazyList(userId, entries != null ? entries : List.of());
     }
     
     /**
      * 获取每日统计
      */
     public Object getDailyStats(String date) {
-        String statsKey = DAILY_STATS_PREFIX + date;
+        String statsKey = DailyStatsAggregator.DAILY_STATS_PREFIX + date;
         return redisTemplate.opsForHash().entries(statsKey);
     }
     
@@ -133,32 +240,49 @@ public class RedisStorageService {
         return getDailyStats(today);
     }
     
+    public Map<String, Object> getDedupStats() {
+        return dedupStore.getStats();
+    }
+
+    public Map<String, Object> getDailyStatsAggregation() {
+        return dailyStats.getStats();
+    }
+
     /**
-     * 获取处理的消息总数
+     * 获取去重窗口内处理的消息总数（HyperLogLog 估算）
      */
     public Long getProcessedMessageCount() {
-        return stringRedisTemplate.opsForSet().size(MESSAGE_ID_SET);
+        return dedupStore.getProcessedCount();
     }
-    
+
     /**
-     * 清理过期数据
+     * 一个分片待提交的脚本调用：KEYS 去重后按首次出现的顺序编号，参数里只写下标
      */
-    public void cleanupExpiredData() {
-        try {
-            // 获取所有用户行为key
-            Set<String> behaviorKeys = redisTemplate.keys(USER_BEHAVIOR_PREFIX + "*");
-            if (behaviorKeys != null && !behaviorKeys.isEmpty()) {
-                log.info("Found {} user behavior keys in Redis", behaviorKeys.size());
-            }
-            
-            // 获取所有用户列表key
-            Set<String> listKeys = redisTemplate.keys(USER_BEHAVIOR_LIST_PREFIX + "*");
-            if (listKeys != null && !listKeys.isEmpty()) {
-                log.info("Found {} user behavior list keys in Redis", listKeys.size());
-            }
-            
-        } catch (Exception e) {
-            log.error("Error during cleanup: {}", e.getMessage(), e);
+    private final class IngestBatch {
+        private final int shard;
+        private final List<String> keys = new ArrayList<>();
+        private final Map<String, Integer> keyIndexes = new HashMap<>();
+        private final List<Object> args = new ArrayList<>();
+        private final List<UserBehavior> pending = new ArrayList<>();
+
+        private IngestBatch(int shard) {
+            this.shard = shard;
+        }
+
+        private void add(UserBehavior userBehavior) {
+            args.add(String.valueOf(keyIndex(dedupStore.bucketKey(userBehavior))));
+            args.add(userBehavior.getMessageId());
+            args.add(String.valueOf(keyIndex(timelineKey(shard, userBehavior.getUserId()))));
+            args.add(TimelineEntryCodec.encode(userBehavior));
+            pending.add(userBehavior);
+        }
+
+        // Lua 数组下标从 1 开始
+        private int keyIndex(String key) {
+            return keyIndexes.computeIfAbsent(key, k -> {
+                keys.add(k);
+                return keys.size();
+            });
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package site.hnfy258.kafkademo.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import site.hnfy258.entity.UserBehavior;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 时间线条目：规范商品ID与已知行为走 18 字节紧凑格式，其余回退到文本格式；
+ * 用户ID来自时间线 key，messageId 不写入条目；懒加载视图只解码被访问的条目
+ */
+class TimelineEntryCodecTest {
+
+    private static final String USER_ID = "user_42";
+
+    @Test
+    void canonicalEntriesUseCompactFormat() {
+        for (String action : new String[]{"view", "click", "add_to_cart", "purchase"}) {
+            UserBehavior event = new UserBehavior(USER_ID, "item_123", action, 1_700_000_000_123L, "msg-1");
+
+            byte[] encoded = TimelineEntryCodec.encode(event);
+            UserBehavior decoded = TimelineEntryCodec.decode(USER_ID, encoded);
+
+            assertEquals(TimelineEntryCodec.COMPACT_SIZE, encoded.length);
+            assertEquals(USER_ID, decoded.getUserId());
+            assertEquals("item_123", decoded.getItemId());
+            assertEquals(action, decoded.getActionType());
+            assertEquals(1_700_000_000_123L, decoded.getTimestamp());
+            assertNull(decoded.getMessageId());
+        }
+    }
+
+    @Test
+    void nonCanonicalEntriesFallBackToText() {
+        UserBehavior[] events = {
+                new UserBehavior(USER_ID, "item_007", "view", 1L, "m"),
+                new UserBehavior(USER_ID, "sku-9", "click", 2L, "m"),
+                new UserBehavior(USER_ID, "item_5", "share", 3L, "m"),
+                new UserBehavior(USER_ID, "商品_1", "收藏", 4L, "m"),
+                new UserBehavior(USER_ID, null, null, 5L, "m")
+        };
+        for (UserBehavior event : events) {
+            byte[] encoded = TimelineEntryCodec.encode(event);
+            UserBehavior decoded = TimelineEntryCodec.decode(USER_ID, encoded);
+
+            // tag=2 为文本格式
+            assertEquals(2, encoded[0], "expected text format for " + event.getItemId());
+            assertEquals(event.getItemId(), decoded.getItemId());
+            assertEquals(event.getActionType(), decoded.getActionType());
+            assertEquals(event.getTimestamp(), decoded.getTimestamp());
+            assertEquals(USER_ID, decoded.getUserId());
+        }
+    }
+
+    @Test
+    void corruptEntriesAreRejected() {
+        byte[] compact = TimelineEntryCodec.encode(new UserBehavior(USER_ID, "item_1", "view", 1L, "m"));
+        byte[] text = TimelineEntryCodec.encode(new UserBehavior(USER_ID, "sku-1", "view", 1L, "m"));
+
+        assertThrows(SerializationException.class,
+                () -> TimelineEntryCodec.decode(USER_ID, Arrays.copyOf(compact, compact.length - 1)));
+        assertThrows(SerializationException.class,
+                () -> TimelineEntryCodec.decode(USER_ID, Arrays.copyOf(text, text.length - 1)));
+        assertThrows(SerializationException.class, () -> TimelineEntryCodec.decode(USER_ID, new byte[]{9, 0}));
+        assertThrows(SerializationException.class, () -> TimelineEntryCodec.decode(USER_ID, new byte[0]));
+    }
+
+    @Test
+    void lazyListDecodesOnlyAccessedEntries() {
+        List<byte[]> raw = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            raw.add(TimelineEntryCodec.encode(new UserBehavior(USER_ID, "item_" + i, "view", i, "m")));
+        }
+        CountingList entries = new CountingList(raw);
+
+        List<UserBehavior> timeline = TimelineEntryCodec.lazyList(USER_ID, entries);
+
+        assertEquals(100, timeline.size());
+        assertEquals(0, entries.reads);
+
+        assertEquals("item_7", timeline.get(7).getItemId());
+        assertEquals(1, entries.reads);
+
+        List<UserBehavior> page = timeline.subList(10, 13);
+        assertEquals(1, entries.reads);
+        assertEquals(Arrays.asList("item_10", "item_11", "item_12"),
+                page.stream().map(UserBehavior::getItemId).toList());
+        assertEquals(4, entries.reads);
+
+        assertThrows(UnsupportedOperationException.class, () -> timeline.add(new UserBehavior()));
+    }
+
+    private static final class CountingList extends AbstractList<byte[]> {
+        private final List<byte[]> delegate;
+        private int reads;
+
+        CountingList(List<byte[]> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public byte[] get(int index) {
+            reads++;
+            return delegate.get(index);
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+    }
+}
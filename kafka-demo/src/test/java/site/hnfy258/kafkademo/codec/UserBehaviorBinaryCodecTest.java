@@ -0,0 +1,81 @@
+package site.hnfy258.kafkademo.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import site.hnfy258.entity.UserBehavior;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * UserBehavior 二进制格式：规范的数字 ID 与已知行为走紧凑编码，其余按原文保留，解码结果与编码前一致
+ */
+class UserBehaviorBinaryCodecTest {
+
+    private final UserBehaviorBinaryCodec codec = new UserBehaviorBinaryCodec();
+
+    @Test
+    void numericIdsAndKnownActionsRoundTripCompactly() {
+        for (String action : new String[]{"view", "click", "add_to_cart", "purchase"}) {
+            UserBehavior event = new UserBehavior("user_123", "item_45", action, 1_700_000_000_123L, "msg-1");
+
+            byte[] encoded = codec.encode(event);
+
+            // version + flags + 8 + 8 + action + timestamp + messageId(2 + 5)
+            assertEquals(2 + 8 + 8 + 1 + 8 + 7, encoded.length);
+            assertEquals(UserBehaviorBinaryCodec.VERSION, encoded[0]);
+            assertEquals(event, codec.decode(encoded));
+        }
+    }
+
+    @Test
+    void nonCanonicalIdsAreKeptAsText() {
+        // 前导零、非数字后缀、其他前缀都不能压成 long，否则解码后与原值不同
+        for (String userId : new String[]{"user_007", "user_abc", "guest_1", "user_", "user_1234567890123456789"}) {
+            UserBehavior event = new UserBehavior(userId, "item_0", "view", 1L, "m");
+
+            assertEquals(event, codec.decode(codec.encode(event)));
+        }
+    }
+
+    @Test
+    void nullFieldsRoundTripAsNull() {
+        UserBehavior event = new UserBehavior(null, null, null, 0L, null);
+
+        UserBehavior decoded = codec.decode(codec.encode(event));
+
+        assertNull(decoded.getUserId());
+        assertNull(decoded.getItemId());
+        assertNull(decoded.getActionType());
+        assertNull(decoded.getMessageId());
+        assertEquals(0L, decoded.getTimestamp());
+    }
+
+    @Test
+    void unknownActionIsCarriedAsText() {
+        UserBehavior event = new UserBehavior("user_1", "item_2", "share", 5L, "m");
+
+        assertEquals(event, codec.decode(codec.encode(event)));
+    }
+
+    @Test
+    void unsupportedVersionIsRejected() {
+        byte[] encoded = codec.encode(new UserBehavior("user_1", "item_2", "view", 5L, "m"));
+        encoded[0] = (byte) (UserBehaviorBinaryCodec.VERSION + 1);
+
+        assertThrows(SerializationException.class, () -> codec.decode(encoded));
+    }
+
+    @Test
+    void truncatedOrCorruptRecordsAreRejected() {
+        byte[] encoded = codec.encode(new UserBehavior("user_1", "item_2", "view", 5L, "m"));
+        assertThrows(SerializationException.class, () -> codec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+
+        // 行为编码超出已知范围
+        encoded[18] = 9;
+        assertThrows(SerializationException.class, () -> codec.decode(encoded));
+    }
+}
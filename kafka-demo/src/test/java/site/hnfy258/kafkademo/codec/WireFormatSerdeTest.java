@@ -0,0 +1,78 @@
+package site.hnfy258.kafkademo.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import site.hnfy258.common.codec.WireFormat;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.stream.JsonEventSerde;
+import site.hnfy258.entity.UserBehavior;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 线上格式协商：按 Header 选择解码器，无 Header 的旧消息按 JSON 解析，坏消息返回 null 并计数
+ */
+class WireFormatSerdeTest {
+
+    private static final String TOPIC = "user-behaviors";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserBehavior event = new UserBehavior("user_1", "item_2", "click", 1_700_000_000_000L, "msg-1");
+
+    @Test
+    void binaryRecordsCarryHeaderAndRoundTrip() {
+        WireFormatSerde<UserBehavior> serde = newSerde(WireFormat.BINARY);
+        Headers headers = new RecordHeaders();
+
+        byte[] data = serde.serializer().serialize(TOPIC, headers, event);
+
+        assertEquals(WireFormat.BINARY, WireFormat.from(headers));
+        assertEquals(UserBehaviorBinaryCodec.VERSION, data[0]);
+        assertEquals(event, serde.deserializer().deserialize(TOPIC, headers, data));
+        assertEquals(1L, serde.getStats().get("binaryDecoded"));
+    }
+
+    @Test
+    void recordsWithoutHeaderAreReadAsJson() {
+        WireFormatSerde<UserBehavior> binarySerde = newSerde(WireFormat.BINARY);
+        byte[] legacy = newSerde(WireFormat.JSON).serializer().serialize(TOPIC, event);
+
+        assertEquals(event, binarySerde.deserializer().deserialize(TOPIC, new RecordHeaders(), legacy));
+        assertEquals(event, binarySerde.deserializer().deserialize(TOPIC, legacy));
+        assertEquals(2L, binarySerde.getStats().get("jsonDecoded"));
+    }
+
+    @Test
+    void binarySerdeWritesJsonWithoutHeaders() {
+        WireFormatSerde<UserBehavior> binarySerde = newSerde(WireFormat.BINARY);
+
+        byte[] data = binarySerde.serializer().serialize(TOPIC, event);
+
+        assertEquals('{', data[0]);
+        assertEquals(event, binarySerde.deserializer().deserialize(TOPIC, data));
+    }
+
+    @Test
+    void malformedRecordsAreDroppedAndCounted() {
+        WireFormatSerde<UserBehavior> serde = newSerde(WireFormat.BINARY);
+        Headers binaryHeaders = new RecordHeaders();
+        WireFormat.BINARY.writeTo(binaryHeaders);
+        byte[] binary = serde.encode(event, new RecordHeaders());
+        binary[0] = 99;
+
+        assertNull(serde.decode(binary, binaryHeaders));
+        assertNull(serde.decode("not json".getBytes(StandardCharsets.UTF_8), null));
+        assertNull(serde.decode(new byte[0], binaryHeaders));
+        assertEquals(2L, serde.getStats().get("malformed"));
+    }
+
+    private WireFormatSerde<UserBehavior> newSerde(WireFormat outgoingFormat) {
+        return new WireFormatSerde<>(new JsonEventSerde<>(objectMapper, UserBehavior.class),
+                new UserBehaviorBinaryCodec(), outgoingFormat);
+    }
+}
@@ -0,0 +1,178 @@
+package site.hnfy258.kafkademo.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并行引擎：同一 lane 的记录合并为一批处理；失败的批次按退避重试，重试成功前提交位置不越过失败的偏移量；
+ * 分区撤销释放后不再重试；重试耗尽后交给死信处理；在途已满时 submit 超时返回未接收的记录
+ */
+class ParallelConsumerEngineTest {
+
+    private static final String TOPIC = "engine_test";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+    private static final Duration ACQUIRE_TIMEOUT = Duration.ofSeconds(1);
+
+    @Test
+    void recordsOfOneLaneAreHandledAsOneBatch() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        ParallelConsumerEngine<String, String> engine = new ParallelConsumerEngine<>("test", 1, 1000, records -> {
+            synchronized (batchSizes) {
+                batchSizes.add(records.size());
+            }
+        });
+        try {
+            assertTrue(engine.submit(records(0, 100), ACQUIRE_TIMEOUT).isEmpty());
+
+            awaitCondition(() -> engine.inFlightCount() == 0);
+            assertEquals(List.of(100), batchSizes);
+            assertEquals(100L, engine.committableOffsets().get(PARTITION).offset());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void failedBatchIsRetriedAndNotCommittedUntilItSucceeds() throws Exception {
+        AtomicBoolean healthy = new AtomicBoolean(false);
+        AtomicInteger attempts = new AtomicInteger();
+        ParallelConsumerEngine<String, String> engine = new ParallelConsumerEngine<>("test", 2, 1000, records -> {
+            attempts.incrementAndGet();
+            if (!healthy.get() && records.stream().anyMatch(record -> "user_0".equals(record.key()))) {
+                throw new IllegalStateException("Redis unavailable");
+            }
+        }, null, Duration.ofMillis(5), Duration.ofMillis(20), Integer.MAX_VALUE, null);
+        try {
+            engine.submit(records(0, 100), ACQUIRE_TIMEOUT);
+
+            awaitCondition(() -> attempts.get() >= 5);
+            // user_0 的第一条记录偏移量为 0，失败期间提交位置不能越过它
+            OffsetAndMetadata committable = engine.committableOffsets().get(PARTITION);
+            assertTrue(committable == null || committable.offset() == 0, "committed past a failed record: " + committable);
+            assertTrue(engine.inFlightCount() > 0);
+
+            healthy.set(true);
+            awaitCondition(() -> engine.inFlightCount() == 0);
+            assertEquals(100L, engine.committableOffsets().get(PARTITION).offset());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void releasedPartitionStopsRetrying() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ParallelConsumerEngine<String, String> engine = new ParallelConsumerEngine<>("test", 1, 1000, records -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Redis unavailable");
+        }, null, Duration.ofMillis(5), Duration.ofMillis(5), Integer.MAX_VALUE, null);
+        try {
+            engine.submit(records(0, 10), ACQUIRE_TIMEOUT);
+            awaitCondition(() -> attempts.get() >= 2);
+
+            assertFalse(engine.drain(List.of(PARTITION), Duration.ofMillis(50)));
+            engine.release(List.of(PARTITION));
+
+            awaitCondition(() -> engine.inFlightCount() == 0);
+            assertEquals(10L, engine.getStats().get("abandoned"));
+            assertTrue(engine.committableOffsets().isEmpty());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void exhaustedBatchIsDeadLetteredAndCommitted() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        List<Long> deadLettered = new ArrayList<>();
+        ParallelConsumerEngine<String, String> engine = new ParallelConsumerEngine<>("test", 1, 1000, records -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Redis unavailable");
+        }, null, Duration.ofMillis(1), Duration.ofMillis(1), 3, records -> {
+            synchronized (deadLettered) {
+                records.forEach(record -> deadLettered.add(record.offset()));
+            }
+        });
+        try {
+            engine.submit(records(0, 10), ACQUIRE_TIMEOUT);
+
+            awaitCondition(() -> engine.inFlightCount() == 0);
+            assertEquals(3, attempts.get());
+            assertEquals(10, deadLettered.size());
+            assertEquals(10L, engine.getStats().get("deadLettered"));
+            assertEquals(10L, engine.committableOffsets().get(PARTITION).offset());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void exhaustedBatchWithoutDeadLetterIsNotCommitted() throws Exception {
+        ParallelConsumerEngine<String, String> engine = new ParallelConsumerEngine<>("test", 1, 1000, records -> {
+            throw new IllegalStateException("Redis unavailable");
+        }, null, Duration.ofMillis(1), Duration.ofMillis(1), 2, null);
+        try {
+            engine.submit(records(0, 10), ACQUIRE_TIMEOUT);
+
+            awaitCondition(() -> engine.inFlightCount() == 0);
+            assertEquals(10L, engine.getStats().get("exhausted"));
+            OffsetAndMetadata committable = engine.committableOffsets().get(PARTITION);
+            assertTrue(committable == null || committable.offset() == 0, "committed past an exhausted record: " + committable);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void saturatedSubmitReturnsUnacceptedRecordsAfterTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ParallelConsumerEngine<String, String> engine = new ParallelConsumerEngine<>("test", 1, 10,
+                records -> release.await());
+        try {
+            List<ConsumerRecord<String, String>> remaining = engine.submit(records(0, 30), Duration.ofMillis(20));
+
+            assertEquals(20, remaining.size());
+            assertEquals(10L, remaining.get(0).offset());
+            assertTrue(engine.isSaturated());
+
+            release.countDown();
+            awaitCondition(() -> engine.inFlightCount() == 0);
+            assertTrue(engine.submit(remaining, ACQUIRE_TIMEOUT).isEmpty());
+            awaitCondition(() -> engine.inFlightCount() == 0);
+            assertEquals(30L, engine.committableOffsets().get(PARTITION).offset());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static List<ConsumerRecord<String, String>> records(int from, int count) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>(count);
+        for (int offset = from; offset < from + count; offset++) {
+            records.add(new ConsumerRecord<>(TOPIC, 0, offset, "user_" + (offset % 10), "event_" + offset));
+        }
+        return records;
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for engine");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package site.hnfy258.kafkademo.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 撤销时排空并同步提交：在持续消费的同时加入/移除消费者强制多次再平衡，
+ * 统计同一 (partition, offset) 被处理的次数，重复处理应接近 0
+ */
+@EmbeddedKafka(partitions = 6, topics = RevokeDrainRebalanceTest.TOPIC)
+class RevokeDrainRebalanceTest {
+
+    static final String TOPIC = "revoke_drain_test";
+    private static final String GROUP = "revoke_drain_test_group";
+    // 规模只需保证每次再平衡时都有在途记录；嵌入式 Broker 上整个用例控制在数秒内
+    private static final int RECORDS = 3_000;
+    private static final int MAX_DUPLICATES = 3;
+    private static final long WAIT_SECONDS = 30;
+
+    private final Map<String, Integer> processed = new ConcurrentHashMap<>();
+    private final AtomicInteger aggregateFlushes = new AtomicInteger();
+
+    @Test
+    void rebalancesUnderLoadDoNotReprocessRecords(EmbeddedKafkaBroker broker) throws Exception {
+        produce(broker.getBrokersAsString());
+
+        List<ConsumerLoop> consumers = new ArrayList<>();
+        consumers.add(new ConsumerLoop(broker.getBrokersAsString(), 0));
+        awaitProcessed(RECORDS / 5);
+        consumers.add(new ConsumerLoop(broker.getBrokersAsString(), 1));
+        awaitProcessed(RECORDS * 2 / 5);
+        consumers.add(new ConsumerLoop(broker.getBrokersAsString(), 2));
+        awaitProcessed(RECORDS * 3 / 5);
+        consumers.get(0).stop();
+        awaitProcessed(RECORDS * 4 / 5);
+        consumers.get(1).stop();
+        awaitProcessed(RECORDS);
+        consumers.get(2).stop();
+
+        long duplicates = processed.values().stream().filter(count -> count > 1).count();
+        assertEquals(RECORDS, processed.size());
+        assertTrue(duplicates <= MAX_DUPLICATES, "duplicates after rebalances: " + duplicates);
+        assertTrue(aggregateFlushes.get() > 0, "aggregates should be persisted on revoke");
+    }
+
+    private void produce(String bootstrapServers) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        try (KafkaProducer<String, String> producer =
+                     new KafkaProducer<>(props, new StringSerializer(), new StringSerializer())) {
+            for (int i = 0; i < RECORDS; i++) {
+                producer.send(new ProducerRecord<>(TOPIC, "user_" + (i % 100), "event_" + i));
+            }
+            producer.flush();
+        }
+    }
+
+    private void awaitProcessed(int records) throws InterruptedException {
+        awaitCondition(() -> processed.size() >= records);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for consumers");
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * 与 manualAckKafkaListenerContainerFactory 相同的处理方式：poll -> 并行引擎 -> 提交连续完成的偏移量，
+     * 分区撤销由 DrainingRebalanceListener 处理
+     */
+    private final class ConsumerLoop implements Runnable {
+        private final KafkaConsumer<String, String> consumer;
+        private final ParallelConsumerEngine<String, String> engine;
+        private final DrainingRebalanceListener listener;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private ConsumerLoop(String bootstrapServers, int index) {
+            Map<String, Object> props = new HashMap<>();
+            props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+            props.put(ConsumerConfig.GROUP_ID_CONFIG, GROUP);
+            props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+            props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100);
+            props.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName());
+            this.consumer = new KafkaConsumer<>(props, new StringDeserializer(), new StringDeserializer());
+            this.engine = new ParallelConsumerEngine<>("test-" + index, 4, 500, records -> {
+                for (ConsumerRecord<String, String> record : records) {
+                    processed.merge(record.partition() + ":" + record.offset(), 1, Integer::sum);
+                }
+                // 模拟写 Redis 的耗时，让撤销时总有在途记录
+                LockSupport.parkNanos(200_000L * records.size());
+            });
+            this.listener = new DrainingRebalanceListener(engine, aggregateFlushes::incrementAndGet, null,
+                    Duration.ofSeconds(5));
+            this.thread = new Thread(this, "revoke-drain-consumer-" + index);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            consumer.subscribe(List.of(TOPIC), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    listener.onPartitionsRevokedBeforeCommit(consumer, partitions);
+                    listener.onPartitionsRevokedAfterCommit(consumer, partitions);
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    listener.onPartitionsAssigned(consumer, partitions);
+                }
+
+                @Override
+                public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                    listener.onPartitionsLost(consumer, partitions);
+                }
+            });
+            try {
+                while (running) {
+                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(50));
+                    List<ConsumerRecord<String, String>> batch = new ArrayList<>(records.count());
+                    records.forEach(batch::add);
+                    ParallelConsumerEngine.rewind(consumer, engine.submit(batch, Duration.ofMillis(100)));
+                    engine.commitCompleted(consumer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // close 时会回调 onPartitionsRevoked：排空在途记录并同步提交
+                consumer.close();
+                engine.shutdown();
+            }
+        }
+
+        private void stop() throws InterruptedException {
+            running = false;
+            thread.join(TimeUnit.SECONDS.toMillis(WAIT_SECONDS));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package site.hnfy258.kafkademo.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对数分桶直方图：分位数返回所在桶的上界，不低于真实值且相对误差不超过 25%
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // 跨越 1us ~ 10s 的对数均匀分布
+            values[i] = (long) Math.pow(10, random.nextDouble() * 7);
+            histogram.recordMicros(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.count());
+        for (double percentile : new double[]{0.5, 0.9, 0.99, 0.999, 1.0}) {
+            long exact = values[(int) Math.ceil(percentile * values.length) - 1];
+            long reported = histogram.percentileMicros(percentile);
+            assertTrue(reported >= exact, "p" + percentile + " " + reported + " < " + exact);
+            assertTrue(reported <= exact * 1.25 + 1, "p" + percentile + " " + reported + " vs " + exact);
+        }
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 0; micros < 4; micros++) {
+            histogram.recordMicros(micros);
+        }
+
+        assertEquals(0, histogram.percentileMicros(0.25));
+        assertEquals(1, histogram.percentileMicros(0.5));
+        assertEquals(3, histogram.percentileMicros(1.0));
+    }
+
+    @Test
+    void negativeValuesAreClampedToZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(-5);
+
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.percentileMicros(1.0));
+    }
+
+    @Test
+    void emptyAndResetHistogramsReportZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileMicros(0.99));
+
+        histogram.recordMicros(1234);
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentileMicros(0.99));
+    }
+}
@@ -0,0 +1,101 @@
+package site.hnfy258.kafkademo.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 令牌桶限速：单线程、批量预支与多线程共享时整体速率都不超过目标值；rate <= 0 不限速
+ */
+class TokenBucketPacerTest {
+
+    private static final double RATE = 2000;
+
+    @Test
+    void singleThreadIsPacedToTargetRate() throws Exception {
+        TokenBucketPacer pacer = new TokenBucketPacer(RATE, 1);
+
+        long elapsedMs = timeMillis(() -> {
+            for (int i = 0; i < 1000; i++) {
+                pacer.acquire();
+            }
+        });
+
+        // 1000 个令牌按 2000/s 生成约需 500ms；上界放宽以容忍调度抖动
+        assertRate(elapsedMs, 1000);
+    }
+
+    @Test
+    void acquiringManyPermitsAtOnceCostsTheSameTime() throws Exception {
+        TokenBucketPacer pacer = new TokenBucketPacer(RATE, 1);
+
+        long elapsedMs = timeMillis(() -> {
+            for (int i = 0; i < 10; i++) {
+                pacer.acquire(100);
+            }
+        });
+
+        assertRate(elapsedMs, 1000);
+    }
+
+    @Test
+    void sharedPacerLimitsAggregateRate() throws Exception {
+        TokenBucketPacer pacer = new TokenBucketPacer(RATE, 1);
+
+        long elapsedMs = timeMillis(() -> {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 250; i++) {
+                            pacer.acquire();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+
+        assertRate(elapsedMs, 1000);
+    }
+
+    @Test
+    void nonPositiveRateIsUnlimited() throws Exception {
+        TokenBucketPacer pacer = new TokenBucketPacer(0, 100);
+
+        long elapsedMs = timeMillis(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                pacer.acquire();
+            }
+            pacer.acquire(1_000_000);
+        });
+
+        assertTrue(elapsedMs < 500, "unlimited pacer took " + elapsedMs + "ms");
+    }
+
+    private static void assertRate(long elapsedMs, int permits) {
+        long expectedMs = (long) (permits * 1000 / RATE);
+        assertTrue(elapsedMs >= expectedMs * 9 / 10, "too fast: " + elapsedMs + "ms for " + permits + " permits");
+        assertTrue(elapsedMs <= expectedMs * 3, "too slow: " + elapsedMs + "ms for " + permits + " permits");
+    }
+
+    private static long timeMillis(Interruptible body) throws Exception {
+        long start = System.nanoTime();
+        body.run();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private interface Interruptible {
+        void run() throws InterruptedException;
+    }
+}
@@ -0,0 +1,68 @@
+package site.hnfy258.kafkademo.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Zipf 采样：下标落在范围内，经验频率与 1/k^s 的理论概率一致，s = 0 退化为均匀分布
+ */
+class ZipfSamplerTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void frequenciesFollowZipfLaw() {
+        int size = 100;
+        double exponent = 1.0;
+        long[] counts = sample(new ZipfSampler(size, exponent), size);
+
+        double harmonic = 0;
+        for (int k = 1; k <= size; k++) {
+            harmonic += 1.0 / Math.pow(k, exponent);
+        }
+        for (int k = 1; k <= 5; k++) {
+            double expected = 1.0 / Math.pow(k, exponent) / harmonic;
+            double actual = (double) counts[k - 1] / SAMPLES;
+            assertEquals(expected, actual, 0.01, "rank " + k);
+        }
+        // 排名第 1 与第 2 的频率比接近 2^s
+        double ratio = (double) counts[0] / counts[1];
+        assertTrue(ratio > 1.8 && ratio < 2.2, "rank 1/2 ratio " + ratio);
+    }
+
+    @Test
+    void zeroExponentIsUniform() {
+        int size = 10;
+        long[] counts = sample(new ZipfSampler(size, 0), size);
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(0.1, (double) counts[i] / SAMPLES, 0.01, "index " + i);
+        }
+    }
+
+    @Test
+    void singleElementAlwaysReturnsZero() {
+        ZipfSampler sampler = new ZipfSampler(1, 1.2);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, sampler.next());
+        }
+    }
+
+    @Test
+    void nonPositiveSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ZipfSampler(0, 1.0));
+    }
+
+    private static long[] sample(ZipfSampler sampler, int size) {
+        long[] counts = new long[size];
+        for (int i = 0; i < SAMPLES; i++) {
+            int index = sampler.next();
+            assertTrue(index >= 0 && index < size, "index out of range: " + index);
+            counts[index]++;
+        }
+        return counts;
+    }
+}
@@ -5,7 +5,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = {"site.hnfy258.storedemo", "site.hnfy258.common"})
 @EnableCaching
 @MapperScan("site.hnfy258.storedemo.mapper")
 public class StoreDemoApplication {
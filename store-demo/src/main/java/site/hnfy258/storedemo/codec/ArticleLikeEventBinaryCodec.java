@@ -0,0 +1,85 @@
+package site.hnfy258.storedemo.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import site.hnfy258.common.codec.BinaryFields;
+import site.hnfy258.common.codec.EventCodec;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * ArticleLikeEvent 的二进制格式（版本 1）
+ * <pre>
+ * version:1 | flags:1 | articleId:8 | userId:8 | action:1 [| actionLength:2 | action:UTF-8] | timestamp:8(epoch millis)
+ * </pre>
+ * flags 标记可空字段是否存在，缺失的数值字段写 0。
+ * 已知动作（LIKE/UNLIKE）编码为 1 字节，整条记录 27 字节；
+ * 未知动作（包括 null）编码为 0，并追加 2 字节长度 + UTF-8 原始字符串，记录长度为 29 + 字符串字节数。
+ */
+public class ArticleLikeEventBinaryCodec implements EventCodec<ArticleLikeEvent> {
+
+    public static final byte VERSION = 1;
+
+    private static final int FLAG_ARTICLE_ID = 1;
+    private static final int FLAG_USER_ID = 1 << 1;
+    private static final int FLAG_TIMESTAMP = 1 << 2;
+    private static final String[] ACTIONS = {null, "LIKE", "UNLIKE"};
+
+    @Override
+    public byte[] encode(ArticleLikeEvent event) {
+        byte actionCode = actionCode(event.getAction());
+        byte[] actionText = actionCode == 0 ? BinaryFields.utf8(event.getAction()) : null;
+
+        int flags = (event.getArticleId() != null ? FLAG_ARTICLE_ID : 0)
+                | (event.getUserId() != null ? FLAG_USER_ID : 0)
+                | (event.getTimestamp() != null ? FLAG_TIMESTAMP : 0);
+        int size = 2 + 8 + 8 + 1 + (actionCode == 0 ? BinaryFields.sizeOf(actionText) : 0) + 8;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) flags);
+        buffer.putLong(event.getArticleId() != null ? event.getArticleId() : 0L);
+        buffer.putLong(event.getUserId() != null ? event.getUserId() : 0L);
+        buffer.put(actionCode);
+        if (actionCode == 0) {
+            BinaryFields.putString(buffer, actionText);
+        }
+        buffer.putLong(event.getTimestamp() != null ? event.getTimestamp().getTime() : 0L);
+        return buffer.array();
+    }
+
+    @Override
+    public ArticleLikeEvent decode(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new SerializationException("Unsupported ArticleLikeEvent binary version: " + version);
+            }
+            int flags = buffer.get();
+            long articleId = buffer.getLong();
+            long userId = buffer.getLong();
+            int actionCode = buffer.get();
+            String action = actionCode == 0 ? BinaryFields.getString(buffer) : ACTIONS[actionCode];
+            long timestamp = buffer.getLong();
+            return new ArticleLikeEvent(
+                    (flags & FLAG_ARTICLE_ID) != 0 ? articleId : null,
+                    (flags & FLAG_USER_ID) != 0 ? userId : null,
+                    action,
+                    (flags & FLAG_TIMESTAMP) != 0 ? new Date(timestamp) : null);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated or corrupt ArticleLikeEvent binary record", e);
+        }
+    }
+
+    private static byte actionCode(String action) {
+        for (int i = 1; i < ACTIONS.length; i++) {
+            if (ACTIONS[i].equals(action)) {
+                return (byte) i;
+            }
+        }
+        return 0;
+    }
+}
@@ -2,17 +2,30 @@ package site.hnfy258.storedemo.component;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.admin.AdminClient;
-import org.apache.kafka.clients.admin.ListTopicsResult;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.config.TopicConfig;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.stereotype.Component;
+import site.hnfy258.storedemo.config.KafkaTopicRegistry;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * 按注册表补建缺失的 Topic，并校验 Broker 上的 Topic 规格
+ * 分区数、副本数、压缩方式或保留时间与注册表不一致时启动失败（kafka.topics.fail-on-mismatch=false 时只告警）；
+ * Broker 不可用时无法校验，只记录日志，让应用继续启动
+ */
 @Component
 @Slf4j
 public class KafkaTopicInitializer implements CommandLineRunner {
@@ -20,28 +33,86 @@ public class KafkaTopicInitializer implements CommandLineRunner {
     @Autowired
     private KafkaAdmin kafkaAdmin;
 
-    private static final String ARTICLE_LIKE_EVENTS_TOPIC = "article-likes-events";
+    @Autowired
+    private KafkaTopicRegistry topicRegistry;
 
     @Override
     public void run(String... args) throws Exception {
+        List<String> mismatches;
         try (AdminClient adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
-            // 检查 topic 是否存在
-            ListTopicsResult listTopics = adminClient.listTopics();
-            Set<String> topicNames = listTopics.names().get(10, TimeUnit.SECONDS);
-            
-            if (!topicNames.contains(ARTICLE_LIKE_EVENTS_TOPIC)) {
-                log.info("Topic '{}' does not exist, creating it...", ARTICLE_LIKE_EVENTS_TOPIC);
-                
-                NewTopic newTopic = new NewTopic(ARTICLE_LIKE_EVENTS_TOPIC, 3, (short) 1);
-                adminClient.createTopics(Collections.singletonList(newTopic)).all().get(30, TimeUnit.SECONDS);
-                
-                log.info("Topic '{}' created successfully", ARTICLE_LIKE_EVENTS_TOPIC);
-            } else {
-                log.info("Topic '{}' already exists", ARTICLE_LIKE_EVENTS_TOPIC);
-            }
+            createMissingTopics(adminClient);
+            mismatches = validate(adminClient);
         } catch (Exception e) {
-            log.error("Error initializing Kafka topics", e);
-            // 不抛出异常，让应用继续启动
+            log.error("Error initializing Kafka topics, topic validation skipped", e);
+            return;
+        }
+
+        if (mismatches.isEmpty()) {
+            log.info("Kafka topics match the registry: {}", topicNames());
+            return;
+        }
+        String message = "Kafka topics do not match the registry: " + String.join("; ", mismatches);
+        if (topicRegistry.isFailOnMismatch()) {
+            throw new IllegalStateException(message);
         }
+        log.warn(message);
+    }
+
+    private void createMissingTopics(AdminClient adminClient) throws Exception {
+        Set<String> existing = adminClient.listTopics().names().get(10, TimeUnit.SECONDS);
+        List<NewTopic> missing = topicRegistry.all().stream()
+                .filter(spec -> !existing.contains(spec.getName()))
+                .map(KafkaTopicRegistry.TopicSpec::toNewTopic)
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            log.info("Creating missing topics: {}", missing.stream().map(NewTopic::name).toList());
+            adminClient.createTopics(missing).all().get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private List<String> validate(AdminClient adminClient) throws Exception {
+        List<String> names = topicNames();
+        Map<String, TopicDescription> descriptions = adminClient.describeTopics(names)
+                .allTopicNames().get(10, TimeUnit.SECONDS);
+        List<ConfigResource> resources = names.stream()
+                .map(name -> new ConfigResource(ConfigResource.Type.TOPIC, name))
+                .toList();
+        Map<ConfigResource, Config> configs = adminClient.describeConfigs(resources).all().get(10, TimeUnit.SECONDS);
+
+        List<String> mismatches = new ArrayList<>();
+        for (KafkaTopicRegistry.TopicSpec spec : topicRegistry.all()) {
+            TopicDescription description = descriptions.get(spec.getName());
+            int partitions = description.partitions().size();
+            if (partitions != spec.getPartitions()) {
+                mismatches.add(String.format("%s partitions=%d, expected %d", spec.getName(), partitions, spec.getPartitions()));
+            }
+            int replicas = description.partitions().get(0).replicas().size();
+            if (replicas != spec.getReplicationFactor()) {
+                mismatches.add(String.format("%s replicationFactor=%d, expected %d",
+                        spec.getName(), replicas, spec.getReplicationFactor()));
+            }
+
+            Config config = configs.get(new ConfigResource(ConfigResource.Type.TOPIC, spec.getName()));
+            String compression = value(config, TopicConfig.COMPRESSION_TYPE_CONFIG);
+            if (!spec.getCompressionType().equals(compression)) {
+                mismatches.add(String.format("%s compression.type=%s, expected %s",
+                        spec.getName(), compression, spec.getCompressionType()));
+            }
+            String retention = value(config, TopicConfig.RETENTION_MS_CONFIG);
+            if (!String.valueOf(spec.getRetentionMs()).equals(retention)) {
+                mismatches.add(String.format("%s retention.ms=%s, expected %d",
+                        spec.getName(), retention, spec.getRetentionMs()));
+            }
+        }
+        return mismatches;
+    }
+
+    private List<String> topicNames() {
+        return topicRegistry.all().stream().map(KafkaTopicRegistry.TopicSpec::getName).toList();
+    }
+
+    private static String value(Config config, String name) {
+        ConfigEntry entry = config == null ? null : config.get(name);
+        return entry == null ? null : entry.value();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package site.hnfy258.storedemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.StreamsConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.StreamsBuilderFactoryBeanConfigurer;
+
+/**
+ * 点赞排行链路的 exactly-once 开关（kafka.exactly-once.enabled，默认关闭）
+ * 开启后流拓扑使用 exactly_once_v2：窗口状态、changelog、消费位点以及排行榜更新（写入 article-ranking-updates）
+ * 在同一事务中提交。Redis 不参与 Kafka 事务，更新由 ArticleRankingUpdateListener 读取已提交的消息后写入，
+ * 写入成功才提交位点；失败重试产生的重复写入由排行榜的版本化幂等写入吸收。
+ */
+@Slf4j
+@Configuration
+public class ExactlyOnceConfig {
+
+    @Value("${kafka.exactly-once.enabled:false}")
+    private boolean exactlyOnce;
+
+    @Value("${kafka.exactly-once.commit-interval-ms:100}")
+    private long commitIntervalMs;
+
+    @Bean
+    public StreamsBuilderFactoryBeanConfigurer processingGuaranteeConfigurer() {
+        return factoryBean -> {
+            if (!exactlyOnce) {
+                log.info("Kafka Streams processing guarantee: at_least_once");
+                return;
+            }
+            factoryBean.getStreamsConfiguration().put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.EXACTLY_ONCE_V2);
+            factoryBean.getStreamsConfiguration().put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, commitIntervalMs);
+            log.info("Kafka Streams processing guarantee: exactly_once_v2, commit interval {} ms", commitIntervalMs);
+        };
+    }
+}
@@ -12,6 +12,8 @@ public class JwtConfig {
     private long accessTokenExpiration = 3600000; // 1小时
     private long refreshTokenExpiration = 604800000; // 7天
     private String issuer = "store-demo";
+    // 已验签访问令牌的本地缓存条数，0 关闭缓存
+    private int verifiedCacheCapacity = 10000;
     
     // PC和Mobile的不同配置
     private DeviceConfig pc = new DeviceConfig(3600000L, 604800000L); // PC: 1小时access, 7天refresh
@@ -4,12 +4,20 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.config.ProducerProfile;
+import site.hnfy258.common.stream.JsonEventSerde;
+import site.hnfy258.storedemo.dto.ArticleLikeCountUpdate;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -23,41 +31,63 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    // 开启后：流拓扑使用 exactly_once_v2，生产者使用事务，监听器只读取已提交的消息
+    @Value("${kafka.exactly-once.enabled:false}")
+    private boolean exactlyOnce;
+
+    @Value("${kafka.exactly-once.transaction-id-prefix:article-like-tx-}")
+    private String transactionIdPrefix;
+
+    @Value("${kafka.producer.profile:LATENCY}")
+    private ProducerProfile producerProfile;
+
+    // 点赞事件的消息体按 Header 协商 JSON/二进制格式
+    @Autowired
+    private WireFormatSerde<ArticleLikeEvent> articleLikeEventSerde;
+
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, ArticleLikeEvent> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
-        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 1);
-        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        // 批次、linger、压缩与缓冲区由档位决定；点赞是用户交互触发，默认走 LATENCY
+        producerProfile.applyTo(configProps);
+        if (exactlyOnce) {
+            // 事务生产者必须开启幂等
+            configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        }
+        DefaultKafkaProducerFactory<String, ArticleLikeEvent> factory =
+                new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), articleLikeEventSerde.serializer());
+        if (exactlyOnce) {
+            factory.setTransactionIdPrefix(transactionIdPrefix);
+        }
+        return factory;
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, ArticleLikeEvent> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, ArticleLikeEvent> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
         props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, 1000);
-        return new DefaultKafkaConsumerFactory<>(props);
+        if (exactlyOnce) {
+            // 跳过中止事务中的消息
+            props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        }
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), articleLikeEventSerde.deserializer());
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    public ConcurrentKafkaListenerContainerFactory<String, ArticleLikeEvent> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ArticleLikeEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
         return factory;
     }
@@ -84,6 +114,29 @@ public class KafkaConfig {
         return factory;
     }
 
+    /**
+     * 排行榜更新消费者（仅 exactly-once 模式使用）：只读已提交的更新，写入Redis成功后才提交位点，
+     * 写入失败时按间隔无限重试整批，Redis 故障期间不会跳过任何更新
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ArticleLikeCountUpdate> rankingUpdateListenerContainerFactory(
+            JsonEventSerde<ArticleLikeCountUpdate> rankingUpdateSerde) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
+
+        ConcurrentKafkaListenerContainerFactory<String, ArticleLikeCountUpdate> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                rankingUpdateSerde.deserializer()));
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000L, FixedBackOff.UNLIMITED_ATTEMPTS)));
+        return factory;
+    }
+
     /**
      * 专门用于再平衡演示的消费者工厂
      */
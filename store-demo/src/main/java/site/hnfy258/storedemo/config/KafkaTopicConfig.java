@@ -20,11 +20,19 @@ public class KafkaTopicConfig {
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
         configs.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        return new KafkaAdmin(configs);
+        KafkaAdmin kafkaAdmin = new KafkaAdmin(configs);
+        // 注册表中的分区数增加、压缩/保留配置变化时同步到 Broker
+        kafkaAdmin.setModifyTopicConfigs(true);
+        return kafkaAdmin;
     }
 
+    /**
+     * 注册表中的所有 Topic，由 KafkaAdmin 在启动时创建或扩分区
+     */
     @Bean
-    public NewTopic articleLikeEventsTopic() {
-        return new NewTopic("article-likes-events", 3, (short) 1);
+    public KafkaAdmin.NewTopics registeredTopics(KafkaTopicRegistry topicRegistry) {
+        return new KafkaAdmin.NewTopics(topicRegistry.all().stream()
+                .map(KafkaTopicRegistry.TopicSpec::toNewTopic)
+                .toArray(NewTopic[]::new));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package site.hnfy258.storedemo.config;
+
+import lombok.Data;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.stereotype.Component;
+import site.hnfy258.common.config.ProducerProfile;
+
+import java.util.List;
+
+/**
+ * Kafka Topic 注册表：生产者、流拓扑、监听器与 Topic 初始化统一从这里取 Topic 名称与规格
+ * 扩分区、调整保留时间等只需修改这里（或 kafka.topics.* 配置）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "kafka.topics")
+public class KafkaTopicRegistry {
+
+    // 启动时 Broker 上的 Topic 与注册表不一致则直接启动失败
+    private boolean failOnMismatch = true;
+
+    // Topic 压缩统一为 producer：保留生产者按档位（ProducerProfile）选择的压缩格式，Broker 不再解压重压
+    private static final String PRODUCER_COMPRESSION = "producer";
+
+    // 文章点赞事件：生产者写入，排行榜流拓扑与监控消费者读取
+    private TopicSpec articleLikeEvents = new TopicSpec("article-likes-events", 3, (short) 1, PRODUCER_COMPRESSION, 604800000L); // 7天
+
+    // 投递语义基准测试专用，避免影响排行榜
+    private TopicSpec articleLikeBenchmark = new TopicSpec("article-like-benchmark", 3, (short) 1, PRODUCER_COMPRESSION, 86400000L); // 1天
+
+    // 排行榜更新：exactly-once 模式下流拓扑在事务内写入，由 ArticleRankingUpdateListener 幂等写入Redis
+    private TopicSpec articleRankingUpdates = new TopicSpec("article-ranking-updates", 3, (short) 1, PRODUCER_COMPRESSION, 86400000L); // 1天
+
+    public List<TopicSpec> all() {
+        return List.of(articleLikeEvents, articleLikeBenchmark, articleRankingUpdates);
+    }
+
+    @Data
+    public static class TopicSpec {
+        private String name;
+        private int partitions;
+        private short replicationFactor;
+        private String compressionType;
+        private long retentionMs;
+
+        public TopicSpec() {}
+
+        public TopicSpec(String name, int partitions, short replicationFactor, String compressionType, long retentionMs) {
+            this.name = name;
+            this.partitions = partitions;
+            this.replicationFactor = replicationFactor;
+            this.compressionType = compressionType;
+            this.retentionMs = retentionMs;
+        }
+
+        public NewTopic toNewTopic() {
+            return TopicBuilder.name(name)
+                    .partitions(partitions)
+                    .replicas(replicationFactor)
+                    .config(TopicConfig.COMPRESSION_TYPE_CONFIG, compressionType)
+                    .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(retentionMs))
+                    .build();
+        }
+    }
+}
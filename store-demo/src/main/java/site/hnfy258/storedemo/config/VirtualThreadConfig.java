@@ -0,0 +1,53 @@
+package site.hnfy258.storedemo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.kafka.config.AbstractKafkaListenerContainerFactory;
+import site.hnfy258.common.util.VirtualThreads;
+
+/**
+ * 虚拟线程模式（app.virtual-threads.enabled=true，需要 Java 21，见 -Pjava21）：
+ * Tomcat 请求与 Kafka 监听器的消费线程都改为虚拟线程；
+ * 请求线程上执行的 CacheUtil 数据加载器（MySQL 查询、Redisson 加锁等待）随之运行在虚拟线程上
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    public VirtualThreadConfig() {
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalStateException("app.virtual-threads.enabled=true requires Java 21+, running on "
+                    + Runtime.version());
+        }
+        log.info("Virtual threads enabled for Tomcat and Kafka listeners");
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-"));
+    }
+
+    /**
+     * 给所有监听器容器工厂设置基于虚拟线程的消费线程执行器
+     */
+    @Bean
+    public static BeanPostProcessor virtualThreadListenerExecutorPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractKafkaListenerContainerFactory<?, ?, ?> factory) {
+                    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+                    executor.setThreadFactory(VirtualThreads.threadFactory(beanName + "-vt-"));
+                    factory.getContainerProperties().setListenerTaskExecutor(executor);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package site.hnfy258.storedemo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import site.hnfy258.common.codec.WireFormat;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.stream.JsonEventSerde;
+import site.hnfy258.storedemo.codec.ArticleLikeEventBinaryCodec;
+import site.hnfy258.storedemo.dto.ArticleLikeCountUpdate;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
+
+/**
+ * 点赞事件的消息格式配置
+ * 消费端（监听器、流拓扑）始终同时支持 JSON 与二进制，生产端格式由 kafka.wire-format.producer 控制
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public WireFormatSerde<ArticleLikeEvent> articleLikeEventSerde(
+            ObjectMapper objectMapper,
+            @Value("${kafka.wire-format.producer:JSON}") WireFormat producerFormat) {
+        return new WireFormatSerde<>(
+                new JsonEventSerde<>(objectMapper, ArticleLikeEvent.class),
+                new ArticleLikeEventBinaryCodec(),
+                producerFormat);
+    }
+
+    /**
+     * 排行榜更新（exactly-once 模式下流拓扑的输出）只在本服务内部流转，固定使用 JSON
+     */
+    @Bean
+    public JsonEventSerde<ArticleLikeCountUpdate> articleLikeCountUpdateSerde(ObjectMapper objectMapper) {
+        return new JsonEventSerde<>(objectMapper, ArticleLikeCountUpdate.class);
+    }
+}
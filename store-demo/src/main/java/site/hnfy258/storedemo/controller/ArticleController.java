@@ -3,14 +3,24 @@ package site.hnfy258.storedemo.controller;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.stream.SerdeBenchmark;
+import site.hnfy258.common.stream.StreamThroughputMetrics;
+import site.hnfy258.common.stream.WindowEmissionStrategy;
+import site.hnfy258.storedemo.codec.ArticleLikeEventBinaryCodec;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
 import site.hnfy258.storedemo.dto.ArticleRankingItem;
 import site.hnfy258.storedemo.service.ArticleLikeService;
 import site.hnfy258.storedemo.service.ArticleRankingService;
+import site.hnfy258.storedemo.stream.ArticleRankingSink;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @RestController
@@ -20,11 +30,26 @@ public class ArticleController {
 
     private final ArticleLikeService articleLikeService;
     private final ArticleRankingService articleRankingService;
+    private final StreamThroughputMetrics streamThroughputMetrics;
+    private final WindowEmissionStrategy windowEmissionStrategy;
+    private final ArticleRankingSink articleRankingSink;
+    private final SerdeBenchmark serdeBenchmark;
+    private final WireFormatSerde<ArticleLikeEvent> articleLikeEventSerde;
 
     public ArticleController(ArticleLikeService articleLikeService,
-                             ArticleRankingService articleRankingService) {
+                             ArticleRankingService articleRankingService,
+                             StreamThroughputMetrics streamThroughputMetrics,
+                             WindowEmissionStrategy windowEmissionStrategy,
+                             ArticleRankingSink articleRankingSink,
+                             SerdeBenchmark serdeBenchmark,
+                             WireFormatSerde<ArticleLikeEvent> articleLikeEventSerde) {
         this.articleLikeService = articleLikeService;
         this.articleRankingService = articleRankingService;
+        this.streamThroughputMetrics = streamThroughputMetrics;
+        this.windowEmissionStrategy = windowEmissionStrategy;
+        this.articleRankingSink = articleRankingSink;
+        this.serdeBenchmark = serdeBenchmark;
+        this.articleLikeEventSerde = articleLikeEventSerde;
     }
 
     /**
@@ -110,6 +135,60 @@ public class ArticleController {
         }
     }
 
+    /**
+     * 查询排行榜流拓扑的输入/输出计数（观察窗口结果下发的写放大）
+     * GET /api/articles/ranking/stream-metrics
+     */
+    @GetMapping("/ranking/stream-metrics")
+    public ResponseEntity<Map<String, Object>> getRankingStreamMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("emissionMode", windowEmissionStrategy.getMode());
+        response.put("topologies", streamThroughputMetrics.snapshot());
+        response.put("redisSink", articleRankingSink.getStats());
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 对比点赞流拓扑旧/新序列化路径的每事件字节数与CPU耗时
+     * GET /api/articles/ranking/serde-benchmark
+     */
+    @GetMapping("/ranking/serde-benchmark")
+    public ResponseEntity<Map<String, Object>> getSerdeBenchmark(@RequestParam(defaultValue = "10000") int events,
+                                                                 @RequestParam(defaultValue = "5") int rounds) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", serdeBenchmark.compareJsonPaths(ArticleLikeEvent.class, sampleLikeEvents(events),
+                event -> event.getArticleId().toString(), rounds));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 对比点赞事件 JSON 与二进制线上格式的字节数与编解码耗时
+     * GET /api/articles/ranking/wire-format-benchmark
+     */
+    @GetMapping("/ranking/wire-format-benchmark")
+    public ResponseEntity<Map<String, Object>> getWireFormatBenchmark(@RequestParam(defaultValue = "10000") int events,
+                                                                      @RequestParam(defaultValue = "5") int rounds) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("serde", articleLikeEventSerde.getStats());
+        response.put("data", serdeBenchmark.compareWireFormats(ArticleLikeEvent.class, sampleLikeEvents(events),
+                new ArticleLikeEventBinaryCodec(), rounds));
+        return ResponseEntity.ok(response);
+    }
+
+    private List<ArticleLikeEvent> sampleLikeEvents(int events) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<ArticleLikeEvent> samples = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            samples.add(new ArticleLikeEvent((long) random.nextInt(1, 1000), (long) random.nextInt(1, 100000),
+                    random.nextInt(10) == 0 ? "UNLIKE" : "LIKE", new Date()));
+        }
+        return samples;
+    }
+
 //    /**
 //     * 获取可用的时间窗口列表
 //     * GET /api/articles/ranking/windows
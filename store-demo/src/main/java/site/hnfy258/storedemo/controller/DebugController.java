@@ -1,8 +1,20 @@
 package site.hnfy258.storedemo.controller;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import site.hnfy258.common.component.VirtualThreadPinningMonitor;
+import site.hnfy258.common.config.KafkaStreamsHealthCheck;
+import site.hnfy258.common.stream.StreamsRestoreMonitor;
+import site.hnfy258.storedemo.security.AccessTokenRevocationService;
+import site.hnfy258.storedemo.security.UserDetailsCache;
+import site.hnfy258.storedemo.service.DeliveryGuaranteeBenchmarkService;
+import site.hnfy258.storedemo.service.KafkaConsumerService;
+import site.hnfy258.storedemo.service.VirtualThreadBenchmarkService;
+import site.hnfy258.storedemo.util.StatelessJwtUtil;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -10,7 +22,37 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api/debug")
 public class DebugController {
-    
+
+    private final DeliveryGuaranteeBenchmarkService deliveryGuaranteeBenchmarkService;
+    private final VirtualThreadBenchmarkService virtualThreadBenchmarkService;
+    private final ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor;
+    private final KafkaConsumerService kafkaConsumerService;
+    private final KafkaStreamsHealthCheck streamsHealthCheck;
+    private final StreamsRestoreMonitor streamsRestoreMonitor;
+    private final StatelessJwtUtil statelessJwtUtil;
+    private final UserDetailsCache userDetailsCache;
+    private final AccessTokenRevocationService revocationService;
+
+    public DebugController(DeliveryGuaranteeBenchmarkService deliveryGuaranteeBenchmarkService,
+                           VirtualThreadBenchmarkService virtualThreadBenchmarkService,
+                           ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor,
+                           KafkaConsumerService kafkaConsumerService,
+                           KafkaStreamsHealthCheck streamsHealthCheck,
+                           StreamsRestoreMonitor streamsRestoreMonitor,
+                           StatelessJwtUtil statelessJwtUtil,
+                           UserDetailsCache userDetailsCache,
+                           AccessTokenRevocationService revocationService) {
+        this.deliveryGuaranteeBenchmarkService = deliveryGuaranteeBenchmarkService;
+        this.virtualThreadBenchmarkService = virtualThreadBenchmarkService;
+        this.pinningMonitor = pinningMonitor;
+        this.kafkaConsumerService = kafkaConsumerService;
+        this.streamsHealthCheck = streamsHealthCheck;
+        this.streamsRestoreMonitor = streamsRestoreMonitor;
+        this.statelessJwtUtil = statelessJwtUtil;
+        this.userDetailsCache = userDetailsCache;
+        this.revocationService = revocationService;
+    }
+
     /**
      * 调试接口 - 检查应用是否正常运行
      */
@@ -22,4 +64,81 @@ public class DebugController {
         response.put("timestamp", System.currentTimeMillis());
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * 对比 at-least-once 与 exactly-once 生产者的发送吞吐
+     */
+    @PostMapping("/kafka/delivery-benchmark")
+    public Map<String, Object> deliveryBenchmark(@RequestParam(defaultValue = "10000") int events,
+                                                 @RequestParam(defaultValue = "500") int transactionSize) {
+        return deliveryGuaranteeBenchmarkService.compare(events, Math.max(1, transactionSize));
+    }
+
+    /**
+     * 点赞事件消费组的积压、EWMA 速率、分区级 lag 与处理/端到端延迟分位数
+     */
+    @GetMapping("/kafka/consumer-stats")
+    public Map<String, Object> consumerStats() {
+        return kafkaConsumerService.getConsumerStats();
+    }
+
+    /**
+     * 点赞排行流拓扑的运行状态、最近的状态转换与 store 从 changelog 恢复的速率/ETA
+     */
+    @GetMapping("/kafka/streams")
+    public Map<String, Object> streams() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("state", streamsHealthCheck.getStats());
+        response.put("restoration", streamsRestoreMonitor.getStats());
+        return response;
+    }
+
+    /**
+     * 已验签访问令牌缓存的大小、命中率与淘汰数
+     */
+    @GetMapping("/jwt-cache")
+    public Map<String, Object> jwtCache() {
+        return statelessJwtUtil.getVerifiedTokenCacheStats();
+    }
+
+    /**
+     * 认证用户信息缓存的命中率与失效次数（本节点发起 / 收到广播）
+     */
+    @GetMapping("/user-cache")
+    public Map<String, Object> userCache() {
+        return userDetailsCache.getStats();
+    }
+
+    /**
+     * 访问令牌撤销检查：本地过滤器排除的次数、实际查询 Redis 的次数与同步状态
+     */
+    @GetMapping("/token-revocation")
+    public Map<String, Object> tokenRevocation() {
+        return revocationService.getStats();
+    }
+
+    /**
+     * 虚拟线程模式状态与钉住诊断（未开启 app.virtual-threads.enabled 时只返回运行时版本）
+     */
+    @GetMapping("/virtual-threads")
+    public Map<String, Object> virtualThreads() {
+        Map<String, Object> response = new HashMap<>();
+        VirtualThreadPinningMonitor monitor = pinningMonitor.getIfAvailable();
+        response.put("javaVersion", Runtime.version().toString());
+        response.put("enabled", monitor != null);
+        if (monitor != null) {
+            response.put("pinning", monitor.getStats());
+        }
+        return response;
+    }
+
+    /**
+     * 同一 JVM 内对比固定平台线程池与虚拟线程执行"Redis GET + 模拟数据库阻塞"的吞吐
+     */
+    @PostMapping("/virtual-threads/benchmark")
+    public Map<String, Object> virtualThreadBenchmark(@RequestParam(defaultValue = "10000") int tasks,
+                                                      @RequestParam(defaultValue = "20") long blockMs,
+                                                      @RequestParam(defaultValue = "200") int platformThreads) {
+        return virtualThreadBenchmarkService.compare(tasks, blockMs, Math.max(1, platformThreads));
+    }
+}
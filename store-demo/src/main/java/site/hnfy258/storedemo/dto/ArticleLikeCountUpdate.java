@@ -0,0 +1,19 @@
+package site.hnfy258.storedemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一个时间窗口内某篇文章的点赞计数（写入排行榜的最小单元）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleLikeCountUpdate {
+    private Long articleId;
+    private Long likeCount;
+    private String timeWindow;
+    // 窗口起始时间（毫秒），与 likeCount 一起构成写入Redis时的版本号
+    private Long windowStart;
+}
@@ -0,0 +1,36 @@
+package site.hnfy258.storedemo.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import site.hnfy258.storedemo.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 用户及其角色名的联表查询结果（users LEFT JOIN user_roles LEFT JOIN roles），角色名以逗号拼接
+ */
+@Data
+@NoArgsConstructor
+public class UserWithRoles {
+    private Long id;
+    private String username;
+    private String password;
+    private String phone;
+    private LocalDateTime createTime;
+    private LocalDateTime updateTime;
+    private String roleNames;
+
+    public User toUser() {
+        return new User(id, username, password, phone, createTime, updateTime);
+    }
+
+    public List<String> getRoleList() {
+        if (roleNames == null || roleNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(roleNames.split(","));
+    }
+}
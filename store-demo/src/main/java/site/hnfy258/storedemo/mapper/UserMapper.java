@@ -2,8 +2,25 @@ package site.hnfy258.storedemo.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import site.hnfy258.storedemo.dto.UserWithRoles;
 import site.hnfy258.storedemo.entity.User;
 
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
-}
\ No newline at end of file
+
+    String SELECT_WITH_ROLES = "SELECT u.id, u.username, u.password, u.phone, u.create_time, u.update_time, "
+            + "GROUP_CONCAT(r.role_name ORDER BY r.role_id SEPARATOR ',') AS role_names "
+            + "FROM users u "
+            + "LEFT JOIN user_roles ur ON ur.user_id = u.id "
+            + "LEFT JOIN roles r ON r.role_id = ur.role_id ";
+
+    /**
+     * 一次查询取回用户与角色名，替代 selectById + selectByUserId + 每个角色一次 selectById
+     */
+    @Select(SELECT_WITH_ROLES + "WHERE u.id = #{userId} GROUP BY u.id")
+    UserWithRoles selectWithRolesById(Long userId);
+
+    @Select(SELECT_WITH_ROLES + "WHERE u.username = #{username} GROUP BY u.id")
+    UserWithRoles selectWithRolesByUsername(String username);
+}
@@ -0,0 +1,229 @@
+package site.hnfy258.storedemo.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import site.hnfy258.storedemo.util.TimeBucketedBloomFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 访问令牌撤销（黑名单）
+ * - 撤销时写 revoked_token:{jti}（TTL 为令牌剩余有效期，权威记录）和 revoked_tokens 有序集合（score 为令牌过期时间，
+ *   用于节点启动与定期全量同步），并通过 Redis 频道广播给所有节点
+ * - 每个节点在本地维护按令牌过期时间分桶的布隆过滤器；校验令牌时先查过滤器，只有命中（已撤销或假阳性）才查 Redis，
+ *   绝大多数未撤销的令牌不再有 Redis 往返
+ * - 频道订阅确认后才开始全量同步（之后的广播一定能收到），首次同步完成前过滤器不完整，此时每次都查 Redis；
+ *   重新订阅（断线重连）时立即补一次同步，其余的频道消息丢失由定期同步兜底
+ */
+@Slf4j
+@Component
+public class AccessTokenRevocationService {
+
+    static final String REVOKED_TOKEN_PREFIX = "revoked_token:";
+    static final String REVOKED_TOKENS_ZSET = "revoked_tokens";
+    static final String REVOCATION_CHANNEL = "access-token-revoked";
+
+    /**
+     * KEYS[1]=revoked_token:{jti}, KEYS[2]=revoked_tokens；ARGV[1]=剩余有效期(毫秒), ARGV[2]=过期时间戳, ARGV[3]=jti
+     * 权威记录与同步用的有序集合一起写入，不会出现只写了其中一个的撤销
+     */
+    private static final RedisScript<Long> REVOKE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], 'revoked', 'PX', ARGV[1])\n" +
+            "redis.call('ZADD', KEYS[2], ARGV[2], ARGV[3])\n" +
+            "return 1",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final TimeBucketedBloomFilter revokedJtis;
+    private final long resyncIntervalMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "token-revocation-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean periodicSyncStarted = new AtomicBoolean();
+    private volatile boolean subscribed;
+    private volatile boolean synced;
+    private volatile long lastSyncAt;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterNegatives = new LongAdder();
+    private final LongAdder redisChecks = new LongAdder();
+    private final LongAdder confirmedRevoked = new LongAdder();
+
+    public AccessTokenRevocationService(StringRedisTemplate stringRedisTemplate,
+                                        RedisMessageListenerContainer listenerContainer,
+                                        @Value("${security.revocation.bucket-minutes:10}") long bucketMinutes,
+                                        @Value("${security.revocation.expected-per-bucket:10000}") int expectedPerBucket,
+                                        @Value("${security.revocation.false-positive-rate:0.001}") double falsePositiveRate,
+                                        @Value("${security.revocation.resync-interval-ms:60000}") long resyncIntervalMs) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.revokedJtis = new TimeBucketedBloomFilter(TimeUnit.MINUTES.toMillis(bucketMinutes),
+                expectedPerBucket, falsePositiveRate);
+        this.resyncIntervalMs = resyncIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        // 容器启动并确认订阅后回调 onChannelSubscribed，在那之后才做首次全量同步
+        listenerContainer.addMessageListener(new RevocationListener(), new ChannelTopic(REVOCATION_CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 撤销令牌：先加入本地过滤器（本节点立即生效，且不会出现 Redis 已写入而本地过滤器判为未撤销的窗口），
+     * 再用脚本原子写入权威记录与同步用的有序集合，最后广播给其他节点
+     */
+    public void revoke(String jti, long expiresAtMillis) {
+        long ttl = expiresAtMillis - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return;
+        }
+        revokedJtis.add(jti, expiresAtMillis);
+        stringRedisTemplate.execute(REVOKE_SCRIPT, List.of(REVOKED_TOKEN_PREFIX + jti, REVOKED_TOKENS_ZSET),
+                String.valueOf(ttl), String.valueOf(expiresAtMillis), jti);
+        try {
+            stringRedisTemplate.convertAndSend(REVOCATION_CHANNEL, jti + ":" + expiresAtMillis);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast revocation of {}, other nodes pick it up on next sync: {}", jti, e.getMessage());
+        }
+    }
+
+    /**
+     * 令牌是否已撤销：过滤器未命中直接返回 false，命中后以 Redis 为准
+     */
+    public boolean isRevoked(String jti, long expiresAtMillis) {
+        checks.increment();
+        if (synced && !revokedJtis.mightContain(jti, expiresAtMillis)) {
+            filterNegatives.increment();
+            return false;
+        }
+        redisChecks.increment();
+        boolean revoked = Boolean.TRUE.equals(stringRedisTemplate.hasKey(REVOKED_TOKEN_PREFIX + jti));
+        if (revoked) {
+            confirmedRevoked.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * 订阅已确认：首次启动定期同步，之后每次重新订阅立即补一次同步，覆盖未订阅期间丢失的广播
+     */
+    void onSubscribed() {
+        subscribed = true;
+        if (periodicSyncStarted.compareAndSet(false, true)) {
+            scheduler.scheduleWithFixedDelay(this::resync, 0, resyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(this::resync);
+        }
+    }
+
+    /**
+     * 订阅断开期间的广播会丢失，本地过滤器不再可信，重新订阅并同步之前回到逐个查 Redis
+     */
+    void onUnsubscribed() {
+        subscribed = false;
+        synced = false;
+    }
+
+    private void onRevocationMessage(String payload) {
+        int separator = payload.lastIndexOf(':');
+        try {
+            revokedJtis.add(payload.substring(0, separator), Long.parseLong(payload.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed revocation message: {}", payload);
+        }
+    }
+
+    /**
+     * 清理有序集合中已过期的成员，把仍有效的撤销全部加入本地过滤器，并丢弃已过期的桶
+     */
+    void resync() {
+        try {
+            long now = System.currentTimeMillis();
+            ZSetOperations<String, String> zSet = stringRedisTemplate.opsForZSet();
+            zSet.removeRangeByScore(REVOKED_TOKENS_ZSET, 0, now);
+            Set<ZSetOperations.TypedTuple<String>> revoked =
+                    zSet.rangeByScoreWithScores(REVOKED_TOKENS_ZSET, now, Double.POSITIVE_INFINITY);
+            if (revoked != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : revoked) {
+                    if (tuple.getValue() != null && tuple.getScore() != null) {
+                        revokedJtis.add(tuple.getValue(), tuple.getScore().longValue());
+                    }
+                }
+            }
+            revokedJtis.expire();
+            if (!synced) {
+                log.info("Token revocation filter ready with {} revoked tokens", revoked == null ? 0 : revoked.size());
+            }
+            lastSyncAt = now;
+            // 同步期间订阅断开时不能标记为就绪
+            synced = subscribed;
+        } catch (Exception e) {
+            log.warn("Token revocation sync failed, {}: {}",
+                    synced ? "keeping local filter" : "checking Redis for every token", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribed", subscribed);
+        stats.put("synced", synced);
+        stats.put("lastSyncAt", lastSyncAt);
+        stats.put("buckets", revokedJtis.bucketCount());
+        stats.put("revokedInFilter", revokedJtis.size());
+        stats.put("bitsPerBucket", revokedJtis.getBitsPerBucket());
+        stats.put("hashFunctions", revokedJtis.getHashFunctions());
+        stats.put("checks", checks.sum());
+        stats.put("filterNegatives", filterNegatives.sum());
+        stats.put("redisChecks", redisChecks.sum());
+        stats.put("confirmedRevoked", confirmedRevoked.sum());
+        return stats;
+    }
+
+    private final class RevocationListener implements MessageListener, SubscriptionListener {
+
+        @Override
+        public void onMessage(Message message, byte[] pattern) {
+            onRevocationMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onChannelSubscribed(byte[] channel, long count) {
+            onSubscribed();
+        }
+
+        @Override
+        public void onChannelUnsubscribed(byte[] channel, long count) {
+            onUnsubscribed();
+        }
+    }
+}
@@ -7,14 +7,12 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
-import site.hnfy258.storedemo.constants.DeviceType;
 import site.hnfy258.storedemo.dto.JwtTokenDto;
 import site.hnfy258.storedemo.util.JwtUtil;
 
@@ -46,26 +44,34 @@ public class AutoRefreshJwtFilter extends OncePerRequestFilter {
             String refreshToken = getRefreshTokenFromRequest(request);
             
             if (StringUtils.hasText(accessToken)) {
-                if (jwtUtil.validateToken(accessToken) && jwtUtil.isTokenInRedis(accessToken, "access")) {
+                // 两个令牌各自只解析一次，后续读取声明都用解析结果
+                ParsedAccessToken parsedAccess = jwtUtil.verifyToken(accessToken);
+                ParsedAccessToken parsedRefresh;
+                if (parsedAccess != null && jwtUtil.isTokenInRedis(accessToken, parsedAccess, "access")) {
                     // Access Token有效，正常处理
-                    setAuthentication(accessToken, request);
+                    setAuthentication(parsedAccess, request);
                 } else if (StringUtils.hasText(refreshToken) && 
-                          jwtUtil.validateToken(refreshToken) && 
-                          jwtUtil.isTokenInRedis(refreshToken, "refresh")) {
+                          (parsedRefresh = jwtUtil.verifyToken(refreshToken)) != null && 
+                          jwtUtil.isTokenInRedis(refreshToken, parsedRefresh, "refresh")) {
                     // Access Token无效但Refresh Token有效，自动刷新
                     log.debug("Access Token过期，尝试自动刷新");
                     
-                    Long userId = jwtUtil.getUserIdFromToken(refreshToken);
-                    String username = jwtUtil.getUsernameFromToken(refreshToken);
-                    DeviceType deviceType = jwtUtil.getDeviceTypeFromToken(refreshToken);
-                    List<String> roles = jwtUtil.getRolesFromToken(refreshToken);
-                    
-                    if (userId != null && username != null && deviceType != null) {
+                    if (parsedRefresh.getUserId() != null && parsedRefresh.getUsername() != null
+                            && parsedRefresh.getDeviceType() != null) {
+                        // 刷新令牌不携带角色，新Access Token的角色取自当前用户信息
+                        UserDetails userDetails = userDetailsService.loadUserById(parsedRefresh.getUserId());
+                        List<String> roles = userDetails instanceof CustomUserDetails customUserDetails
+                                ? customUserDetails.getRoles() : parsedRefresh.getRoles();
+                        
                         // 生成新的Access Token
-                        String newAccessToken = jwtUtil.generateAccessToken(userId, username, roles, deviceType);
+                        String newAccessToken = jwtUtil.generateAccessToken(parsedRefresh.getUserId(),
+                                parsedRefresh.getUsername(), roles, parsedRefresh.getDeviceType());
                         
                         // 设置认证
-                        setAuthentication(newAccessToken, request);
+                        ParsedAccessToken parsedNewAccess = jwtUtil.verifyToken(newAccessToken);
+                        if (parsedNewAccess != null) {
+                            setAuthentication(userDetails, parsedNewAccess, request);
+                        }
                         
                         // 在响应头中返回新的Access Token
                         response.setHeader("X-New-Access-Token", newAccessToken);
@@ -83,22 +89,23 @@ public class AutoRefreshJwtFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
-    private void setAuthentication(String token, HttpServletRequest request) {
+    private void setAuthentication(ParsedAccessToken token, HttpServletRequest request) {
         try {
-            Long userId = jwtUtil.getUserIdFromToken(token);
+            Long userId = token.getUserId();
             if (userId != null) {
-                UserDetails userDetails = userDetailsService.loadUserById(userId);
-                UsernamePasswordAuthenticationToken authentication = 
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                setAuthentication(userDetailsService.loadUserById(userId), token, request);
             }
         } catch (Exception e) {
             log.debug("设置认证失败: {}", e.getMessage());
         }
     }
     
+    private void setAuthentication(UserDetails userDetails, ParsedAccessToken token, HttpServletRequest request) {
+        JwtAuthenticationToken authentication = new JwtAuthenticationToken(userDetails, token);
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+    
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
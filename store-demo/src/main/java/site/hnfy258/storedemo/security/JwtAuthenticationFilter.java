@@ -2,7 +2,6 @@ package site.hnfy258.storedemo.security;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -34,17 +33,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String jwt = getJwtFromRequest(request);
             
             if (StringUtils.hasText(jwt)) {
-                if (jwtUtil.validateToken(jwt)) {
+                ParsedAccessToken accessToken = jwtUtil.verifyToken(jwt);
+                if (accessToken != null) {
                     // 检查令牌是否在Redis中存在
-                    if (jwtUtil.isTokenInRedis(jwt, "access")) {
-                        Long userId = jwtUtil.getUserIdFromToken(jwt);
+                    if (jwtUtil.isTokenInRedis(jwt, accessToken, "access")) {
+                        Long userId = accessToken.getUserId();
                         
                         if (userId != null) {
                             UserDetails userDetails = userDetailsService.loadUserById(userId);
                             
-                            UsernamePasswordAuthenticationToken authentication = 
-                                    new UsernamePasswordAuthenticationToken(
-                                            userDetails, null, userDetails.getAuthorities());
+                            JwtAuthenticationToken authentication = new JwtAuthenticationToken(userDetails, accessToken);
                             authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                             
                             SecurityContextHolder.getContext().setAuthentication(authentication);
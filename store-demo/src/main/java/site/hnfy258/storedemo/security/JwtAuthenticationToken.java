@@ -0,0 +1,35 @@
+package site.hnfy258.storedemo.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * 令牌认证结果：主体为用户信息，凭证为本次请求验签得到的 {@link ParsedAccessToken}，权限取自令牌的 roles 声明
+ */
+public class JwtAuthenticationToken extends AbstractAuthenticationToken {
+
+    private final UserDetails principal;
+    private final ParsedAccessToken accessToken;
+
+    public JwtAuthenticationToken(UserDetails principal, ParsedAccessToken accessToken) {
+        super(accessToken.getAuthorities());
+        this.principal = principal;
+        this.accessToken = accessToken;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public UserDetails getPrincipal() {
+        return principal;
+    }
+
+    @Override
+    public ParsedAccessToken getCredentials() {
+        return accessToken;
+    }
+
+    @Override
+    public String getName() {
+        return accessToken.getUsername() != null ? accessToken.getUsername() : principal.getUsername();
+    }
+}
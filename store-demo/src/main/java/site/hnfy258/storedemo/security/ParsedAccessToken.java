@@ -0,0 +1,72 @@
+package site.hnfy258.storedemo.security;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import site.hnfy258.storedemo.constants.DeviceType;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 一次验签得到的令牌声明（不可变）
+ * 由 JwtUtil / StatelessJwtUtil 在验签时构造一次，随认证过滤器进入 SecurityContextHolder（作为 JwtAuthenticationToken 的凭证），
+ * 之后读取用户ID、设备类型、角色都不再解析令牌。角色对应的权限（ROLE_ 前缀）在构造时一并生成。
+ */
+@Getter
+public final class ParsedAccessToken {
+
+    private final String jti;
+    private final Long userId;
+    private final String username;
+    private final DeviceType deviceType;
+    private final String tokenType;
+    private final List<String> roles;
+    private final List<GrantedAuthority> authorities;
+    private final long issuedAtMillis;
+    private final long expiresAtMillis;
+
+    private ParsedAccessToken(String jti, Long userId, String username, DeviceType deviceType, String tokenType,
+                              List<String> roles, long issuedAtMillis, long expiresAtMillis) {
+        this.jti = jti;
+        this.userId = userId;
+        this.username = username;
+        this.deviceType = deviceType;
+        this.tokenType = tokenType;
+        this.roles = roles;
+        this.issuedAtMillis = issuedAtMillis;
+        this.expiresAtMillis = expiresAtMillis;
+        List<GrantedAuthority> grantedAuthorities = new ArrayList<>(roles.size());
+        for (String role : roles) {
+            grantedAuthorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+        this.authorities = Collections.unmodifiableList(grantedAuthorities);
+    }
+
+    /**
+     * 从已验签的声明构造；调用方负责签名与过期时间校验
+     */
+    public static ParsedAccessToken from(JWTClaimsSet claims) throws ParseException {
+        List<String> roles = claims.getStringListClaim("roles");
+        String deviceType = claims.getStringClaim("deviceType");
+        Date issueTime = claims.getIssueTime();
+        Date expirationTime = claims.getExpirationTime();
+        return new ParsedAccessToken(
+                claims.getJWTID(),
+                claims.getLongClaim("userId"),
+                claims.getSubject(),
+                deviceType == null ? null : DeviceType.valueOf(deviceType.toUpperCase()),
+                claims.getStringClaim("tokenType"),
+                roles == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(roles)),
+                issueTime == null ? 0 : issueTime.getTime(),
+                expirationTime == null ? 0 : expirationTime.getTime());
+    }
+
+    public boolean isExpired() {
+        return expiresAtMillis <= System.currentTimeMillis();
+    }
+}
@@ -6,7 +6,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -19,7 +18,7 @@ import java.io.IOException;
 
 /**
  * 无状态JWT认证过滤器
- * Access Token验证完全无状态，不依赖Redis
+ * Access Token验证完全无状态，不依赖Redis；每个请求只验签一次，解析结果随认证对象进入SecurityContextHolder
  */
 @Slf4j
 @Component
@@ -39,17 +38,16 @@ public class StatelessJwtAuthenticationFilter extends OncePerRequestFilter {
             
             if (StringUtils.hasText(jwt)) {
                 // 无状态验证：只验证签名和过期时间，不查询Redis
-                if (jwtUtil.validateAccessToken(jwt)) {
-                    Long userId = jwtUtil.getUserIdFromToken(jwt);
+                ParsedAccessToken accessToken = jwtUtil.verifyAccessToken(jwt);
+                if (accessToken != null) {
+                    Long userId = accessToken.getUserId();
                     
                     if (userId != null) {
-                        // 这里仍然需要查询数据库获取最新的用户信息和权限
-                        // 但这是业务需要，不是JWT状态验证
+                        // 这里仍然需要查询数据库获取最新的用户信息
+                        // 但这是业务需要，不是JWT状态验证；权限取自令牌的roles声明
                         UserDetails userDetails = userDetailsService.loadUserById(userId);
                         
-                        UsernamePasswordAuthenticationToken authentication = 
-                                new UsernamePasswordAuthenticationToken(
-                                        userDetails, null, userDetails.getAuthorities());
+                        JwtAuthenticationToken authentication = new JwtAuthenticationToken(userDetails, accessToken);
                         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         
                         SecurityContextHolder.getContext().setAuthentication(authentication);
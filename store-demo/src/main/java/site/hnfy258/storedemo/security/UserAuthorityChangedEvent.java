@@ -0,0 +1,31 @@
+package site.hnfy258.storedemo.security;
+
+import lombok.Getter;
+
+/**
+ * 用户信息或角色变更事件，用于失效认证用的用户缓存
+ * 修改 users / user_roles / roles 的代码在写库后发布；userId 为 null 表示影响所有用户（例如角色本身被修改或删除）
+ */
+@Getter
+public class UserAuthorityChangedEvent {
+
+    private final Long userId;
+    private final String reason;
+
+    private UserAuthorityChangedEvent(Long userId, String reason) {
+        this.userId = userId;
+        this.reason = reason;
+    }
+
+    public static UserAuthorityChangedEvent user(Long userId, String reason) {
+        return new UserAuthorityChangedEvent(userId, reason);
+    }
+
+    public static UserAuthorityChangedEvent allUsers(String reason) {
+        return new UserAuthorityChangedEvent(null, reason);
+    }
+
+    public boolean isAllUsers() {
+        return userId == null;
+    }
+}
@@ -0,0 +1,180 @@
+package site.hnfy258.storedemo.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 认证用的用户信息本地缓存（userId -> CustomUserDetails），短 TTL + 版本号失效
+ * - 每个条目记录加载前读到的全局代数与该用户的版本号，两者任一变化即视为过期，
+ *   因此失效之前开始、之后才写入的加载结果不会被使用
+ * - 收到 {@link UserAuthorityChangedEvent} 时先失效本地，再经 Redis 频道广播给其他节点；
+ *   自己也会收到广播，重复失效只多一次回源
+ * - TTL 兜底：漏发事件或 Redis 不可用时，变更最多延迟 security.user-cache.ttl-ms 生效
+ * 缓存的 CustomUserDetails 在请求间共享，调用方只读不改。
+ */
+@Slf4j
+@Component
+public class UserDetailsCache {
+
+    static final String INVALIDATION_CHANNEL = "user-authority-changed";
+    private static final String ALL_USERS = "*";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long ttlMillis;
+    private final int capacity;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    // 只记录失效过的用户，数量超过容量时改为整体失效并清空
+    private final Map<Long, Long> userVersions = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder localInvalidations = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    public UserDetailsCache(StringRedisTemplate stringRedisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            @Value("${security.user-cache.ttl-ms:30000}") long ttlMillis,
+                            @Value("${security.user-cache.capacity:10000}") int capacity) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlMillis = ttlMillis;
+        this.capacity = capacity;
+        listenerContainer.addMessageListener((message, pattern) ->
+                        onRemoteInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * 返回缓存中仍然有效的用户信息，否则调用 loader 回源并缓存
+     */
+    public CustomUserDetails get(Long userId, Function<Long, CustomUserDetails> loader) {
+        if (ttlMillis <= 0 || capacity <= 0) {
+            return loader.apply(userId);
+        }
+        Entry entry = entries.get(userId);
+        if (entry != null && isCurrent(userId, entry)) {
+            hits.increment();
+            return entry.details;
+        }
+        misses.increment();
+
+        // 先读版本再回源：回源期间发生的失效会让这次的结果直接作废
+        long currentGeneration = generation.get();
+        long currentVersion = userVersions.getOrDefault(userId, 0L);
+        CustomUserDetails details = loader.apply(userId);
+        if (entries.size() >= capacity) {
+            evict();
+        }
+        entries.put(userId, new Entry(details, currentGeneration, currentVersion,
+                System.currentTimeMillis() + ttlMillis));
+        return details;
+    }
+
+    @EventListener
+    public void onUserAuthorityChanged(UserAuthorityChangedEvent event) {
+        String payload = event.isAllUsers() ? ALL_USERS : event.getUserId().toString();
+        invalidate(payload);
+        localInvalidations.increment();
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast user cache invalidation {} ({}), other nodes fall back to TTL: {}",
+                    payload, event.getReason(), e.getMessage());
+        }
+    }
+
+    private void onRemoteInvalidation(String payload) {
+        try {
+            invalidate(payload);
+            remoteInvalidations.increment();
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed user cache invalidation: {}", payload);
+        }
+    }
+
+    private void invalidate(String payload) {
+        if (ALL_USERS.equals(payload)) {
+            invalidateAll();
+            return;
+        }
+        Long userId = Long.valueOf(payload);
+        userVersions.merge(userId, 1L, Long::sum);
+        entries.remove(userId);
+        if (userVersions.size() > capacity) {
+            invalidateAll();
+        }
+    }
+
+    private void invalidateAll() {
+        generation.incrementAndGet();
+        userVersions.clear();
+        entries.clear();
+    }
+
+    private boolean isCurrent(Long userId, Entry entry) {
+        return entry.expiresAtMillis > System.currentTimeMillis()
+                && entry.generation == generation.get()
+                && entry.version == userVersions.getOrDefault(userId, 0L);
+    }
+
+    private synchronized void evict() {
+        if (entries.size() < capacity) {
+            return;
+        }
+        entries.entrySet().removeIf(e -> !isCurrent(e.getKey(), e.getValue()));
+        if (entries.size() < capacity) {
+            return;
+        }
+        int toEvict = Math.max(entries.size() - capacity + 1, capacity / 8);
+        Iterator<Long> iterator = entries.keySet().iterator();
+        while (toEvict-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ttlMs", ttlMillis);
+        stats.put("capacity", capacity);
+        stats.put("size", entries.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("generation", generation.get());
+        stats.put("localInvalidations", localInvalidations.sum());
+        stats.put("remoteInvalidations", remoteInvalidations.sum());
+        return stats;
+    }
+
+    private static final class Entry {
+        private final CustomUserDetails details;
+        private final long generation;
+        private final long version;
+        private final long expiresAtMillis;
+
+        private Entry(CustomUserDetails details, long generation, long version, long expiresAtMillis) {
+            this.details = details;
+            this.generation = generation;
+            this.version = version;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
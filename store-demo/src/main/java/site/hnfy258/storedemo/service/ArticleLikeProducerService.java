@@ -1,10 +1,10 @@
 package site.hnfy258.storedemo.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import site.hnfy258.storedemo.config.KafkaTopicRegistry;
 import site.hnfy258.storedemo.dto.ArticleLikeEvent;
 
 import java.util.Date;
@@ -14,14 +14,14 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class ArticleLikeProducerService {
 
-    private static final String TOPIC = "article-likes-events";
+    // 消息体由 WireFormatSerde 按配置编码为 JSON 或二进制
+    private final KafkaTemplate<String, ArticleLikeEvent> kafkaTemplate;
+    private final String topic;
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
-
-    public ArticleLikeProducerService(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
+    public ArticleLikeProducerService(KafkaTemplate<String, ArticleLikeEvent> kafkaTemplate,
+                                      KafkaTopicRegistry topicRegistry) {
         this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+        this.topic = topicRegistry.getArticleLikeEvents().getName();
     }
 
     /**
@@ -35,10 +35,9 @@ public class ArticleLikeProducerService {
                     action,
                     new Date());
 
-            String eventJson = objectMapper.writeValueAsString(event);
             String key = articleId.toString(); // 使用文章ID作为key，确保同一文章的事件有序
 
-            CompletableFuture<SendResult<String, String>> future = kafkaTemplate.send(TOPIC, key, eventJson);
+            CompletableFuture<SendResult<String, ArticleLikeEvent>> future = send(key, event);
 
             future.whenComplete((result, ex) -> {
                 if (ex == null) {
@@ -61,6 +60,17 @@ public class ArticleLikeProducerService {
         }
     }
 
+    /**
+     * 事务模式（kafka.exactly-once.enabled=true）下每次发送都在独立事务中提交，
+     * 消费端以 read_committed 读取，中止的事务不会被看到
+     */
+    private CompletableFuture<SendResult<String, ArticleLikeEvent>> send(String key, ArticleLikeEvent event) {
+        if (kafkaTemplate.isTransactional()) {
+            return kafkaTemplate.executeInTransaction(operations -> operations.send(topic, key, event));
+        }
+        return kafkaTemplate.send(topic, key, event);
+    }
+
     /**
      * 批量发送文章点赞事件（用于测试）
      */
@@ -1,26 +1,219 @@
 package site.hnfy258.storedemo.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
+import site.hnfy258.storedemo.dto.ArticleLikeCountUpdate;
 import site.hnfy258.storedemo.dto.ArticleRankingItem;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
 @Slf4j
 public class ArticleRankingService {
 
-    private static final String RANKING_KEY_PREFIX = "article:ranking:";
-    private static final String CURRENT_RANKING_KEY = "article:ranking:current";
+    // 排行榜的所有 key 共用 hash tag，在 Redis Cluster 中落在同一个 slot，批量脚本可以一次访问
+    private static final String RANKING_KEY_PREFIX = "{article:ranking}:";
+    private static final String CURRENT_RANKING_KEY = RANKING_KEY_PREFIX + "current";
+    private static final String CURRENT_RANKING_VERSION_KEY = RANKING_KEY_PREFIX + "current:version";
+    private static final Duration RANKING_TTL = Duration.ofHours(24);
+    // 加 hash tag 之前使用的 key 前缀，启动时迁移到新前缀
+    private static final String LEGACY_RANKING_KEY_PREFIX = "article:ranking:";
+    private static final String LEGACY_CURRENT_RANKING_KEY = LEGACY_RANKING_KEY_PREFIX + "current";
+    private static final String LEGACY_CURRENT_RANKING_VERSION_KEY = LEGACY_RANKING_KEY_PREFIX + "current:version";
+
+    /**
+     * KEYS[1]=当前排行榜, KEYS[2]=当前排行榜的版本Hash(成员 -> "窗口起始:计数"), KEYS[3..]=本批涉及的窗口排行榜
+     * ARGV[1]=窗口key过期秒数, 之后每4个参数为一条更新: 窗口key在KEYS中的下标, 成员, 计数, 窗口起始
+     */
+    private static final RedisScript<Long> VERSIONED_RANKING_SCRIPT = new DefaultRedisScript<>(
+            "local ttl = tonumber(ARGV[1])\n" +
+            "local applied = 0\n" +
+            "for i = 2, #ARGV, 4 do\n" +
+            "  local windowKey, member = KEYS[tonumber(ARGV[i])], ARGV[i + 1]\n" +
+            "  local count, windowStart = tonumber(ARGV[i + 2]), tonumber(ARGV[i + 3])\n" +
+            "  local score = redis.call('ZSCORE', windowKey, member)\n" +
+            "  if (not score) or tonumber(score) < count then\n" +
+            "    redis.call('ZADD', windowKey, count, member)\n" +
+            "    redis.call('EXPIRE', windowKey, ttl)\n" +
+            "    applied = applied + 1\n" +
+            "  end\n" +
+            "  local version = redis.call('HGET', KEYS[2], member)\n" +
+            "  local newer = true\n" +
+            "  if version then\n" +
+            "    local sep = string.find(version, ':', 1, true)\n" +
+            "    local vStart, vCount = tonumber(string.sub(version, 1, sep - 1)), tonumber(string.sub(version, sep + 1))\n" +
+            "    newer = windowStart > vStart or (windowStart == vStart and count > vCount)\n" +
+            "  end\n" +
+            "  if newer then\n" +
+            "    redis.call('ZADD', KEYS[1], count, member)\n" +
+            "    redis.call('HSET', KEYS[2], member, windowStart .. ':' .. count)\n" +
+            "  end\n" +
+            "end\n" +
+            "return applied",
+            Long.class);
+
+    /**
+     * 脚本参数：已序列化的成员原样传递，其余按UTF-8字符串传递
+     */
+    private static final RedisSerializer<Object> RAW_ARGS_SERIALIZER = new RedisSerializer<>() {
+        @Override
+        public byte[] serialize(Object value) {
+            return value instanceof byte[] bytes ? bytes : String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+    private static final RedisSerializer<Long> RAW_RESULT_SERIALIZER = new GenericToStringSerializer<>(Long.class);
     
     private final RedisTemplate<String, Object> redisTemplate;
+    private final boolean migrateLegacyKeys;
 
-    public ArticleRankingService(RedisTemplate<String, Object> redisTemplate) {
+    public ArticleRankingService(RedisTemplate<String, Object> redisTemplate,
+                                 @Value("${article.ranking.migrate-legacy-keys:true}") boolean migrateLegacyKeys) {
         this.redisTemplate = redisTemplate;
+        this.migrateLegacyKeys = migrateLegacyKeys;
+    }
+
+    /**
+     * 把旧前缀（article:ranking:）下的排行榜迁移到带 hash tag 的新前缀，在流处理开始写入之前执行。
+     * 与新 key 中已有的数据合并而不是覆盖：窗口排行榜取较大的计数，当前排行榜按 (窗口起始, 计数) 版本取较新者，
+     * 与批量脚本的规则一致，因此重复执行或多个实例同时执行都是安全的；迁移完成后删除旧 key。
+     * 迁移失败只记录日志，未迁移的窗口数据随旧 key 的 TTL 过期，当前排行榜由后续窗口结果重新填充。
+     */
+    @PostConstruct
+    public void migrateLegacyKeys() {
+        if (!migrateLegacyKeys) {
+            return;
+        }
+        try {
+            Integer migrated = redisTemplate.execute((RedisCallback<Integer>) connection -> {
+                List<String> legacyKeys = new ArrayList<>();
+                ScanOptions options = ScanOptions.scanOptions().match(LEGACY_RANKING_KEY_PREFIX + "*").count(1000).build();
+                try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                    while (cursor.hasNext()) {
+                        legacyKeys.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                    }
+                }
+                int count = 0;
+                for (String legacyKey : legacyKeys) {
+                    if (legacyKey.equals(LEGACY_CURRENT_RANKING_VERSION_KEY)) {
+                        continue;
+                    }
+                    if (legacyKey.equals(LEGACY_CURRENT_RANKING_KEY)) {
+                        migrateCurrentRanking(connection);
+                    } else {
+                        migrateWindowRanking(connection, legacyKey);
+                    }
+                    count++;
+                }
+                if (!legacyKeys.contains(LEGACY_CURRENT_RANKING_KEY)) {
+                    connection.keyCommands().del(bytes(LEGACY_CURRENT_RANKING_VERSION_KEY));
+                }
+                return count;
+            });
+            if (migrated != null && migrated > 0) {
+                log.info("Migrated {} ranking keys from prefix {} to {}", migrated, LEGACY_RANKING_KEY_PREFIX,
+                        RANKING_KEY_PREFIX);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to migrate legacy ranking keys, they expire with their TTL: {}", e.getMessage());
+        }
+    }
+
+    private void migrateWindowRanking(RedisConnection connection, String legacyKey) {
+        byte[] source = bytes(legacyKey);
+        byte[] target = bytes(RANKING_KEY_PREFIX + legacyKey.substring(LEGACY_RANKING_KEY_PREFIX.length()));
+        Set<Tuple> tuples = connection.zSetCommands().zRangeWithScores(source, 0, -1);
+        if (tuples != null) {
+            for (Tuple tuple : tuples) {
+                // 窗口内的计数只会增大，取较大者
+                Double existing = connection.zSetCommands().zScore(target, tuple.getValue());
+                if (existing == null || existing < tuple.getScore()) {
+                    connection.zSetCommands().zAdd(target, tuple.getScore(), tuple.getValue());
+                }
+            }
+        }
+        Long targetTtl = connection.keyCommands().pTtl(target);
+        if (targetTtl != null && targetTtl == -1) {
+            Long sourceTtl = connection.keyCommands().pTtl(source);
+            connection.keyCommands().pExpire(target, sourceTtl != null && sourceTtl > 0 ? sourceTtl : RANKING_TTL.toMillis());
+        }
+        connection.keyCommands().del(source);
+    }
+
+    private void migrateCurrentRanking(RedisConnection connection) {
+        byte[] source = bytes(LEGACY_CURRENT_RANKING_KEY);
+        byte[] sourceVersions = bytes(LEGACY_CURRENT_RANKING_VERSION_KEY);
+        byte[] target = bytes(CURRENT_RANKING_KEY);
+        byte[] targetVersions = bytes(CURRENT_RANKING_VERSION_KEY);
+        Set<Tuple> tuples = connection.zSetCommands().zRangeWithScores(source, 0, -1);
+        Map<byte[], byte[]> versions = connection.hashCommands().hGetAll(sourceVersions);
+        Map<String, byte[]> versionsByMember = new HashMap<>();
+        if (versions != null) {
+            versions.forEach((member, version) -> versionsByMember.put(new String(member, StandardCharsets.UTF_8), version));
+        }
+        if (tuples != null) {
+            for (Tuple tuple : tuples) {
+                byte[] version = versionsByMember.get(new String(tuple.getValue(), StandardCharsets.UTF_8));
+                byte[] existingVersion = connection.hashCommands().hGet(targetVersions, tuple.getValue());
+                boolean newer;
+                if (version != null) {
+                    newer = existingVersion == null || isNewerVersion(version, existingVersion);
+                } else {
+                    // 逐条写入路径不记录版本，只在新排行榜中还没有该成员时迁移
+                    newer = existingVersion == null
+                            && connection.zSetCommands().zScore(target, tuple.getValue()) == null;
+                }
+                if (newer) {
+                    connection.zSetCommands().zAdd(target, tuple.getScore(), tuple.getValue());
+                    if (version != null) {
+                        connection.hashCommands().hSet(targetVersions, tuple.getValue(), version);
+                    }
+                }
+            }
+        }
+        connection.keyCommands().del(source, sourceVersions);
+    }
+
+    /**
+     * 版本格式为 "窗口起始:计数"：更新的窗口，或同一窗口更大的计数更新
+     */
+    private static boolean isNewerVersion(byte[] candidate, byte[] existing) {
+        long[] c = parseVersion(candidate);
+        long[] e = parseVersion(existing);
+        return c[0] > e[0] || (c[0] == e[0] && c[1] > e[1]);
+    }
+
+    private static long[] parseVersion(byte[] version) {
+        String value = new String(version, StandardCharsets.UTF_8);
+        int separator = value.indexOf(':');
+        return new long[]{Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1))};
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -29,7 +222,7 @@ public class ArticleRankingService {
     public void updateArticleLikeCount(Long articleId, Long likeCount, String timeWindow) {
         try {
             // 使用时间窗口作为排行榜的key
-            String rankingKey = RANKING_KEY_PREFIX + timeWindow.replace(" ", "_").replace(":", "-");
+            String rankingKey = rankingKey(timeWindow);
             
             log.info("Updating Redis ranking: articleId={}, likeCount={}, timeWindow={}, rankingKey={}", 
                     articleId, likeCount, timeWindow, rankingKey);
@@ -41,7 +234,7 @@ public class ArticleRankingService {
             redisTemplate.opsForZSet().add(CURRENT_RANKING_KEY, articleId.toString(), likeCount.doubleValue());
             
             // 设置过期时间（24小时）
-            redisTemplate.expire(rankingKey, java.time.Duration.ofHours(24));
+            redisTemplate.expire(rankingKey, RANKING_TTL);
             
             log.info("Successfully updated article {} like count to {} in ranking {}", articleId, likeCount, rankingKey);
             
@@ -54,6 +247,47 @@ public class ArticleRankingService {
         }
     }
 
+    /**
+     * 批量更新文章点赞数量到Redis排行榜
+     * 整批在一次脚本调用内完成，按 (窗口, 文章, 版本) 幂等写入：
+     * 窗口内的计数只会增大，因此同一窗口只接受更大的计数；当前排行榜只接受更新的窗口或同窗口更大的计数。
+     * 重平衡或事务中止导致的重放、乱序写入都不会让排行榜回退。
+     *
+     * @return 实际生效的窗口写入条数
+     */
+    @SuppressWarnings("unchecked")
+    public long updateArticleLikeCounts(List<ArticleLikeCountUpdate> updates) {
+        if (updates == null || updates.isEmpty()) {
+            return 0;
+        }
+
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        List<String> keys = new ArrayList<>(List.of(CURRENT_RANKING_KEY, CURRENT_RANKING_VERSION_KEY));
+        Map<String, Integer> keyIndexes = new HashMap<>();
+        Object[] args = new Object[1 + updates.size() * 4];
+        args[0] = String.valueOf(RANKING_TTL.getSeconds());
+        int i = 1;
+        for (ArticleLikeCountUpdate update : updates) {
+            // Lua 数组下标从 1 开始，同一窗口的更新共用一个 KEYS 下标
+            args[i++] = String.valueOf(keyIndexes.computeIfAbsent(rankingKey(update.getTimeWindow()), key -> {
+                keys.add(key);
+                return keys.size();
+            }));
+            // 成员与其他写入路径保持同一序列化格式
+            args[i++] = valueSerializer.serialize(update.getArticleId().toString());
+            args[i++] = update.getLikeCount().toString();
+            args[i++] = String.valueOf(update.getWindowStart() != null ? update.getWindowStart() : 0L);
+        }
+
+        Long applied = redisTemplate.execute(VERSIONED_RANKING_SCRIPT, RAW_ARGS_SERIALIZER, RAW_RESULT_SERIALIZER,
+                keys, args);
+        long appliedCount = applied != null ? applied : 0L;
+        if (appliedCount < updates.size()) {
+            log.debug("Skipped {} stale or duplicate ranking updates", updates.size() - appliedCount);
+        }
+        return appliedCount;
+    }
+
     /**
      * 获取当前热门文章排行榜（前N名）
      */
@@ -95,7 +329,7 @@ public class ArticleRankingService {
      */
     public List<ArticleRankingItem> getRankingByTimeWindow(String timeWindow, int topN) {
         try {
-            String rankingKey = RANKING_KEY_PREFIX + timeWindow.replace(" ", "_").replace(":", "-");
+            String rankingKey = rankingKey(timeWindow);
             
             Set<ZSetOperations.TypedTuple<Object>> topArticles = redisTemplate.opsForZSet()
                     .reverseRangeWithScores(rankingKey, 0, topN - 1);
@@ -131,7 +365,7 @@ public class ArticleRankingService {
      */
     public void clearRankingByTimeWindow(String timeWindow) {
         try {
-            String rankingKey = RANKING_KEY_PREFIX + timeWindow.replace(" ", "_").replace(":", "-");
+            String rankingKey = rankingKey(timeWindow);
             redisTemplate.delete(rankingKey);
             log.info("Cleared ranking data for time window: {}", timeWindow);
         } catch (Exception e) {
@@ -151,4 +385,8 @@ public class ArticleRankingService {
             return null;
         }
     }
+
+    private String rankingKey(String timeWindow) {
+        return RANKING_KEY_PREFIX + timeWindow.replace(" ", "_").replace(":", "-");
+    }
 }
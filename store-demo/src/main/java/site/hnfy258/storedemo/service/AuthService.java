@@ -3,6 +3,7 @@ package site.hnfy258.storedemo.service;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -20,6 +21,7 @@ import site.hnfy258.storedemo.mapper.RoleMapper;
 import site.hnfy258.storedemo.mapper.UserMapper;
 import site.hnfy258.storedemo.mapper.UserRoleMapper;
 import site.hnfy258.storedemo.security.CustomUserDetails;
+import site.hnfy258.storedemo.security.UserAuthorityChangedEvent;
 import site.hnfy258.storedemo.util.StatelessJwtUtil;
 
 import java.time.LocalDateTime;
@@ -37,6 +39,7 @@ public class AuthService {
     private final RoleMapper roleMapper;
     private final StatelessJwtUtil jwtUtil;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 用户登录
@@ -159,6 +162,9 @@ public class AuthService {
         userRole.setUserId(user.getId());
         userRole.setRoleId(1L); // 默认角色
         userRoleMapper.insertUserRole(userRole);
+
+        // 用户与角色写入后失效认证缓存（各节点）
+        eventPublisher.publishEvent(UserAuthorityChangedEvent.user(user.getId(), "register"));
     }
 
     private long getAccessTokenExpiration(DeviceType deviceType) {
@@ -0,0 +1,120 @@
+package site.hnfy258.storedemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.storedemo.config.KafkaTopicRegistry;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 对比 at-least-once（幂等生产者）与 exactly-once（事务生产者）的发送吞吐
+ * 使用与业务相同的生产者配置与序列化，写入独立的基准 Topic，避免影响排行榜
+ */
+@Service
+@Slf4j
+public class DeliveryGuaranteeBenchmarkService {
+
+    private final ProducerFactory<String, ArticleLikeEvent> producerFactory;
+    private final WireFormatSerde<ArticleLikeEvent> articleLikeEventSerde;
+
+    private final String benchmarkTopic;
+
+    public DeliveryGuaranteeBenchmarkService(ProducerFactory<String, ArticleLikeEvent> producerFactory,
+                                             WireFormatSerde<ArticleLikeEvent> articleLikeEventSerde,
+                                             KafkaTopicRegistry topicRegistry) {
+        this.producerFactory = producerFactory;
+        this.articleLikeEventSerde = articleLikeEventSerde;
+        this.benchmarkTopic = topicRegistry.getArticleLikeBenchmark().getName();
+    }
+
+    public Map<String, Object> compare(int events, int transactionSize) {
+        List<ArticleLikeEvent> samples = sampleEvents(events);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("topic", benchmarkTopic);
+        result.put("events", events);
+        result.put("transactionSize", transactionSize);
+        result.put("atLeastOnce", runAtLeastOnce(samples));
+        result.put("exactlyOnce", runExactlyOnce(samples, transactionSize));
+        return result;
+    }
+
+    private Map<String, Object> runAtLeastOnce(List<ArticleLikeEvent> samples) {
+        DefaultKafkaProducerFactory<String, ArticleLikeEvent> factory = newFactory(null);
+        try {
+            KafkaTemplate<String, ArticleLikeEvent> template = new KafkaTemplate<>(factory);
+            long start = System.nanoTime();
+            List<CompletableFuture<SendResult<String, ArticleLikeEvent>>> futures = new ArrayList<>(samples.size());
+            for (ArticleLikeEvent event : samples) {
+                futures.add(template.send(benchmarkTopic, event.getArticleId().toString(), event));
+            }
+            template.flush();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            return stats(samples.size(), System.nanoTime() - start, 0);
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private Map<String, Object> runExactlyOnce(List<ArticleLikeEvent> samples, int transactionSize) {
+        DefaultKafkaProducerFactory<String, ArticleLikeEvent> factory = newFactory("article-like-benchmark-tx-");
+        try {
+            KafkaTemplate<String, ArticleLikeEvent> template = new KafkaTemplate<>(factory);
+            long start = System.nanoTime();
+            int transactions = 0;
+            for (int from = 0; from < samples.size(); from += transactionSize) {
+                List<ArticleLikeEvent> chunk = samples.subList(from, Math.min(from + transactionSize, samples.size()));
+                // 提交事务时会等待本事务内所有消息确认
+                template.executeInTransaction(operations -> {
+                    chunk.forEach(event -> operations.send(benchmarkTopic, event.getArticleId().toString(), event));
+                    return null;
+                });
+                transactions++;
+            }
+            return stats(samples.size(), System.nanoTime() - start, transactions);
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private DefaultKafkaProducerFactory<String, ArticleLikeEvent> newFactory(String transactionIdPrefix) {
+        Map<String, Object> configs = new HashMap<>(producerFactory.getConfigurationProperties());
+        DefaultKafkaProducerFactory<String, ArticleLikeEvent> factory =
+                new DefaultKafkaProducerFactory<>(configs, new StringSerializer(), articleLikeEventSerde.serializer());
+        if (transactionIdPrefix != null) {
+            factory.setTransactionIdPrefix(transactionIdPrefix);
+        }
+        return factory;
+    }
+
+    private Map<String, Object> stats(int events, long elapsedNanos, int transactions) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("elapsedMs", elapsedNanos / 1_000_000);
+        stats.put("recordsPerSecond", elapsedNanos == 0 ? 0 : (long) (events * 1_000_000_000.0 / elapsedNanos));
+        stats.put("transactions", transactions);
+        return stats;
+    }
+
+    private List<ArticleLikeEvent> sampleEvents(int events) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<ArticleLikeEvent> samples = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            samples.add(new ArticleLikeEvent((long) random.nextInt(1, 1000), (long) random.nextInt(1, 100000),
+                    "LIKE", new Date()));
+        }
+        return samples;
+    }
+}
@@ -1,35 +1,45 @@
 package site.hnfy258.storedemo.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
+import site.hnfy258.common.consumer.ConsumerTelemetry;
 import site.hnfy258.storedemo.dto.ArticleLikeEvent;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
 public class KafkaConsumerService {
-    private final ObjectMapper objectMapper;
+    private static final String ARTICLE_LIKE_GROUP_ID = "article-like-consumer-group";
+
     // 消息计数器
     private final AtomicLong articleLikeReceivedCount = new AtomicLong(0);
+    private final ConsumerTelemetry telemetry;
 
-    public KafkaConsumerService(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    public KafkaConsumerService(ConsumerTelemetry telemetry) {
+        this.telemetry = telemetry;
+        telemetry.track(ARTICLE_LIKE_GROUP_ID);
     }
 
     /**
      * 消费文章点赞事件（用于监控和日志记录）
      */
-    @KafkaListener(topics = "article_likes_events", groupId = "article-like-consumer-group", containerFactory = "kafkaListenerContainerFactory")
-    public void listenArticleLikeEvents(ConsumerRecord<String, String> record) {
+    @KafkaListener(topics = "#{@kafkaTopicRegistry.articleLikeEvents.name}", groupId = ARTICLE_LIKE_GROUP_ID, containerFactory = "kafkaListenerContainerFactory")
+    public void listenArticleLikeEvents(ConsumerRecord<String, ArticleLikeEvent> record) {
+        long start = System.nanoTime();
         try {
             long currentCount = articleLikeReceivedCount.incrementAndGet();
             
-            // 解析消息
-            ArticleLikeEvent event = objectMapper.readValue(record.value(), ArticleLikeEvent.class);
+            // 消息体已由 WireFormatSerde 解析，无法解析的消息为 null
+            ArticleLikeEvent event = record.value();
+            if (event == null) {
+                telemetry.recordConsumed(ARTICLE_LIKE_GROUP_ID, record, 0);
+                return;
+            }
             
             // 记录日志
             log.info("Received article like event: articleId={}, userId={}, action={}, timestamp={}, partition={}, offset={}",
@@ -45,17 +55,23 @@ public class KafkaConsumerService {
                 log.info("Article like consumer has processed {} events", currentCount);
             }
 
+            telemetry.recordProcessingTime(ARTICLE_LIKE_GROUP_ID, System.nanoTime() - start);
+            telemetry.recordConsumed(ARTICLE_LIKE_GROUP_ID, record,
+                    event.getTimestamp() != null ? event.getTimestamp().getTime() : 0);
+
         } catch (Exception e) {
-            log.error("Error processing article like event: partition={}, offset={}, key={}, value={}", 
-                    record.partition(), record.offset(), record.key(), record.value(), e);
+            log.error("Error processing article like event: partition={}, offset={}, key={}",
+                    record.partition(), record.offset(), record.key(), e);
         }
     }
     
     /**
-     * 获取消费统计信息
+     * 获取消费统计信息：接收计数以及消费组的 lag、分区速率、处理耗时与端到端延迟
      */
-    public String getConsumerStats() {
-        return String.format("Article Like Consumer: %d events processed", 
-                           articleLikeReceivedCount.get());
+    public Map<String, Object> getConsumerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("articleLikeReceived", articleLikeReceivedCount.get());
+        stats.put("telemetry", telemetry.getStats());
+        return stats;
     }
 }
\ No newline at end of file
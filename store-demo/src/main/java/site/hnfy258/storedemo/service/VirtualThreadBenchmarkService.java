@@ -0,0 +1,99 @@
+package site.hnfy258.storedemo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import site.hnfy258.common.util.VirtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对比平台线程池与虚拟线程执行阻塞型处理的吞吐
+ * 每个任务模拟一次缓存未命中：一次 Redis GET + blockMs 的"数据库查询"，两种执行器在同一 JVM（相同堆）中依次运行，
+ * 同时记录峰值线程数与运行后的堆使用量
+ */
+@Service
+@Slf4j
+public class VirtualThreadBenchmarkService {
+
+    private static final String KEY_PREFIX = "vt_benchmark:";
+    private static final long TIMEOUT_SECONDS = 300;
+
+    private final StringRedisTemplate redisTemplate;
+
+    public VirtualThreadBenchmarkService(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public Map<String, Object> compare(int tasks, long blockMs, int platformThreads) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("javaVersion", Runtime.version().toString());
+        result.put("maxHeapMb", Runtime.getRuntime().maxMemory() / 1024 / 1024);
+        result.put("tasks", tasks);
+        result.put("blockMs", blockMs);
+
+        ExecutorService platform = Executors.newFixedThreadPool(platformThreads);
+        result.put("platform(" + platformThreads + ")", run(platform, tasks, blockMs));
+
+        if (VirtualThreads.isSupported()) {
+            result.put("virtual", run(VirtualThreads.newThreadPerTaskExecutor("vt-benchmark-"), tasks, blockMs));
+        } else {
+            result.put("virtual", "unsupported on Java " + Runtime.version().feature());
+        }
+        return result;
+    }
+
+    private Map<String, Object> run(ExecutorService executor, int tasks, long blockMs) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        threads.resetPeakThreadCount();
+        LongAdder errors = new LongAdder();
+        CountDownLatch done = new CountDownLatch(tasks);
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < tasks; i++) {
+                executor.execute(() -> {
+                    try {
+                        redisTemplate.opsForValue().get(KEY_PREFIX + ThreadLocalRandom.current().nextInt(1000));
+                        Thread.sleep(blockMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        errors.increment();
+                    } catch (Exception e) {
+                        errors.increment();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            boolean completed = done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("completed", completed);
+            stats.put("errors", errors.sum());
+            stats.put("elapsedMs", elapsed / 1_000_000);
+            stats.put("tasksPerSecond", (long) (tasks * 1_000_000_000.0 / elapsed));
+            stats.put("peakPlatformThreads", threads.getPeakThreadCount());
+            stats.put("heapUsedMb", memory.getHeapMemoryUsage().getUsed() / 1024 / 1024);
+            log.info("Virtual thread benchmark: {}", stats);
+            return stats;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Virtual thread benchmark interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package site.hnfy258.storedemo.stream;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import site.hnfy258.common.stream.JsonEventSerde;
+import site.hnfy258.storedemo.dto.ArticleLikeCountUpdate;
+import site.hnfy258.storedemo.service.ArticleRankingService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 文章排行榜的Redis Sink
+ * 拓扑中的算子保持无副作用，窗口计数由 {@link ArticleRankingSinkProcessor} 合并到带 changelog 的缓冲状态存储中，
+ * 由标点器定时把合并后的批次交给这里异步管道写入Redis，写入成功后才从缓冲中删除，
+ * 因此流任务提交位点时未写出的窗口仍保存在状态中，故障恢复后会重新写出（at-least-once）。
+ * 失败的批次按退避重试有限次数，仍失败则留在缓冲中等下一次标点重新提交。
+ * 同时在途的批次数有上限，写入跟不上时阻塞流线程，形成背压而不是无限堆积。
+ * exactly-once 模式下拓扑不经过这里的异步写入，而是把更新写入输出 Topic，
+ * 由 {@link ArticleRankingUpdateListener} 调用 {@link #write(List)} 同步写入。
+ */
+@Slf4j
+@Component
+public class ArticleRankingSink implements ProcessorSupplier<Windowed<String>, Long, Void, Void> {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    static final String BUFFER_STORE = "article-ranking-sink-buffer";
+
+    private final ArticleRankingService articleRankingService;
+    private final JsonEventSerde<ArticleLikeCountUpdate> updateSerde;
+    private final Duration flushInterval;
+    private final int maxBufferedUpdates;
+    private final Semaphore inFlightBatches;
+    private final int maxInFlightBatches;
+    private final ExecutorService writerExecutor;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder updatesWritten = new LongAdder();
+    private final LongAdder staleUpdatesSkipped = new LongAdder();
+    private final LongAdder retriedBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+
+    public ArticleRankingSink(ArticleRankingService articleRankingService,
+                              JsonEventSerde<ArticleLikeCountUpdate> updateSerde,
+                              @Value("${streams.ranking-sink.flush-interval-ms:1000}") long flushIntervalMs,
+                              @Value("${streams.ranking-sink.max-buffered-updates:5000}") int maxBufferedUpdates,
+                              @Value("${streams.ranking-sink.max-in-flight-batches:4}") int maxInFlightBatches,
+                              @Value("${streams.ranking-sink.writer-threads:2}") int writerThreads,
+                              @Value("${streams.ranking-sink.max-attempts:3}") int maxAttempts,
+                              @Value("${streams.ranking-sink.retry-backoff-ms:200}") long initialBackoffMs) {
+        this.articleRankingService = articleRankingService;
+        this.updateSerde = updateSerde;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.flushInterval = Duration.ofMillis(flushIntervalMs);
+        this.maxBufferedUpdates = maxBufferedUpdates;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.writerExecutor = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "ranking-sink-writer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Processor<Windowed<String>, Long, Void, Void> get() {
+        return new ArticleRankingSinkProcessor(this, flushInterval, maxBufferedUpdates);
+    }
+
+    /**
+     * 缓冲状态存储随处理器一起注册到拓扑，写入 changelog 与位点一起提交
+     */
+    @Override
+    public Set<StoreBuilder<?>> stores() {
+        StoreBuilder<KeyValueStore<String, ArticleLikeCountUpdate>> buffer = Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(BUFFER_STORE), Serdes.String(), updateSerde);
+        return Set.of(buffer);
+    }
+
+    /**
+     * 提交一个批次进行异步写入，在途批次已满时阻塞调用方（流线程）
+     * 返回的 Future 在重试耗尽后以异常完成，由处理器决定是否保留缓冲
+     */
+    CompletableFuture<Long> submit(List<ArticleLikeCountUpdate> batch) {
+        acquirePermit();
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        try {
+            writerExecutor.execute(() -> {
+                try {
+                    result.complete(writeWithRetry(batch));
+                } catch (Exception e) {
+                    log.error("Failed to write {} ranking updates to Redis after {} attempts, keeping them buffered",
+                            batch.size(), maxAttempts, e);
+                    result.completeExceptionally(e);
+                } finally {
+                    inFlightBatches.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+        return result;
+    }
+
+    private long writeWithRetry(List<ArticleLikeCountUpdate> batch) throws InterruptedException {
+        long backoffMs = initialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return write(batch);
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                retriedBatches.increment();
+                log.warn("Ranking batch write attempt {}/{} failed, retrying in {} ms: {}",
+                        attempt, maxAttempts, backoffMs, e.getMessage());
+                TimeUnit.MILLISECONDS.sleep(backoffMs);
+                backoffMs *= 2;
+            }
+        }
+    }
+
+    /**
+     * 在调用线程上同步写入一个批次，失败时抛出异常由调用方决定重试
+     *
+     * @return 实际生效的窗口写入条数
+     */
+    public long write(List<ArticleLikeCountUpdate> batch) {
+        try {
+            long applied = articleRankingService.updateArticleLikeCounts(batch);
+            batchesWritten.increment();
+            updatesWritten.add(applied);
+            staleUpdatesSkipped.add(batch.size() - applied);
+            return applied;
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 窗口计数转换为排行榜更新
+     */
+    public static ArticleLikeCountUpdate toUpdate(Windowed<String> windowedKey, Long count) {
+        return new ArticleLikeCountUpdate(Long.parseLong(windowedKey.key()), count,
+                formatWindow(windowedKey), windowedKey.window().start());
+    }
+
+    private static String formatWindow(Windowed<String> windowedKey) {
+        LocalDateTime startTime = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(windowedKey.window().start()), ZoneId.systemDefault());
+        LocalDateTime endTime = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(windowedKey.window().end()), ZoneId.systemDefault());
+        return startTime.format(TIME_FORMATTER) + " - " + endTime.format(TIME_FORMATTER);
+    }
+
+    private void acquirePermit() {
+        try {
+            if (inFlightBatches.tryAcquire()) {
+                return;
+            }
+            backpressureWaits.increment();
+            while (!inFlightBatches.tryAcquire(1, TimeUnit.SECONDS)) {
+                log.warn("Ranking sink backpressure: {} batches still in flight, stream thread waiting",
+                        maxInFlightBatches);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ranking sink capacity", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchesWritten", batchesWritten.sum());
+        stats.put("updatesWritten", updatesWritten.sum());
+        stats.put("staleUpdatesSkipped", staleUpdatesSkipped.sum());
+        stats.put("retriedBatches", retriedBatches.sum());
+        stats.put("failedBatches", failedBatches.sum());
+        stats.put("backpressureWaits", backpressureWaits.sum());
+        stats.put("inFlightBatches", maxInFlightBatches - inFlightBatches.availablePermits());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerExecutor.shutdown();
+        try {
+            if (!writerExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                writerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
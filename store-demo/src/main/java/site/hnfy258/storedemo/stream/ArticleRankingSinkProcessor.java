@@ -0,0 +1,168 @@
+package site.hnfy258.storedemo.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.Cancellable;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import site.hnfy258.storedemo.dto.ArticleLikeCountUpdate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 每个流任务一个实例：按 (窗口, 文章) 合并计数写入缓冲状态存储，只保留最新值，
+ * 由墙钟标点器或缓冲区达到上限时整批交给 {@link ArticleRankingSink} 写出。
+ * 缓冲条目只在写入成功后删除，随后请求一次提交，让删除尽快落到 changelog；
+ * 在途或写入失败的条目留在缓冲中，任务在写出前提交或崩溃都不会丢失窗口。
+ */
+@Slf4j
+class ArticleRankingSinkProcessor implements Processor<Windowed<String>, Long, Void, Void> {
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ArticleRankingSink sink;
+    private final Duration flushInterval;
+    private final int maxBufferedUpdates;
+
+    // 已提交写入但尚未确认的条目：缓冲键 -> 提交时的值，避免在途期间重复提交
+    private final Map<String, ArticleLikeCountUpdate> inFlight = new HashMap<>();
+    private final List<SubmittedBatch> submitted = new ArrayList<>();
+
+    private ProcessorContext<Void, Void> context;
+    private KeyValueStore<String, ArticleLikeCountUpdate> buffer;
+    private Cancellable punctuator;
+    private int bufferedSinceFlush;
+
+    ArticleRankingSinkProcessor(ArticleRankingSink sink, Duration flushInterval, int maxBufferedUpdates) {
+        this.sink = sink;
+        this.flushInterval = flushInterval;
+        this.maxBufferedUpdates = maxBufferedUpdates;
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        this.context = context;
+        this.buffer = context.getStateStore(ArticleRankingSink.BUFFER_STORE);
+        this.punctuator = context.schedule(flushInterval, PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+    }
+
+    @Override
+    public void process(Record<Windowed<String>, Long> record) {
+        if (record.key() == null || record.value() == null) {
+            return;
+        }
+        ArticleLikeCountUpdate update = ArticleRankingSink.toUpdate(record.key(), record.value());
+        buffer.put(bufferKey(update), update);
+        if (++bufferedSinceFlush >= maxBufferedUpdates) {
+            flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (punctuator != null) {
+            punctuator.cancel();
+        }
+        flush();
+        awaitSubmitted(CLOSE_TIMEOUT);
+        acknowledgeCompleted();
+    }
+
+    private void flush() {
+        acknowledgeCompleted();
+
+        List<String> keys = new ArrayList<>();
+        List<ArticleLikeCountUpdate> batch = new ArrayList<>();
+        try (KeyValueIterator<String, ArticleLikeCountUpdate> iterator = buffer.all()) {
+            while (iterator.hasNext()) {
+                KeyValue<String, ArticleLikeCountUpdate> entry = iterator.next();
+                if (!entry.value.equals(inFlight.get(entry.key))) {
+                    keys.add(entry.key);
+                    batch.add(entry.value);
+                }
+            }
+        }
+        bufferedSinceFlush = 0;
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            inFlight.put(keys.get(i), batch.get(i));
+        }
+        submitted.add(new SubmittedBatch(keys, batch, sink.submit(batch)));
+    }
+
+    /**
+     * 处理已完成的批次：成功的条目在值未被更新覆盖时从缓冲删除并请求提交，
+     * 失败的条目只解除在途标记，留待下一次刷新重新提交
+     */
+    private void acknowledgeCompleted() {
+        boolean acknowledged = false;
+        Iterator<SubmittedBatch> iterator = submitted.iterator();
+        while (iterator.hasNext()) {
+            SubmittedBatch submittedBatch = iterator.next();
+            if (!submittedBatch.result.isDone()) {
+                continue;
+            }
+            iterator.remove();
+            boolean succeeded = !submittedBatch.result.isCompletedExceptionally();
+            for (int i = 0; i < submittedBatch.keys.size(); i++) {
+                String key = submittedBatch.keys.get(i);
+                ArticleLikeCountUpdate written = submittedBatch.updates.get(i);
+                inFlight.remove(key, written);
+                if (succeeded && written.equals(buffer.get(key))) {
+                    buffer.delete(key);
+                }
+            }
+            acknowledged |= succeeded;
+        }
+        if (acknowledged) {
+            context.commit();
+        }
+    }
+
+    private void awaitSubmitted(Duration timeout) {
+        if (submitted.isEmpty()) {
+            return;
+        }
+        CompletableFuture<?>[] pending = submitted.stream().map(batch -> batch.result).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(pending).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.warn("Ranking sink still has in-flight batches after {} ms, they stay buffered", timeout.toMillis());
+        } catch (Exception e) {
+            // 失败的批次留在缓冲中，由恢复后的任务重新写出
+        }
+    }
+
+    private static String bufferKey(ArticleLikeCountUpdate update) {
+        return update.getWindowStart() + ":" + update.getArticleId();
+    }
+
+    private static final class SubmittedBatch {
+        private final List<String> keys;
+        private final List<ArticleLikeCountUpdate> updates;
+        private final CompletableFuture<Long> result;
+
+        private SubmittedBatch(List<String> keys, List<ArticleLikeCountUpdate> updates, CompletableFuture<Long> result) {
+            this.keys = keys;
+            this.updates = updates;
+            this.result = result;
+        }
+    }
+}
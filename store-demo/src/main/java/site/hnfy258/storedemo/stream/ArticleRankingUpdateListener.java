@@ -0,0 +1,42 @@
+package site.hnfy258.storedemo.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import site.hnfy258.storedemo.dto.ArticleLikeCountUpdate;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * exactly-once 模式下排行榜更新的Redis写入端
+ * 流拓扑把更新写入 article-ranking-updates，与窗口状态和输入位点在同一事务中提交；
+ * 这里只读取已提交的更新，每个 poll 的批次同步写入Redis后才提交位点（AckMode.BATCH），
+ * 写入失败则整批重试。重复写入由排行榜按 (窗口, 文章, 版本) 的幂等写入吸收。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "kafka.exactly-once.enabled", havingValue = "true")
+public class ArticleRankingUpdateListener {
+
+    private static final String GROUP_ID = "article-ranking-redis-writer";
+
+    private final ArticleRankingSink articleRankingSink;
+
+    public ArticleRankingUpdateListener(ArticleRankingSink articleRankingSink) {
+        this.articleRankingSink = articleRankingSink;
+    }
+
+    @KafkaListener(topics = "#{@kafkaTopicRegistry.articleRankingUpdates.name}", groupId = GROUP_ID,
+            containerFactory = "rankingUpdateListenerContainerFactory")
+    public void onUpdates(List<ArticleLikeCountUpdate> updates) {
+        // 无法解析的消息反序列化为 null，直接跳过
+        List<ArticleLikeCountUpdate> batch = updates.stream().filter(Objects::nonNull).toList();
+        if (batch.isEmpty()) {
+            return;
+        }
+        long applied = articleRankingSink.write(batch);
+        log.debug("Applied {}/{} ranking updates from transaction output", applied, batch.size());
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import site.hnfy258.storedemo.config.JwtConfig;
 import site.hnfy258.storedemo.constants.DeviceType;
+import site.hnfy258.storedemo.security.ParsedAccessToken;
 
 import java.text.ParseException;
 import java.util.Date;
@@ -99,25 +100,36 @@ public class JwtUtil {
      * 验证令牌
      */
     public boolean validateToken(String token) {
+        return verifyToken(token) != null;
+    }
+    
+    /**
+     * 验证签名和过期时间并返回解析结果（访问令牌与刷新令牌均可，类型见 tokenType），无效时返回 null
+     */
+    public ParsedAccessToken verifyToken(String token) {
         try {
             if (token == null || token.trim().isEmpty()) {
-                return false;
+                return null;
             }
             
             SignedJWT signedJWT = SignedJWT.parse(token);
             JWSVerifier verifier = new MACVerifier(jwtConfig.getSecret());
             
             if (!signedJWT.verify(verifier)) {
-                return false;
+                return null;
             }
             
             // 检查是否过期
-            Date expirationTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-            return expirationTime != null && expirationTime.after(new Date());
+            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+            Date expirationTime = claims.getExpirationTime();
+            if (expirationTime == null || !expirationTime.after(new Date())) {
+                return null;
+            }
+            return ParsedAccessToken.from(claims);
             
         } catch (Exception e) {
             log.debug("验证令牌失败: {}", e.getMessage());
-            return false;
+            return null;
         }
     }
     
@@ -179,10 +191,18 @@ public class JwtUtil {
      * 检查令牌是否在Redis中存在
      */
     public boolean isTokenInRedis(String token, String tokenType) {
+        return isTokenInRedis(token, getUserIdFromToken(token), getDeviceTypeFromToken(token), tokenType);
+    }
+    
+    /**
+     * 检查令牌是否在Redis中存在，用户ID与设备类型取自已解析的令牌
+     */
+    public boolean isTokenInRedis(String token, ParsedAccessToken parsedToken, String tokenType) {
+        return isTokenInRedis(token, parsedToken.getUserId(), parsedToken.getDeviceType(), tokenType);
+    }
+    
+    private boolean isTokenInRedis(String token, Long userId, DeviceType deviceType, String tokenType) {
         try {
-            Long userId = getUserIdFromToken(token);
-            DeviceType deviceType = getDeviceTypeFromToken(token);
-            
             if (userId == null || deviceType == null) {
                 return false;
             }
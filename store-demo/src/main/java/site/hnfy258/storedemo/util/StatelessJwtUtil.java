@@ -5,36 +5,49 @@ import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import site.hnfy258.storedemo.config.JwtConfig;
 import site.hnfy258.storedemo.constants.DeviceType;
+import site.hnfy258.storedemo.security.AccessTokenRevocationService;
+import site.hnfy258.storedemo.security.ParsedAccessToken;
 
 import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 无状态JWT工具类
- * Access Token: 完全无状态，不依赖Redis验证
+ * Access Token: 完全无状态，不依赖Redis验证；验签通过的令牌按摘要缓存解析结果，重复请求不再解析和计算HMAC
  * Refresh Token: 有状态，存储在Redis中用于安全控制
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class StatelessJwtUtil {
     
     private final JwtConfig jwtConfig;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final VerifiedTokenCache<ParsedAccessToken> verifiedTokens;
+    private final AccessTokenRevocationService revocationService;
+    
+    // MACSigner / MACVerifier 线程安全，按密钥复用；首次使用时创建（密钥长度不足时在签发/验证处报错，与原行为一致）
+    private volatile JWSSigner signer;
+    private volatile JWSVerifier verifier;
     
     // 只有Refresh Token需要Redis存储
     private static final String REFRESH_TOKEN_PREFIX = "refresh_token:";
-    // 用于存储已撤销的Access Token JTI（黑名单机制）
-    private static final String REVOKED_TOKEN_PREFIX = "revoked_token:";
+    
+    public StatelessJwtUtil(JwtConfig jwtConfig, RedisTemplate<String, Object> redisTemplate,
+                            AccessTokenRevocationService revocationService) {
+        this.jwtConfig = jwtConfig;
+        this.redisTemplate = redisTemplate;
+        this.verifiedTokens = new VerifiedTokenCache<>(jwtConfig.getVerifiedCacheCapacity());
+        this.revocationService = revocationService;
+    }
     
     /**
      * 生成无状态的访问令牌
@@ -58,7 +71,7 @@ public class StatelessJwtUtil {
                     .build();
             
             SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claimsSet);
-            signedJWT.sign(new MACSigner(jwtConfig.getSecret()));
+            signedJWT.sign(signer());
             
             return signedJWT.serialize();
         } catch (JOSEException e) {
@@ -88,7 +101,7 @@ public class StatelessJwtUtil {
                     .build();
             
             SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claimsSet);
-            signedJWT.sign(new MACSigner(jwtConfig.getSecret()));
+            signedJWT.sign(signer());
             
             String token = signedJWT.serialize();
             
@@ -105,42 +118,99 @@ public class StatelessJwtUtil {
     
     /**
      * 验证访问令牌（无状态）
-     * 只验证签名和过期时间，不查询Redis
+     * 验证签名和过期时间；命中已验签缓存时跳过解析与HMAC计算，黑名单检查每次都做
      */
     public boolean validateAccessToken(String token) {
+        return verifyAccessToken(token) != null;
+    }
+    
+    /**
+     * 验证访问令牌并返回解析结果，无效、过期或已撤销时返回 null
+     * 认证过滤器每个请求只调用这一次，后续的用户ID、设备类型、角色都从返回值读取
+     */
+    public ParsedAccessToken verifyAccessToken(String token) {
         try {
             if (token == null || token.trim().isEmpty()) {
-                return false;
-            }
-            
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            JWSVerifier verifier = new MACVerifier(jwtConfig.getSecret());
-            
-            // 验证签名
-            if (!signedJWT.verify(verifier)) {
-                return false;
+                return null;
             }
             
-            // 验证过期时间
-            Date expirationTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-            if (expirationTime == null || expirationTime.before(new Date())) {
-                return false;
+            ParsedAccessToken accessToken = verifiedToken(token);
+            if (accessToken == null) {
+                return null;
             }
             
-            // 检查是否在黑名单中（可选的安全机制）
-            String jti = signedJWT.getJWTClaimsSet().getJWTID();
-            if (jti != null && isTokenRevoked(jti)) {
-                return false;
+            // 检查是否在黑名单中：先查本地过滤器，命中才查Redis
+            String jti = accessToken.getJti();
+            if (jti != null && revocationService.isRevoked(jti, accessToken.getExpiresAtMillis())) {
+                return null;
             }
             
-            return true;
+            return accessToken;
             
         } catch (Exception e) {
             log.debug("验证访问令牌失败: {}", e.getMessage());
-            return false;
+            return null;
         }
     }
     
+    /**
+     * 返回签名和过期时间均有效的令牌，否则返回 null
+     * 结果按令牌摘要缓存到令牌过期为止，ParsedAccessToken 不可变，可在请求间共享
+     */
+    private ParsedAccessToken verifiedToken(String token) throws ParseException, JOSEException {
+        ParsedAccessToken cached = verifiedTokens.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        if (!signedJWT.verify(verifier())) {
+            return null;
+        }
+        
+        JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+        Date expirationTime = claims.getExpirationTime();
+        if (expirationTime == null || expirationTime.before(new Date())) {
+            return null;
+        }
+        
+        ParsedAccessToken accessToken = ParsedAccessToken.from(claims);
+        verifiedTokens.put(token, accessToken, expirationTime.getTime());
+        return accessToken;
+    }
+    
+    /**
+     * 读取令牌声明（不验签）
+     */
+    private JWTClaimsSet readClaims(String token) throws ParseException {
+        return SignedJWT.parse(token).getJWTClaimsSet();
+    }
+    
+    private JWSSigner signer() throws JOSEException {
+        JWSSigner current = signer;
+        if (current == null) {
+            current = new MACSigner(jwtConfig.getSecret());
+            signer = current;
+        }
+        return current;
+    }
+    
+    private JWSVerifier verifier() throws JOSEException {
+        JWSVerifier current = verifier;
+        if (current == null) {
+            current = new MACVerifier(jwtConfig.getSecret());
+            verifier = current;
+        }
+        return current;
+    }
+    
+    /**
+     * 已验签令牌缓存的容量、命中率与淘汰数
+     */
+    public Map<String, Object> getVerifiedTokenCacheStats() {
+        return verifiedTokens.getStats();
+    }
+    
     /**
      * 验证刷新令牌（有状态）
      * 需要检查Redis中是否存在
@@ -176,9 +246,8 @@ public class StatelessJwtUtil {
     private boolean validateTokenSignatureAndExpiration(String token) {
         try {
             SignedJWT signedJWT = SignedJWT.parse(token);
-            JWSVerifier verifier = new MACVerifier(jwtConfig.getSecret());
             
-            if (!signedJWT.verify(verifier)) {
+            if (!signedJWT.verify(verifier())) {
                 return false;
             }
             
@@ -201,26 +270,15 @@ public class StatelessJwtUtil {
                 // 获取令牌的剩余有效时间
                 Date expiration = getExpirationFromToken(token);
                 if (expiration != null) {
-                    long ttl = expiration.getTime() - System.currentTimeMillis();
-                    if (ttl > 0) {
-                        String key = REVOKED_TOKEN_PREFIX + jti;
-                        redisTemplate.opsForValue().set(key, "revoked", ttl, TimeUnit.MILLISECONDS);
-                    }
+                    revocationService.revoke(jti, expiration.getTime());
                 }
+                verifiedTokens.invalidate(token);
             }
         } catch (Exception e) {
             log.error("撤销访问令牌失败", e);
         }
     }
     
-    /**
-     * 检查令牌是否已被撤销
-     */
-    private boolean isTokenRevoked(String jti) {
-        String key = REVOKED_TOKEN_PREFIX + jti;
-        return redisTemplate.hasKey(key);
-    }
-    
     /**
      * 删除用户的刷新令牌（登出时使用）
      */
@@ -234,8 +292,7 @@ public class StatelessJwtUtil {
      */
     private String getJtiFromToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            return signedJWT.getJWTClaimsSet().getJWTID();
+            return readClaims(token).getJWTID();
         } catch (ParseException e) {
             return null;
         }
@@ -246,8 +303,7 @@ public class StatelessJwtUtil {
      */
     private Date getExpirationFromToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            return signedJWT.getJWTClaimsSet().getExpirationTime();
+            return readClaims(token).getExpirationTime();
         } catch (ParseException e) {
             return null;
         }
@@ -258,8 +314,7 @@ public class StatelessJwtUtil {
      */
     public Long getUserIdFromToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            return signedJWT.getJWTClaimsSet().getLongClaim("userId");
+            return readClaims(token).getLongClaim("userId");
         } catch (ParseException e) {
             log.error("解析令牌失败", e);
             return null;
@@ -271,8 +326,7 @@ public class StatelessJwtUtil {
      */
     public String getUsernameFromToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            return signedJWT.getJWTClaimsSet().getSubject();
+            return readClaims(token).getSubject();
         } catch (ParseException e) {
             log.error("解析令牌失败", e);
             return null;
@@ -285,8 +339,7 @@ public class StatelessJwtUtil {
     @SuppressWarnings("unchecked")
     public List<String> getRolesFromToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            return (List<String>) signedJWT.getJWTClaimsSet().getClaim("roles");
+            return (List<String>) readClaims(token).getClaim("roles");
         } catch (ParseException e) {
             log.error("解析令牌失败", e);
             return null;
@@ -298,8 +351,7 @@ public class StatelessJwtUtil {
      */
     public DeviceType getDeviceTypeFromToken(String token) {
         try {
-            SignedJWT signedJWT = SignedJWT.parse(token);
-            String deviceType = signedJWT.getJWTClaimsSet().getStringClaim("deviceType");
+            String deviceType = readClaims(token).getStringClaim("deviceType");
             return DeviceType.valueOf(deviceType.toUpperCase());
         } catch (ParseException e) {
             log.error("解析令牌失败", e);
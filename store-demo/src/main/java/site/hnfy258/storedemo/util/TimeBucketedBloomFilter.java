@@ -0,0 +1,131 @@
+package site.hnfy258.storedemo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按过期时间分桶的布隆过滤器
+ * 元素连同其过期时间加入，落在过期时间所属的桶里；查询时同样带上过期时间，只检查一个桶。
+ * 整个桶的过期时间都已过去后直接丢弃，过滤器随元素过期自然老化，不需要删除单个元素。
+ * 无假阴性：加入过的元素一定返回 true；假阳性率在每桶元素不超过 expectedPerBucket 时约为 falsePositiveRate。
+ */
+public class TimeBucketedBloomFilter {
+
+    private final long bucketMillis;
+    private final int bitsPerBucket;
+    private final int hashFunctions;
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public TimeBucketedBloomFilter(long bucketMillis, int expectedPerBucket, double falsePositiveRate) {
+        this.bucketMillis = bucketMillis;
+        int expected = Math.max(1, expectedPerBucket);
+        // m = -n·ln(p) / (ln2)^2，k = m/n·ln2
+        long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitsPerBucket = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63L));
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitsPerBucket / expected * Math.log(2)));
+    }
+
+    public void add(String element, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        buckets.computeIfAbsent(expiresAtMillis / bucketMillis, index -> new Bucket(bitsPerBucket))
+                .add(element, hashFunctions);
+    }
+
+    public boolean mightContain(String element, long expiresAtMillis) {
+        Bucket bucket = buckets.get(expiresAtMillis / bucketMillis);
+        return bucket != null && bucket.mightContain(element, hashFunctions);
+    }
+
+    /**
+     * 丢弃过期时间已全部过去的桶
+     */
+    public int expire() {
+        long currentIndex = System.currentTimeMillis() / bucketMillis;
+        int before = buckets.size();
+        buckets.keySet().removeIf(index -> index < currentIndex);
+        return before - buckets.size();
+    }
+
+    public int bucketCount() {
+        return buckets.size();
+    }
+
+    public long size() {
+        long size = 0;
+        for (Bucket bucket : buckets.values()) {
+            size += bucket.insertions.sum();
+        }
+        return size;
+    }
+
+    public int getBitsPerBucket() {
+        return bitsPerBucket;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    private static final class Bucket {
+        private final AtomicLongArray words;
+        private final int bits;
+        private final LongAdder insertions = new LongAdder();
+
+        private Bucket(int bits) {
+            this.bits = bits;
+            this.words = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        void add(String element, int hashFunctions) {
+            long hash = hash(element);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < hashFunctions; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long current;
+                while (((current = words.get(word)) & mask) == 0
+                        && !words.compareAndSet(word, current, current | mask)) {
+                    // 并发写同一个 word 时重试
+                }
+            }
+            insertions.increment();
+        }
+
+        boolean mightContain(String element, int hashFunctions) {
+            long hash = hash(element);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < hashFunctions; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 64 位 FNV-1a 再做一次 murmur3 finalizer 混合，高低 32 位用作双重哈希的两个基哈希
+         */
+        private static long hash(String element) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : element.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
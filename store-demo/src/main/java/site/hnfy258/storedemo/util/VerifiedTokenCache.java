@@ -0,0 +1,126 @@
+package site.hnfy258.storedemo.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已验签令牌的进程内缓存：令牌的 SHA-256 摘要 -> 解析后的不可变结果
+ * 只缓存签名与过期时间均校验通过的令牌，条目在令牌过期时失效；键只保存摘要，堆里不留原始令牌。
+ * 容量满时先清理已过期的条目，仍然满则按遍历顺序淘汰约 1/8（近似淘汰，不维护访问顺序以免读路径加锁）。
+ * capacity <= 0 时关闭缓存。
+ */
+public class VerifiedTokenCache<T> {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final int capacity;
+    private final Map<ByteBuffer, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public VerifiedTokenCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 返回未过期的缓存结果，没有则返回 null
+     */
+    public T get(String token) {
+        if (capacity <= 0) {
+            return null;
+        }
+        ByteBuffer key = key(token);
+        Entry<T> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    public void put(String token, T value, long expiresAtMillis) {
+        if (capacity <= 0 || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        if (entries.size() >= capacity) {
+            evict();
+        }
+        entries.put(key(token), new Entry<>(value, expiresAtMillis));
+    }
+
+    public void invalidate(String token) {
+        if (capacity > 0) {
+            entries.remove(key(token));
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", capacity > 0);
+        stats.put("capacity", capacity);
+        stats.put("size", entries.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private synchronized void evict() {
+        if (entries.size() < capacity) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAtMillis <= now);
+        if (entries.size() < capacity) {
+            return;
+        }
+        int toEvict = Math.max(entries.size() - capacity + 1, capacity / 8);
+        Iterator<ByteBuffer> iterator = entries.keySet().iterator();
+        while (toEvict-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static ByteBuffer key(String token) {
+        return ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long expiresAtMillis;
+
+        private Entry(T value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
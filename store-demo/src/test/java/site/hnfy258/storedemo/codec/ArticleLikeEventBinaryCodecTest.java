@@ -0,0 +1,89 @@
+package site.hnfy258.storedemo.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * ArticleLikeEvent 二进制格式：编码后解码得到相同事件，长度与版本号符合格式说明
+ */
+class ArticleLikeEventBinaryCodecTest {
+
+    private final ArticleLikeEventBinaryCodec codec = new ArticleLikeEventBinaryCodec();
+
+    @Test
+    void knownActionsRoundTripInTwentySevenBytes() {
+        for (String action : new String[]{"LIKE", "UNLIKE"}) {
+            ArticleLikeEvent event = new ArticleLikeEvent(42L, 7L, action, new Date(1_700_000_000_123L));
+
+            byte[] encoded = codec.encode(event);
+
+            assertEquals(27, encoded.length);
+            assertEquals(ArticleLikeEventBinaryCodec.VERSION, encoded[0]);
+            assertEquals(event, codec.decode(encoded));
+        }
+    }
+
+    @Test
+    void nullFieldsRoundTripAsNull() {
+        ArticleLikeEvent event = new ArticleLikeEvent(null, null, null, null);
+
+        byte[] encoded = codec.encode(event);
+        ArticleLikeEvent decoded = codec.decode(encoded);
+
+        // null 动作按未知动作编码：0 + 长度 0xFFFF
+        assertEquals(29, encoded.length);
+        assertNull(decoded.getArticleId());
+        assertNull(decoded.getUserId());
+        assertNull(decoded.getAction());
+        assertNull(decoded.getTimestamp());
+    }
+
+    @Test
+    void zeroIdsAreDistinguishedFromMissingIds() {
+        ArticleLikeEvent event = new ArticleLikeEvent(0L, 0L, "LIKE", new Date(0));
+
+        assertEquals(event, codec.decode(codec.encode(event)));
+    }
+
+    @Test
+    void unknownActionIsCarriedAsText() {
+        ArticleLikeEvent event = new ArticleLikeEvent(1L, 2L, "收藏", new Date(1_700_000_000_000L));
+
+        byte[] encoded = codec.encode(event);
+
+        assertEquals(29 + "收藏".getBytes(StandardCharsets.UTF_8).length, encoded.length);
+        assertEquals(event, codec.decode(encoded));
+    }
+
+    @Test
+    void unsupportedVersionIsRejected() {
+        byte[] encoded = codec.encode(new ArticleLikeEvent(1L, 2L, "LIKE", new Date()));
+        encoded[0] = (byte) (ArticleLikeEventBinaryCodec.VERSION + 1);
+
+        assertThrows(SerializationException.class, () -> codec.decode(encoded));
+    }
+
+    @Test
+    void truncatedOrCorruptRecordsAreRejected() {
+        byte[] encoded = codec.encode(new ArticleLikeEvent(1L, 2L, "LIKE", new Date()));
+        assertThrows(SerializationException.class, () -> codec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+
+        // 动作编码超出已知范围
+        encoded[18] = 9;
+        assertThrows(SerializationException.class, () -> codec.decode(encoded));
+
+        // 截断在未知动作的字符串内部
+        byte[] unknownAction = codec.encode(new ArticleLikeEvent(1L, 2L, "FAVORITE", new Date()));
+        assertThrows(SerializationException.class,
+                () -> codec.decode(Arrays.copyOf(unknownAction, unknownAction.length - 10)));
+    }
+}
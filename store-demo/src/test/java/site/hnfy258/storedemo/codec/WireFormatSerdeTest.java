@@ -0,0 +1,99 @@
+package site.hnfy258.storedemo.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import site.hnfy258.common.codec.WireFormat;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.stream.JsonEventSerde;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 线上格式协商：按 Header 选择解码器，无 Header 的旧消息按 JSON 解析，坏消息返回 null 并计数
+ */
+class WireFormatSerdeTest {
+
+    private static final String TOPIC = "article-like-events";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ArticleLikeEvent event = new ArticleLikeEvent(42L, 7L, "LIKE", new Date(1_700_000_000_000L));
+
+    @Test
+    void binaryRecordsCarryHeaderAndRoundTrip() {
+        WireFormatSerde<ArticleLikeEvent> serde = newSerde(WireFormat.BINARY);
+        Headers headers = new RecordHeaders();
+
+        byte[] data = serde.serializer().serialize(TOPIC, headers, event);
+
+        assertEquals(WireFormat.BINARY, WireFormat.from(headers));
+        assertEquals(ArticleLikeEventBinaryCodec.VERSION, data[0]);
+        assertEquals(event, serde.deserializer().deserialize(TOPIC, headers, data));
+        assertEquals(1L, serde.getStats().get("binaryDecoded"));
+    }
+
+    @Test
+    void recordsWithoutHeaderAreReadAsJson() {
+        WireFormatSerde<ArticleLikeEvent> binarySerde = newSerde(WireFormat.BINARY);
+        byte[] legacy = newSerde(WireFormat.JSON).serializer().serialize(TOPIC, event);
+
+        assertEquals(event, binarySerde.deserializer().deserialize(TOPIC, new RecordHeaders(), legacy));
+        assertEquals(event, binarySerde.deserializer().deserialize(TOPIC, legacy));
+        assertEquals(2L, binarySerde.getStats().get("jsonDecoded"));
+    }
+
+    @Test
+    void jsonProducerOverwritesStaleHeader() {
+        Headers headers = new RecordHeaders();
+        WireFormat.BINARY.writeTo(headers);
+
+        byte[] data = newSerde(WireFormat.JSON).serializer().serialize(TOPIC, headers, event);
+
+        assertEquals(WireFormat.JSON, WireFormat.from(headers));
+        assertEquals(1, headers.toArray().length);
+        assertEquals('{', data[0]);
+    }
+
+    @Test
+    void binarySerdeWritesJsonWithoutHeaders() {
+        WireFormatSerde<ArticleLikeEvent> binarySerde = newSerde(WireFormat.BINARY);
+
+        byte[] data = binarySerde.serializer().serialize(TOPIC, event);
+
+        assertEquals('{', data[0]);
+        assertEquals(event, binarySerde.deserializer().deserialize(TOPIC, data));
+    }
+
+    @Test
+    void malformedRecordsAreDroppedAndCounted() {
+        WireFormatSerde<ArticleLikeEvent> serde = newSerde(WireFormat.BINARY);
+        Headers binaryHeaders = new RecordHeaders();
+        WireFormat.BINARY.writeTo(binaryHeaders);
+        byte[] binary = serde.encode(event, new RecordHeaders());
+        binary[0] = 99;
+
+        assertNull(serde.decode(binary, binaryHeaders));
+        assertNull(serde.decode("not json".getBytes(StandardCharsets.UTF_8), null));
+        assertNull(serde.decode(new byte[0], binaryHeaders));
+        assertNull(serde.decode(null, binaryHeaders));
+        assertEquals(2L, serde.getStats().get("malformed"));
+    }
+
+    @Test
+    void nullValuesStayNull() {
+        WireFormatSerde<ArticleLikeEvent> serde = newSerde(WireFormat.BINARY);
+
+        assertNull(serde.serializer().serialize(TOPIC, new RecordHeaders(), null));
+    }
+
+    private WireFormatSerde<ArticleLikeEvent> newSerde(WireFormat outgoingFormat) {
+        return new WireFormatSerde<>(new JsonEventSerde<>(objectMapper, ArticleLikeEvent.class),
+                new ArticleLikeEventBinaryCodec(), outgoingFormat);
+    }
+}
@@ -0,0 +1,121 @@
+package site.hnfy258.storedemo.security;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import site.hnfy258.storedemo.config.JwtConfig;
+import site.hnfy258.storedemo.constants.DeviceType;
+import site.hnfy258.storedemo.util.StatelessJwtUtil;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 认证过滤器令牌路径（verifyAccessToken）：
+ * 关闭缓存时每个请求都要解析并计算 HMAC，开启后重复令牌只剩一次 SHA-256 与一次 Map 查找。
+ * 耗时对比标记为 benchmark，默认构建不运行（mvn test -Dsurefire.excludedGroups= -Dgroups=benchmark 单独运行）
+ */
+class JwtVerificationBenchmarkTest {
+
+    // HS256 要求密钥至少 256 位
+    private static final String SECRET = "benchmarkSecretKey0123456789abcdefghijklmnop";
+    private static final int USERS = 1000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+
+    @Test
+    void repeatedTokensAreServedFromCache() {
+        String[] tokens = issueTokens(newJwtUtil(0));
+        StatelessJwtUtil cachedUtil = newJwtUtil(USERS * 2);
+
+        filterPath(cachedUtil, tokens);
+        filterPath(cachedUtil, tokens);
+
+        Map<String, Object> stats = cachedUtil.getVerifiedTokenCacheStats();
+        assertEquals((long) USERS, stats.get("misses"));
+        assertEquals((long) USERS, stats.get("hits"));
+        assertEquals(USERS, stats.get("size"));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void cachedVerificationIsFasterThanParsingEveryRequest() {
+        String[] tokens = issueTokens(newJwtUtil(0));
+
+        long uncachedNanos = measure(newJwtUtil(0), tokens);
+        long cachedNanos = measure(newJwtUtil(USERS * 2), tokens);
+
+        assertTrue(cachedNanos < uncachedNanos, "cached " + cachedNanos + "ns vs uncached " + uncachedNanos + "ns");
+    }
+
+    @Test
+    void cachedTokenStillFailsAfterTampering() {
+        StatelessJwtUtil jwtUtil = newJwtUtil(100);
+        String token = jwtUtil.generateAccessToken(1L, "user_1", List.of("USER"), DeviceType.PC);
+        assertTrue(jwtUtil.validateAccessToken(token));
+        ParsedAccessToken parsed = jwtUtil.verifyAccessToken(token);
+        assertEquals(1L, (long) parsed.getUserId());
+        assertEquals(DeviceType.PC, parsed.getDeviceType());
+        assertEquals("ROLE_USER", parsed.getAuthorities().get(0).getAuthority());
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertFalse(jwtUtil.validateAccessToken(tampered));
+    }
+
+    private static long measure(StatelessJwtUtil jwtUtil, String[] tokens) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            filterPath(jwtUtil, tokens);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            filterPath(jwtUtil, tokens);
+        }
+        return System.nanoTime() - start;
+    }
+
+    // 与 StatelessJwtAuthenticationFilter 中的令牌处理一致
+    private static void filterPath(StatelessJwtUtil jwtUtil, String[] tokens) {
+        long sum = 0;
+        for (String token : tokens) {
+            ParsedAccessToken accessToken = jwtUtil.verifyAccessToken(token);
+            if (accessToken != null) {
+                sum += accessToken.getUserId();
+            }
+        }
+        assertEquals((long) USERS * (USERS + 1) / 2, sum);
+    }
+
+    private static String[] issueTokens(StatelessJwtUtil jwtUtil) {
+        String[] tokens = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            tokens[i] = jwtUtil.generateAccessToken(i + 1L, "user_" + (i + 1), List.of("USER"), DeviceType.PC);
+        }
+        return tokens;
+    }
+
+    private static StatelessJwtUtil newJwtUtil(int cacheCapacity) {
+        JwtConfig config = new JwtConfig();
+        config.setSecret(SECRET);
+        config.setVerifiedCacheCapacity(cacheCapacity);
+        // 不启动同步：过滤器未就绪，每次都走 Redis 检查，与引入本地过滤器之前的开销一致
+        AccessTokenRevocationService revocationService = new AccessTokenRevocationService(
+                new NoRevocationsRedisTemplate(), new RedisMessageListenerContainer(), 10, 1000, 0.001, 60_000);
+        return new StatelessJwtUtil(config, new RedisTemplate<>(), revocationService);
+    }
+
+    /**
+     * 黑名单始终为空，避免基准依赖 Redis
+     */
+    private static class NoRevocationsRedisTemplate extends StringRedisTemplate {
+        @Override
+        public Boolean hasKey(String key) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package site.hnfy258.storedemo.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import site.hnfy258.storedemo.entity.User;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 用户信息缓存：命中不回源，失效后重新加载，失效前开始的加载结果不会被后续请求使用
+ */
+class UserDetailsCacheTest {
+
+    @Test
+    void returningUsersAreServedFromCache() {
+        UserDetailsCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            cache.get(1L, userId -> load(userId, "USER", loads));
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidationEventForcesReload() {
+        UserDetailsCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, userId -> load(userId, "USER", loads));
+        cache.get(2L, userId -> load(userId, "USER", loads));
+
+        cache.onUserAuthorityChanged(UserAuthorityChangedEvent.user(1L, "role granted"));
+        CustomUserDetails reloaded = cache.get(1L, userId -> load(userId, "ADMIN", loads));
+        cache.get(2L, userId -> load(userId, "USER", loads));
+
+        assertEquals(List.of("ADMIN"), reloaded.getRoles());
+        assertEquals(3, loads.get());
+
+        cache.onUserAuthorityChanged(UserAuthorityChangedEvent.allUsers("role renamed"));
+        cache.get(2L, userId -> load(userId, "USER", loads));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void loadRacingWithInvalidationIsNotReused() {
+        UserDetailsCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        // 回源过程中用户角色被修改：这次加载的旧数据可以返回给当前请求，但不能留给后续请求
+        cache.get(1L, userId -> {
+            CustomUserDetails stale = load(userId, "USER", loads);
+            cache.onUserAuthorityChanged(UserAuthorityChangedEvent.user(userId, "role revoked"));
+            return stale;
+        });
+        CustomUserDetails fresh = cache.get(1L, userId -> load(userId, "GUEST", loads));
+
+        assertEquals(List.of("GUEST"), fresh.getRoles());
+        assertEquals(2, loads.get());
+    }
+
+    private static CustomUserDetails load(Long userId, String role, AtomicInteger loads) {
+        loads.incrementAndGet();
+        User user = new User();
+        user.setId(userId);
+        user.setUsername("user_" + userId);
+        return new CustomUserDetails(user, List.of(role));
+    }
+
+    // 未连接 Redis：广播失败只记日志，本地失效照常生效
+    private static UserDetailsCache newCache() {
+        return new UserDetailsCache(new StringRedisTemplate(), new RedisMessageListenerContainer(), 60_000, 100);
+    }
+}
@@ -0,0 +1,147 @@
+package site.hnfy258.storedemo.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import site.hnfy258.common.codec.WireFormat;
+import site.hnfy258.common.codec.WireFormatSerde;
+import site.hnfy258.common.stream.JsonEventSerde;
+import site.hnfy258.common.stream.StreamThroughputMetrics;
+import site.hnfy258.common.stream.WindowEmissionStrategy;
+import site.hnfy258.storedemo.codec.ArticleLikeEventBinaryCodec;
+import site.hnfy258.storedemo.config.ArticleLikeStreamsConfig;
+import site.hnfy258.storedemo.config.KafkaTopicRegistry;
+import site.hnfy258.storedemo.dto.ArticleLikeCountUpdate;
+import site.hnfy258.storedemo.dto.ArticleLikeEvent;
+import site.hnfy258.storedemo.service.ArticleRankingService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 点赞排行拓扑测试：算子无副作用，Redis写入全部经由Sink批量完成；
+ * exactly-once 模式下更新改为写入事务内的输出Topic，拓扑本身不写Redis
+ */
+class ArticleLikeTopologyTest {
+
+    private static final int ARTICLES = 50;
+    private static final int EVENTS = 20_000;
+    private static final Instant WINDOW_START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KafkaTopicRegistry topicRegistry = new KafkaTopicRegistry();
+    private final JsonEventSerde<ArticleLikeCountUpdate> updateSerde =
+            new JsonEventSerde<>(objectMapper, ArticleLikeCountUpdate.class);
+
+    @Test
+    void windowResultsAreWrittenInBatchesBySink() throws Exception {
+        ArticleRankingService rankingService = mock(ArticleRankingService.class);
+        List<List<ArticleLikeCountUpdate>> batches = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<ArticleLikeCountUpdate> batch = invocation.getArgument(0);
+            synchronized (batches) {
+                batches.add(new ArrayList<>(batch));
+            }
+            return (long) batch.size();
+        }).when(rankingService).updateArticleLikeCounts(any());
+
+        ArticleRankingSink sink = new ArticleRankingSink(rankingService, updateSerde, 1000, 5000, 4, 2, 3, 10);
+        try (TopologyTestDriver driver = newDriver(sink, false)) {
+            pipeEventsAndCloseWindow(driver);
+            // 推进墙钟时间触发Sink的标点刷新
+            driver.advanceWallClockTime(Duration.ofSeconds(2));
+        }
+        sink.shutdown();
+
+        verify(rankingService, never()).updateArticleLikeCount(anyLong(), anyLong(), anyString());
+        int totalUpdates = batches.stream().mapToInt(List::size).sum();
+        assertEquals(ARTICLES, totalUpdates);
+        // 窗口关闭时一次性下发全部最终结果，墙钟只推进一次标点，缓冲区上限远大于文章数，因此恰好一个批次
+        assertEquals(1, batches.size());
+        batches.stream().flatMap(List::stream)
+                .forEach(update -> assertEquals(EVENTS / ARTICLES, update.getLikeCount()));
+    }
+
+    @Test
+    void exactlyOnceModeWritesUpdatesToTransactionalTopic() throws Exception {
+        ArticleRankingService rankingService = mock(ArticleRankingService.class);
+        ArticleRankingSink sink = new ArticleRankingSink(rankingService, updateSerde, 1000, 5000, 4, 2, 3, 10);
+
+        List<KeyValue<String, ArticleLikeCountUpdate>> updates;
+        try (TopologyTestDriver driver = newDriver(sink, true)) {
+            TestOutputTopic<String, ArticleLikeCountUpdate> output = driver.createOutputTopic(
+                    topicRegistry.getArticleRankingUpdates().getName(), new StringDeserializer(), updateSerde.deserializer());
+            pipeEventsAndCloseWindow(driver);
+            driver.advanceWallClockTime(Duration.ofSeconds(2));
+            updates = output.readKeyValuesToList();
+        }
+        sink.shutdown();
+
+        verify(rankingService, never()).updateArticleLikeCounts(any());
+        assertEquals(ARTICLES, updates.size());
+        for (KeyValue<String, ArticleLikeCountUpdate> update : updates) {
+            assertEquals(update.key, update.value.getArticleId().toString());
+            assertEquals(EVENTS / ARTICLES, update.value.getLikeCount());
+            assertEquals(WINDOW_START.toEpochMilli(), update.value.getWindowStart());
+        }
+    }
+
+    private TopologyTestDriver newDriver(ArticleRankingSink sink, boolean exactlyOnce) {
+        WindowEmissionStrategy emissionStrategy = new WindowEmissionStrategy();
+        ReflectionTestUtils.setField(emissionStrategy, "mode", WindowEmissionStrategy.Mode.WINDOW_CLOSE);
+        ReflectionTestUtils.setField(emissionStrategy, "bufferMaxRecords", 100_000L);
+        ReflectionTestUtils.setField(emissionStrategy, "bufferMaxBytes", 32L * 1024 * 1024);
+
+        WireFormatSerde<ArticleLikeEvent> likeEventSerde = new WireFormatSerde<>(
+                new JsonEventSerde<>(objectMapper, ArticleLikeEvent.class), new ArticleLikeEventBinaryCodec(), WireFormat.JSON);
+        ArticleLikeStreamsConfig config = new ArticleLikeStreamsConfig(likeEventSerde, sink, emissionStrategy,
+                new StreamThroughputMetrics(), topicRegistry, updateSerde, exactlyOnce);
+
+        StreamsBuilder builder = new StreamsBuilder();
+        config.articleLikeStream(builder);
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "article-like-topology-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        return new TopologyTestDriver(builder.build(), props, WINDOW_START);
+    }
+
+    /**
+     * 每篇文章在同一个5秒窗口内收到 EVENTS / ARTICLES 个点赞，最后一条记录推进流时间关闭窗口
+     */
+    private void pipeEventsAndCloseWindow(TopologyTestDriver driver) throws Exception {
+        TestInputTopic<String, String> input = driver.createInputTopic(
+                topicRegistry.getArticleLikeEvents().getName(), new StringSerializer(), new StringSerializer());
+
+        List<String> payloads = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            ArticleLikeEvent event = new ArticleLikeEvent((long) (i % ARTICLES), (long) i, "LIKE", new Date());
+            payloads.add(objectMapper.writeValueAsString(event));
+        }
+        for (int i = 0; i < EVENTS; i++) {
+            input.pipeInput(null, payloads.get(i), WINDOW_START.plusMillis(i % 4000));
+        }
+        input.pipeInput(null, payloads.get(0), WINDOW_START.plus(Duration.ofSeconds(10)));
+    }
+}
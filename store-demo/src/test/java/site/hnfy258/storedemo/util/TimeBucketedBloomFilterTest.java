@@ -0,0 +1,72 @@
+package site.hnfy258.storedemo.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分桶布隆过滤器：加入的元素一定命中，未加入的元素假阳性率接近配置值，过期的桶被整体丢弃
+ */
+class TimeBucketedBloomFilterTest {
+
+    private static final long BUCKET_MILLIS = 60_000;
+
+    @Test
+    void addedElementsAreAlwaysFound() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(BUCKET_MILLIS, 1000, 0.01);
+        long expiresAt = System.currentTimeMillis() + 10 * BUCKET_MILLIS;
+
+        for (int i = 0; i < 1000; i++) {
+            filter.add("revoked-" + i, expiresAt + i * 1000L);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("revoked-" + i, expiresAt + i * 1000L));
+        }
+        assertEquals(1000, filter.size());
+    }
+
+    @Test
+    void falsePositiveRateStaysNearConfiguredRate() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(BUCKET_MILLIS, 10_000, 0.01);
+        long expiresAt = System.currentTimeMillis() + 2 * BUCKET_MILLIS;
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("revoked-" + i, expiresAt);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("valid-" + i, expiresAt)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void expiredBucketsAreDropped() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(50, 100, 0.01);
+        long now = System.currentTimeMillis();
+        filter.add("short-lived", now + 50);
+        filter.add("long-lived", now + 60_000);
+        filter.add("already-expired", now - 1);
+        assertEquals(2, filter.bucketCount());
+
+        sleep(150);
+        assertEquals(1, filter.expire());
+
+        assertFalse(filter.mightContain("short-lived", now + 50));
+        assertTrue(filter.mightContain("long-lived", now + 60_000));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}